@@ -0,0 +1,88 @@
+// Microbenchmark baselines (androidTest, androidx.benchmark).
+//
+//   ./gradlew :app:connectedBenchmarkAndroidTest -Pbenchmark
+//   ./gradlew :app:checkBenchmarks           compare with benchmark/baseline.json
+//   ./gradlew :app:recordBenchmarkBaseline   overwrite the baseline with the last run
+//
+// Baselines are only comparable on the same device; record them on the
+// reference device and commit benchmark/baseline.json with the change.
+// Without a baseline checkBenchmarks fails; pass -PallowMissingBaseline to
+// let it warn and pass instead, e.g. before the first baseline is recorded.
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+
+val baselineFile = file("benchmark/baseline.json")
+// only measured runs; dry runs of the debug build (see build.gradle.kts) land next to it
+val resultsDir = layout.buildDirectory.dir("outputs/connected_android_test_additional_output/benchmarkAndroidTest")
+/** Allowed median slowdown before checkBenchmarks fails, e.g. -PbenchmarkTolerance=0.2 */
+val tolerance = (findProperty("benchmarkTolerance") as String?)?.toDouble() ?: 0.10
+val allowMissingBaseline = hasProperty("allowMissingBaseline")
+
+/** "Class#method" -> median time in ns, from the newest benchmarkData.json. */
+fun readMedians(json: File): Map<String, Double> {
+    @Suppress("UNCHECKED_CAST")
+    val root = JsonSlurper().parse(json) as Map<String, Any?>
+    @Suppress("UNCHECKED_CAST")
+    val benchmarks = root["benchmarks"] as List<Map<String, Any?>>
+    val out = sortedMapOf<String, Double>()
+    for (b in benchmarks) {
+        @Suppress("UNCHECKED_CAST")
+        val metrics = b["metrics"] as Map<String, Map<String, Any?>>
+        val median = (metrics["timeNs"]?.get("median") as Number?)?.toDouble() ?: continue
+        out["${b["className"]}#${b["name"]}"] = median
+    }
+    return out
+}
+
+fun latestResults(): File {
+    val dir = resultsDir.get().asFile
+    return dir.walkTopDown()
+        .filter { it.isFile && it.name.endsWith("benchmarkData.json") }
+        .maxByOrNull { it.lastModified() }
+        ?: throw GradleException("No benchmark results under $dir; run connectedBenchmarkAndroidTest -Pbenchmark first")
+}
+
+tasks.register("recordBenchmarkBaseline") {
+    group = "verification"
+    description = "Stores the medians of the last benchmark run as the baseline."
+    doLast {
+        val medians = readMedians(latestResults())
+        baselineFile.parentFile.mkdirs()
+        baselineFile.writeText(JsonOutput.prettyPrint(JsonOutput.toJson(medians)) + "\n")
+        logger.lifecycle("Recorded ${medians.size} benchmarks to $baselineFile")
+    }
+}
+
+tasks.register("checkBenchmarks") {
+    group = "verification"
+    description = "Fails when a benchmark median regressed beyond the tolerance."
+    doLast {
+        if (!baselineFile.exists()) {
+            val message = "checkBenchmarks: no baseline at $baselineFile. Record one on the" +
+                " reference device with connectedBenchmarkAndroidTest -Pbenchmark and" +
+                " recordBenchmarkBaseline, then commit it."
+            if (!allowMissingBaseline) throw GradleException("$message Or pass -PallowMissingBaseline to skip.")
+            logger.warn("$message Skipping (-PallowMissingBaseline).")
+            return@doLast
+        }
+        @Suppress("UNCHECKED_CAST")
+        val baseline = (JsonSlurper().parse(baselineFile) as Map<String, Number>)
+            .mapValues { it.value.toDouble() }
+        val current = readMedians(latestResults())
+        val regressions = mutableListOf<String>()
+        for ((name, ns) in current) {
+            val base = baseline[name]
+            if (base == null) {
+                logger.lifecycle(String.format("%-70s %12.0f ns  (new)", name, ns))
+                continue
+            }
+            val change = ns / base - 1.0
+            logger.lifecycle(String.format("%-70s %12.0f ns  %+6.1f%%", name, ns, change * 100))
+            if (change > tolerance) regressions += name
+        }
+        if (regressions.isNotEmpty()) {
+            throw GradleException("Benchmarks slower than baseline by >${(tolerance * 100).toInt()}%: $regressions")
+        }
+    }
+}
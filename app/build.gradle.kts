@@ -3,8 +3,12 @@ plugins {
     alias(libs.plugins.kotlin.android)
     id("com.google.gms.google-services")
     id("androidx.navigation.safeargs")
+    alias(libs.plugins.baselineprofile)
 }
 
+/** -Pbenchmark: androidTest runs against the non-debuggable "benchmark" build type. */
+val benchmarkRun = project.hasProperty("benchmark")
+
 android {
     namespace = "com.example.homelibrary"
     compileSdk = 35
@@ -16,7 +20,15 @@ android {
         versionCode = 1
         versionName = "1.0"
 
-        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        if (benchmarkRun) {
+            testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+        } else {
+            testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+            // Plain connectedAndroidTest on the debuggable build: the microbenchmarks
+            // run one loop as smoke tests instead of failing with DEBUGGABLE.
+            testInstrumentationRunnerArguments["androidx.benchmark.dryRunMode.enable"] = "true"
+            testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "DEBUGGABLE,EMULATOR"
+        }
     }
 
     buildTypes {
@@ -27,13 +39,31 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Release-like, non-debuggable build for benchmarks; signed with the debug key.
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
     }
+    // Measured runs: ./gradlew :app:connectedBenchmarkAndroidTest -Pbenchmark
+    testBuildType = if (benchmarkRun) "benchmark" else "debug"
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
 }
 
+baselineProfile {
+    // Generated with ./gradlew :app:generateBaselineProfile on a device (API 28+).
+    filter {
+        include("com.example.homelibrary.ui.MainActivity")
+        include("com.example.homelibrary.ui.home.**")
+        include("com.example.homelibrary.ui.book.**")
+        include("com.example.homelibrary.data.**")
+    }
+}
+
 dependencies {
 
     implementation(libs.appcompat)
@@ -43,6 +73,7 @@ dependencies {
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation(libs.benchmark.junit4)
 
     implementation(platform(libs.firebase.bom))
     implementation(libs.google.firebase.analytics.ktx)
@@ -54,7 +85,19 @@ dependencies {
     implementation(libs.navigation.ui.ktx)
 
     implementation(libs.glide)
+    implementation(libs.glide.recyclerview)
     annotationProcessor(libs.compiler)
 
+    implementation(project(":text"))
+    compileOnly(project(":processor"))
+    annotationProcessor(project(":processor"))
+
     implementation(libs.preference)
-}
\ No newline at end of file
+    implementation(libs.work.runtime)
+
+    // Installs the baseline profile on sideloaded/non-Play builds too.
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":macrobenchmark"))
+}
+
+apply(from = "benchmark.gradle.kts")
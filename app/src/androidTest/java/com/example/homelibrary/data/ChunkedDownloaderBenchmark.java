@@ -0,0 +1,169 @@
+package com.example.homelibrary.data;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Throughput of {@link ChunkedDownloader} against a local stand-in server that
+ * caps each connection's bandwidth, the way a distant CDN edge does. Each
+ * download takes seconds, too long for BenchmarkRule's warm-up loop, so the
+ * result is reported as an instrumentation status line:
+ * {@code ./gradlew :app:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.example.homelibrary.data.ChunkedDownloaderBenchmark}
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChunkedDownloaderBenchmark {
+
+    private static final int FILE_SIZE = 24 * 1024 * 1024;
+    /** Per-connection cap of the stand-in server. */
+    private static final int BYTES_PER_SECOND = 4 * 1024 * 1024;
+
+    private final byte[] data = new byte[FILE_SIZE];
+    private ThrottledRangeServer server;
+    private File dest;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(data);
+        server = new ThrottledRangeServer(data, BYTES_PER_SECOND);
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dest = new File(ctx.getCacheDir(), "benchmark.pdf");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        dest.delete();
+    }
+
+    @Test
+    public void oneConnection() throws IOException {
+        measure(1);
+    }
+
+    @Test
+    public void fourConnections() throws IOException {
+        measure(4);
+    }
+
+    @Test
+    public void eightConnections() throws IOException {
+        measure(8);
+    }
+
+    private void measure(int connections) throws IOException {
+        dest.delete();
+        long start = System.nanoTime();
+        new ChunkedDownloader(connections).download(server.url(), dest, null, null, () -> false);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertArrayEquals(data, Files.readAllBytes(dest.toPath()));
+
+        Bundle status = new Bundle();
+        status.putString("downloader", String.format(Locale.ROOT,
+                "%d connection(s): %.2f s, %.1f MiB/s", connections, seconds,
+                FILE_SIZE / seconds / (1024 * 1024)));
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    /** Minimal HTTP/1.1 server: GET with optional single Range, fixed ETag, throttled body. */
+    private static final class ThrottledRangeServer implements AutoCloseable {
+
+        private final byte[] body;
+        private final int bytesPerSecond;
+        private final ServerSocket socket;
+
+        ThrottledRangeServer(byte[] body, int bytesPerSecond) throws IOException {
+            this.body = body;
+            this.bytesPerSecond = bytesPerSecond;
+            this.socket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::acceptLoop, "range-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + socket.getLocalPort() + "/book.pdf";
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket client = socket.accept();
+                    Thread t = new Thread(() -> serve(client));
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException ignored) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket c = client) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(c.getInputStream(), StandardCharsets.US_ASCII));
+                if (in.readLine() == null) return;
+                String range = null;
+                for (String line; (line = in.readLine()) != null && !line.isEmpty(); ) {
+                    if (line.toLowerCase(Locale.ROOT).startsWith("range:")) {
+                        range = line.substring(6).trim();
+                    }
+                }
+                int from = 0;
+                int to = body.length - 1;
+                StringBuilder head = new StringBuilder();
+                if (range != null && range.startsWith("bytes=")) {
+                    String[] parts = range.substring(6).split("-");
+                    from = Integer.parseInt(parts[0]);
+                    to = Math.min(to, Integer.parseInt(parts[1]));
+                    head.append("HTTP/1.1 206 Partial Content\r\n")
+                            .append("Content-Range: bytes ").append(from).append('-').append(to)
+                            .append('/').append(body.length).append("\r\n");
+                } else {
+                    head.append("HTTP/1.1 200 OK\r\n");
+                }
+                head.append("ETag: \"v1\"\r\n")
+                        .append("Accept-Ranges: bytes\r\n")
+                        .append("Content-Length: ").append(to - from + 1).append("\r\n")
+                        .append("Connection: close\r\n\r\n");
+                OutputStream out = c.getOutputStream();
+                out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+
+                int slice = bytesPerSecond / 20;
+                for (int pos = from; pos <= to; pos += slice) {
+                    out.write(body, pos, Math.min(to + 1 - pos, slice));
+                    Thread.sleep(50);
+                }
+                out.flush();
+            } catch (IOException | InterruptedException ignored) {
+                // client went away
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
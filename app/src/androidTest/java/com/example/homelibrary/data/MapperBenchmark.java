@@ -0,0 +1,144 @@
+package com.example.homelibrary.data;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.models.AuthorMapper;
+import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.data.models.BookMapper;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.InternalHelpers;
+import com.google.firebase.database.snapshot.IndexedNode;
+import com.google.firebase.database.snapshot.NodeUtilities;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Generated mappers vs Firebase's reflective {@code getValue(Class)} on the
+ * same in-memory snapshots. Run with {@code ./gradlew :app:connectedAndroidTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MapperBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final DataSnapshot book = snapshot("books/b1", bookValue());
+    private final DataSnapshot author = snapshot("authors/a1", authorValue());
+    private final DataSnapshot page = snapshot("books", pageValue(BookPager.PAGE_SIZE));
+
+    @Test
+    public void book_generated() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BookMapper.fromSnapshot(book);
+        }
+    }
+
+    @Test
+    public void book_reflection() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            book.getValue(Book.class);
+        }
+    }
+
+    @Test
+    public void author_generated() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            AuthorMapper.fromSnapshot(author);
+        }
+    }
+
+    @Test
+    public void author_reflection() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            author.getValue(Author.class);
+        }
+    }
+
+    /** One feed page, as BookPager decodes it. */
+    @Test
+    public void bookPage_generated() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<Book> out = new ArrayList<>();
+            for (DataSnapshot c : page.getChildren()) out.add(BookMapper.fromSnapshot(c));
+        }
+    }
+
+    @Test
+    public void bookPage_reflection() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<Book> out = new ArrayList<>();
+            for (DataSnapshot c : page.getChildren()) out.add(c.getValue(Book.class));
+        }
+    }
+
+    @Test
+    public void book_toMap() {
+        Book b = BookMapper.fromSnapshot(book);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BookMapper.toMap(b);
+        }
+    }
+
+    // ====== Fixtures ======
+
+    /** Builds a snapshot without touching the network (InternalHelpers is test-only API). */
+    static DataSnapshot snapshot(String path, Map<String, Object> value) {
+        return InternalHelpers.createDataSnapshot(
+                FirebaseDatabase.getInstance().getReference(path),
+                IndexedNode.from(NodeUtilities.NodeFromJSON(value)));
+    }
+
+    static Map<String, Object> bookValue() {
+        Map<String, Object> v = new HashMap<>();
+        v.put("id", "b1");
+        v.put("title", "Евгений Онегин");
+        v.put("description", "Роман в стихах Александра Сергеевича Пушкина.");
+        v.put("genre", "Роман в стихах");
+        v.put("authorIds", Arrays.asList("a1", "a2"));
+        v.put("downloadUrl", "https://example.com/books/b1.pdf");
+        v.put("imageUrl", "https://example.com/covers/b1.jpg");
+        v.put("updatedAt", 1700000000000L);
+        return v;
+    }
+
+    static Map<String, Object> pageValue(int size) {
+        Map<String, Object> v = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> b = bookValue();
+            String id = String.format(Locale.ROOT, "b%03d", i);
+            b.put("id", id);
+            v.put(id, b);
+        }
+        return v;
+    }
+
+    static Map<String, Object> authorValue() {
+        Map<String, Object> v = new HashMap<>();
+        v.put("id", "a1");
+        v.put("fullName", "Александр Сергеевич Пушкин");
+        v.put("biography", "Русский поэт, драматург и прозаик.");
+        v.put("bookIds", Arrays.asList("b1", "b2", "b3"));
+        v.put("updatedAt", 1700000000000L);
+        return v;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.homelibrary.data;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.homelibrary.data.models.Book;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Title matching and index lookups over a synthetic catalog of {@link #CATALOG_SIZE} books.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchBenchmark {
+
+    private static final int CATALOG_SIZE = 1000;
+    private static final String QUERY = "евг оне";
+
+    private static final String[] TITLES = {
+            "Евгений Онегин", "Капитанская дочка", "Мёртвые души", "Война и мир",
+            "Преступление и наказание", "Café society", "Pride and Prejudice", "Le Père Goriot"
+    };
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final List<Book> books = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        SearchIndex index = SearchIndex.getInstance();
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            Book b = new Book();
+            b.id = String.format(Locale.ROOT, "b%05d", i);
+            b.title = TITLES[i % TITLES.length] + " " + i;
+            b.description = "Том " + (i % 7) + ". Издание " + (1900 + i % 120);
+            b.genre = i % 2 == 0 ? "Роман" : "Повесть";
+            b.authorIds = Arrays.asList("a" + (i % 50));
+            books.add(b);
+            index.putBook(b);
+        }
+    }
+
+    @Test
+    public void titleMatches_catalog() {
+        List<String> terms = SearchIndex.tokenize(QUERY);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (Book b : books) SearchManager.titleMatches(b, terms);
+        }
+    }
+
+    @Test
+    public void tokenize_title() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            SearchIndex.tokenize("Ёжик в тумане: Café, crème brûlée");
+        }
+    }
+
+    @Test
+    public void index_search() {
+        SearchIndex index = SearchIndex.getInstance();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            index.search(QUERY);
+        }
+    }
+}
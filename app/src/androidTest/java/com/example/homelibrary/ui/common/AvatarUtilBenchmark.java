@@ -0,0 +1,47 @@
+package com.example.homelibrary.ui.common;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Letter avatar rendering (96dp is what ProfileFragment draws).
+ */
+@RunWith(AndroidJUnit4.class)
+public class AvatarUtilBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @Test
+    public void create_48dp() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Bitmap bm = AvatarUtil.create(ctx, "А", 48);
+            state.pauseTiming();
+            bm.recycle();
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void create_96dp() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Bitmap bm = AvatarUtil.create(ctx, "А", 96);
+            state.pauseTiming();
+            bm.recycle();
+            state.resumeTiming();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.homelibrary.ui.home;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.homelibrary.data.BookPager;
+import com.example.homelibrary.data.models.Book;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Feed working-list operations at the size of a full pager window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookFeedItemsBenchmark {
+
+    private static final int WINDOW = BookPager.PAGE_SIZE * BookPager.MAX_PAGES;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void indexOf_clean() {
+        BookFeedItems items = filled();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            items.indexOf("b00050");
+        }
+    }
+
+    /** Lookup right after a mid-list change, which forces an index rebuild. */
+    @Test
+    public void indexOf_afterRemove() {
+        BookFeedItems items = filled();
+        Book head = items.snapshot().get(0);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            items.removeRange(0, 1);
+            items.insert(0, Collections.singletonList(head));
+            state.resumeTiming();
+            items.indexOf("b00050");
+        }
+    }
+
+    @Test
+    public void addOrUpdate_existing() {
+        BookFeedItems items = filled();
+        Book b = book(WINDOW / 2);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            items.addOrUpdate(b);
+        }
+    }
+
+    @Test
+    public void addOrUpdate_page() {
+        List<Book> page = books(0, BookPager.PAGE_SIZE);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            BookFeedItems items = new BookFeedItems();
+            state.resumeTiming();
+            for (Book b : page) items.addOrUpdate(b);
+        }
+    }
+
+    private static BookFeedItems filled() {
+        BookFeedItems items = new BookFeedItems();
+        items.insert(0, books(0, WINDOW));
+        return items;
+    }
+
+    private static List<Book> books(int from, int count) {
+        List<Book> out = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) out.add(book(i));
+        return out;
+    }
+
+    private static Book book(int i) {
+        Book b = new Book();
+        b.id = String.format(Locale.ROOT, "b%05d", i);
+        b.title = "Книга " + i;
+        return b;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.homelibrary;
+
+import android.app.Application;
+
+import com.example.homelibrary.data.OfflineManager;
+
+/**
+ * Process-wide setup that has to happen before any screen touches Firebase.
+ */
+public class HomeLibraryApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        OfflineManager.bootstrap(this);
+    }
+}
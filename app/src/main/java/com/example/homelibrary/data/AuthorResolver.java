@@ -0,0 +1,181 @@
+package com.example.homelibrary.data;
+
+import android.content.Context;
+import android.util.LruCache;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.homelibrary.data.models.Author;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves author ids to full names for every screen through one shared LRU.
+ * Ids requested during the same frame are collected into a single batch:
+ * first looked up on disk in one query, the rest fetched from RTDB once each,
+ * however many rows are waiting for them. Must be used from the main thread.
+ */
+public class AuthorResolver {
+
+    /** Receives names in the order of the requested ids; null for unknown authors. */
+    public interface Callback {
+        void onResolved(@NonNull List<String> names);
+    }
+
+    private static AuthorResolver instance;
+
+    private static final int CACHE_SIZE = 512;
+    /** Cached marker for ids that do not exist in RTDB. */
+    private static final String MISSING = "";
+
+    private final LruCache<String, String> names = new LruCache<>(CACHE_SIZE);
+    private final CatalogRepository repo;
+    private final DatabaseReference authorsRef;
+
+    /** id -> requests waiting for it (one entry per in-flight id). */
+    private final Map<String, List<Request>> waiting = new HashMap<>();
+    /** Ids collected for the next frame's batch. */
+    private final Set<String> batch = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+
+    private AuthorResolver(Context ctx) {
+        repo = CatalogRepository.getInstance(ctx);
+        authorsRef = FirebaseDatabase.getInstance().getReference("authors");
+    }
+
+    /** Singleton accessor. */
+    public static synchronized AuthorResolver getInstance(@NonNull Context ctx) {
+        if (instance == null) instance = new AuthorResolver(ctx);
+        return instance;
+    }
+
+    /**
+     * Resolves the given ids. Calls back synchronously when all names are cached,
+     * otherwise after the next batch completes.
+     */
+    public void resolve(@NonNull List<String> ids, @NonNull Callback callback) {
+        Request r = new Request(ids, callback);
+        for (String id : new HashSet<>(ids)) {
+            if (names.get(id) != null) continue;
+            r.remaining++;
+            List<Request> list = waiting.get(id);
+            if (list == null) {
+                list = new ArrayList<>();
+                waiting.put(id, list);
+                batch.add(id);
+            }
+            list.add(r);
+        }
+        if (r.remaining == 0) {
+            deliver(r);
+            return;
+        }
+        if (!batch.isEmpty() && !flushScheduled) {
+            flushScheduled = true;
+            Choreographer.getInstance().postFrameCallback(t -> flush());
+        }
+    }
+
+    /** Updates a cached name, e.g. when the author node changes. Thread-safe. */
+    public void put(@Nullable Author author) {
+        if (author == null) return;
+        put(author.id, author.fullName);
+    }
+
+    /** Caches a name that came with other data, e.g. a feed row. Thread-safe. */
+    public void put(@Nullable String id, @Nullable String fullName) {
+        if (id == null) return;
+        names.put(id, fullName != null ? fullName : MISSING);
+    }
+
+    /** Joins resolved names, substituting {@code unknown} for missing authors. */
+    @NonNull
+    public static String join(@NonNull List<String> names, @NonNull String unknown) {
+        List<String> out = new ArrayList<>(names.size());
+        for (String n : names) out.add(n != null ? n : unknown);
+        return String.join(", ", out);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        List<String> ids = new ArrayList<>(batch);
+        batch.clear();
+
+        repo.loadAuthors(ids, cached -> {
+            Set<String> misses = new LinkedHashSet<>(ids);
+            if (cached != null) {
+                for (Author a : cached) {
+                    misses.remove(a.id);
+                    put(a);
+                    complete(a.id);
+                }
+            }
+            for (String id : misses) fetch(id);
+        });
+    }
+
+    private void fetch(String id) {
+        authorsRef.child(id).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot ds) {
+                SnapshotDecoder.decode(ds, SnapshotMappers.AUTHOR, a -> {
+                    if (a != null) {
+                        if (a.id == null) a.id = id;
+                        put(a);
+                        repo.cacheAuthor(a);
+                    } else {
+                        names.put(id, MISSING);
+                    }
+                    complete(id);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Not cached, so the next request retries.
+                complete(id);
+            }
+        });
+    }
+
+    private void complete(String id) {
+        List<Request> list = waiting.remove(id);
+        if (list == null) return;
+        for (Request r : list) {
+            if (--r.remaining == 0) deliver(r);
+        }
+    }
+
+    private void deliver(Request r) {
+        List<String> out = new ArrayList<>(r.ids.size());
+        for (String id : r.ids) {
+            String name = names.get(id);
+            out.add(name == null || name.equals(MISSING) ? null : name);
+        }
+        r.callback.onResolved(out);
+    }
+
+    private static final class Request {
+        final List<String> ids;
+        final Callback callback;
+        int remaining;
+
+        Request(List<String> ids, Callback callback) {
+            this.ids = ids;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.homelibrary.data.models.Book;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Live subscriptions over key ranges of a book list ("feed" for the home
+ * screen), one per loaded page.
+ * Replaces one listener per row: whoever owns the window {@link #watch}es each
+ * page's range as it loads and {@link #unwatch}es it when the page is dropped,
+ * so the number of RTDB listeners is bounded by the window, not the scroll
+ * distance, and loading a page never re-attaches the pages already watched.
+ */
+public class BookChangeHub {
+
+    /** Changes inside the watched ranges. Main thread. */
+    public interface Listener {
+        void onBookAdded(@NonNull Book book);
+        void onBookChanged(@NonNull Book book);
+        void onBookRemoved(@NonNull String bookId);
+    }
+
+    private final DatabaseReference booksRef;
+    private final SnapshotMappers.Mapper<Book> mapper;
+    private final Listener listener;
+
+    /** Attached listener -> the range query it is attached to. */
+    private final Map<ChildEventListener, Query> active = new HashMap<>();
+
+    public BookChangeHub(@NonNull String path, @NonNull SnapshotMappers.Mapper<Book> mapper,
+                         @NonNull Listener listener) {
+        this.booksRef = FirebaseDatabase.getInstance().getReference(path);
+        this.mapper = mapper;
+        this.listener = listener;
+    }
+
+    /** The list ordered by key; ranges for {@link #watch} are built on it. */
+    @NonNull
+    public Query byKey() {
+        return booksRef.orderByKey();
+    }
+
+    /**
+     * Subscribes to one key range of {@link #byKey()}. Returns a handle for
+     * {@link #unwatch}.
+     */
+    @NonNull
+    public Object watch(@NonNull Query range) {
+        ChildEventListener l = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot ds, @Nullable String prev) {
+                SnapshotDecoder.decode(ds, mapper, b -> {
+                    if (isCurrent(this) && b != null && b.id != null) listener.onBookAdded(b);
+                });
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot ds, @Nullable String prev) {
+                SnapshotDecoder.decode(ds, mapper, b -> {
+                    if (isCurrent(this) && b != null && b.id != null) listener.onBookChanged(b);
+                });
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot ds) {
+                String key = ds.getKey();
+                if (key == null) return;
+                // queued behind pending decodes to keep event order
+                SnapshotDecoder.runAfterPending(() -> {
+                    if (isCurrent(this)) listener.onBookRemoved(key);
+                });
+            }
+
+            @Override public void onChildMoved(@NonNull DataSnapshot d, @Nullable String p) { }
+            @Override public void onCancelled(@NonNull DatabaseError e) { }
+        };
+        active.put(l, range);
+        range.addChildEventListener(l);
+        return l;
+    }
+
+    /** Detaches one range; decoded events still queued for it are dropped. */
+    public void unwatch(@Nullable Object handle) {
+        Query range = active.remove(handle);
+        if (range != null) range.removeEventListener((ChildEventListener) handle);
+    }
+
+    /** Drops decoded events that belong to a range no longer watched. */
+    private boolean isCurrent(ChildEventListener l) {
+        return active.containsKey(l);
+    }
+
+    /** Detaches every range; call from onDestroyView. */
+    public void stop() {
+        for (Map.Entry<ChildEventListener, Query> e : active.entrySet()) {
+            e.getValue().removeEventListener(e.getKey());
+        }
+        active.clear();
+    }
+}
@@ -1,32 +1,87 @@
 package com.example.homelibrary.data;
 
-import android.app.DownloadManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-import android.database.Cursor;
-import android.net.Uri;
-import android.os.Build;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
 import android.os.Environment;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
 import com.example.homelibrary.data.models.Book;
 
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Manages downloading of book files from given URLs and saving them locally.
- * Uses Android's DownloadManager system service.
+ * Every book is a unique WorkManager job ("download-{id}"), so the queue
+ * survives process death and downloads resume from their .part state.
+ * <ul>
+ *   <li>Shelf downloads run at most {@link #UNMETERED_PARALLEL} books at a time
+ *   on unmetered networks and {@link #METERED_PARALLEL} on metered ones.</li>
+ *   <li>The book the user has open is expedited and skips the cap, so a large
+ *   shelf never starves it.</li>
+ *   <li>A shelf download over the cap backs off, and is restarted as soon as a
+ *   slot frees up rather than when its backoff ends. Waiting for a slot is not
+ *   a failed attempt.</li>
+ * </ul>
  */
 public class BookDownloadManager {
 
     private static BookDownloadManager instance;
 
+    static final String TAG_DOWNLOAD = "book-download";
+    private static final String TAG_URGENT = "book-download-urgent";
+    private static final String FAILURES_PREFS = "download_failures";
+    private static final String WORK_PREFIX = "download-";
+
+    private static final int UNMETERED_PARALLEL = 3;
+    private static final int METERED_PARALLEL = 1;
+    private static final int UNMETERED_CONNECTIONS = ChunkedDownloader.DEFAULT_CONNECTIONS;
+    private static final int METERED_CONNECTIONS = 2;
+
     private final Context context;
-    private final DownloadManager systemDownloadManager;
-    private long lastDownloadId = -1;
+    private final WorkManager workManager;
+    private final ConnectivityManager connectivity;
+    /** WorkManager futures are waited on here, never on the main thread. */
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    /** Failed attempts per work request id; see {@link #recordFailure}. */
+    private final SharedPreferences failures;
+    /** Shelf downloads currently holding a slot. */
+    private int running = 0;
+    /** Shelf downloads turned away by the cap, book id -> input, oldest first. */
+    private final Map<String, Data> waiting = new LinkedHashMap<>();
+    /** Chunk order of downloads running in this process, for read-while-downloading. */
+    private final Map<String, RangeScheduler> streaming = new ConcurrentHashMap<>();
+    /** SHA-256 to the book whose download is fetching that content. */
+    private final Map<String, String> fetching = new ConcurrentHashMap<>();
 
     private BookDownloadManager(Context ctx) {
         context = ctx.getApplicationContext();
-        systemDownloadManager = (DownloadManager) context.getSystemService(Context.DOWNLOAD_SERVICE);
+        workManager = WorkManager.getInstance(context);
+        connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        failures = context.getSharedPreferences(FAILURES_PREFS, Context.MODE_PRIVATE);
     }
 
     public static synchronized BookDownloadManager getInstance(Context ctx) {
@@ -37,59 +92,239 @@ public class BookDownloadManager {
     }
 
     /**
-     * Starts downloading a book file from a URL and returns the downloadId.
+     * Where the book's download lands; {@link BookStorage} then files it by
+     * content hash. Read downloaded books through {@link BookStorage#file}.
+     */
+    @NonNull
+    public static File bookFile(@NonNull Context ctx, @NonNull String bookId) {
+        return new File(booksDir(ctx), bookId + ".pdf");
+    }
+
+    @NonNull
+    static File booksDir(@NonNull Context ctx) {
+        return new File(ctx.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), "books");
+    }
+
+    /** The download's in-progress file; see {@link #streaming}. */
+    @NonNull
+    public static File partFile(@NonNull Context ctx, @NonNull String bookId) {
+        return ChunkedDownloader.partFile(bookFile(ctx, bookId));
+    }
+
+    /**
+     * Chunk order of the book's running download, or null when it isn't running
+     * in this process. A reader uses it to open {@link #partFile} early.
+     */
+    @Nullable
+    public RangeScheduler streaming(@NonNull String bookId) {
+        return streaming.get(bookId);
+    }
+
+    // ====== Scheduling ======
+
+    /**
+     * Starts downloading the book the user asked for, ahead of any queued shelf.
      *
      * @param book   Book model containing downloadUrl and id.
      * @param userId ID of the current user.
-     * @return system download ID to track completion.
      */
-    public long downloadBook(Book book, String userId) {
-        Uri downloadUri = Uri.parse(book.downloadUrl);
-        DownloadManager.Request request = new DownloadManager.Request(downloadUri);
-
-        request.setTitle(book.title);
-        request.setDescription("Downloading " + book.title);
-        request.setNotificationVisibility(DownloadManager.Request.VISIBILITY_VISIBLE);
-
-        java.io.File dir = new java.io.File(
-                context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), "books");
-        if (!dir.exists()) {
-            dir.mkdirs();
+    public void downloadBook(@NonNull Book book, String userId) {
+        workManager.enqueueUniqueWork(workName(book.id), ExistingWorkPolicy.REPLACE,
+                request(input(book, true), true));
+    }
+
+    /**
+     * Queues a whole shelf for offline reading. Books already queued, running or
+     * on disk are left alone; books whose content is stored for another book
+     * are linked to it.
+     */
+    public void downloadShelf(@NonNull List<Book> books) {
+        BookStorage storage = BookStorage.getInstance(context);
+        io.execute(() -> {
+            for (Book b : books) {
+                if (b.id == null || b.downloadUrl == null) continue;
+                if (storage.isDownloaded(b.id) || storage.link(b.id, b.sha256)) continue;
+                workManager.enqueueUniqueWork(workName(b.id), ExistingWorkPolicy.KEEP,
+                        request(input(b, false), false));
+            }
+        });
+    }
+
+    /**
+     * Moves a queued shelf download to the front, e.g. when the user opens the
+     * book. Running or finished downloads are not touched.
+     */
+    public void prioritize(@NonNull Book book) {
+        if (book.id == null || book.downloadUrl == null) return;
+        synchronized (this) {
+            waiting.remove(book.id);
+        }
+        io.execute(() -> replaceIfQueued(book.id, request(input(book, true), true), true));
+    }
+
+    /**
+     * Replaces the book's work with {@code request} if it hasn't started yet.
+     * Urgent work is only replaced when {@code overUrgent}.
+     *
+     * @return whether the work was replaced
+     */
+    private boolean replaceIfQueued(String bookId, OneTimeWorkRequest request, boolean overUrgent) {
+        List<WorkInfo> infos;
+        try {
+            infos = workManager.getWorkInfosForUniqueWork(workName(bookId)).get();
+        } catch (ExecutionException | InterruptedException e) {
+            return false;
+        }
+        for (WorkInfo info : infos) {
+            if (info.getState() != WorkInfo.State.ENQUEUED
+                    && info.getState() != WorkInfo.State.BLOCKED) continue;
+            if (!overUrgent && info.getTags().contains(TAG_URGENT)) return false;
+            moveFailures(info.getId(), request.getId());
+            workManager.enqueueUniqueWork(workName(bookId), ExistingWorkPolicy.REPLACE, request);
+            return true;
         }
-        java.io.File outputFile = new java.io.File(dir, book.id + ".pdf");
-        request.setDestinationUri(Uri.fromFile(outputFile));
+        return false;
+    }
 
-        long downloadId = systemDownloadManager.enqueue(request);
-        lastDownloadId = downloadId;
-        return downloadId;
+    public void cancel(@NonNull String bookId) {
+        workManager.cancelUniqueWork(workName(bookId));
     }
 
     /**
-     * Checks if the given downloadId has completed successfully.
-     * @param downloadId ID returned by enqueue(...)
-     * @return true if status == STATUS_SUCCESSFUL, false otherwise (or still pending).
+     * Live progress and ETA of a book's download; {@link DownloadProgress#NONE}
+     * when never queued. Observe on the main thread.
      */
-    public boolean isDownloadSuccessful(long downloadId) {
-        DownloadManager.Query query = new DownloadManager.Query();
-        query.setFilterById(downloadId);
-        Cursor cursor = systemDownloadManager.query(query);
-        if (cursor != null) {
-            boolean success = false;
-            if (cursor.moveToFirst()) {
-                int statusIndex = cursor.getColumnIndex(DownloadManager.COLUMN_STATUS);
-                int status = cursor.getInt(statusIndex);
-                success = (status == DownloadManager.STATUS_SUCCESSFUL);
+    @NonNull
+    public LiveData<DownloadProgress> progress(@NonNull String bookId) {
+        return DownloadProgressTracker.getInstance(context).progress(bookId);
+    }
+
+    private static Data input(Book book, boolean urgent) {
+        return new Data.Builder()
+                .putString(BookDownloadWorker.KEY_BOOK_ID, book.id)
+                .putString(BookDownloadWorker.KEY_URL, book.downloadUrl)
+                .putString(BookDownloadWorker.KEY_SHA256, book.sha256)
+                .putString(BookDownloadWorker.KEY_TITLE, book.title)
+                .putBoolean(BookDownloadWorker.KEY_URGENT, urgent)
+                .build();
+    }
+
+    private OneTimeWorkRequest request(Data input, boolean urgent) {
+        String bookId = input.getString(BookDownloadWorker.KEY_BOOK_ID);
+        Constraints.Builder constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED);
+        if (!urgent) constraints.setRequiresStorageNotLow(true);
+        OneTimeWorkRequest.Builder b = new OneTimeWorkRequest.Builder(BookDownloadWorker.class)
+                .setInputData(input)
+                .setConstraints(constraints.build())
+                .setBackoffCriteria(BackoffPolicy.LINEAR, 10, TimeUnit.SECONDS)
+                .addTag(TAG_DOWNLOAD)
+                .addTag(DownloadProgressTracker.TAG_BOOK_PREFIX + bookId);
+        if (urgent) {
+            b.setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST).addTag(TAG_URGENT);
+        }
+        return b.build();
+    }
+
+    private static String workName(String bookId) {
+        return WORK_PREFIX + bookId;
+    }
+
+    // ====== Concurrency caps (called by BookDownloadWorker) ======
+
+    /**
+     * Urgent downloads always get a slot; shelf downloads only below the
+     * network's cap. A shelf download turned away is remembered and restarted
+     * by the next {@link #releaseSlot}.
+     */
+    synchronized boolean tryAcquireSlot(boolean urgent, @NonNull Data input) {
+        if (urgent) return true;
+        String bookId = input.getString(BookDownloadWorker.KEY_BOOK_ID);
+        int cap = isMetered() ? METERED_PARALLEL : UNMETERED_PARALLEL;
+        if (running >= cap) {
+            if (bookId != null) waiting.put(bookId, input);
+            return false;
+        }
+        waiting.remove(bookId);
+        running++;
+        return true;
+    }
+
+    synchronized void releaseSlot(boolean urgent) {
+        if (urgent) return;
+        running--;
+        if (!waiting.isEmpty()) io.execute(this::wakeWaiting);
+    }
+
+    /**
+     * Restarts the oldest shelf download still backing off for a slot. A fresh
+     * request runs now and starts over with the shortest backoff.
+     */
+    private void wakeWaiting() {
+        while (true) {
+            Map.Entry<String, Data> next;
+            synchronized (this) {
+                Iterator<Map.Entry<String, Data>> it = waiting.entrySet().iterator();
+                if (!it.hasNext()) return;
+                next = it.next();
+                it.remove();
             }
-            cursor.close();
-            return success;
+            // cancelled, finished or already running again: try the next one
+            if (replaceIfQueued(next.getKey(), request(next.getValue(), false), false)) return;
         }
-        return false;
     }
 
     /**
-     * Returns the last enqueued downloadId (for convenience).
+     * Counts a failed attempt of the work request and returns the total.
+     * WorkManager's run attempt count also includes retries that only waited
+     * for a slot or for another download of the same content.
      */
-    public long getLastDownloadId() {
-        return lastDownloadId;
+    synchronized int recordFailure(@NonNull UUID workId) {
+        int n = failures.getInt(workId.toString(), 0) + 1;
+        failures.edit().putInt(workId.toString(), n).apply();
+        return n;
+    }
+
+    synchronized void clearFailures(@NonNull UUID workId) {
+        failures.edit().remove(workId.toString()).apply();
+    }
+
+    /** A replacing request keeps the failures of the one it replaces. */
+    private synchronized void moveFailures(UUID from, UUID to) {
+        int n = failures.getInt(from.toString(), 0);
+        if (n == 0) return;
+        failures.edit().remove(from.toString()).putInt(to.toString(), n).apply();
+    }
+
+    RangeScheduler beginStreaming(String bookId) {
+        RangeScheduler ranges = new RangeScheduler();
+        streaming.put(bookId, ranges);
+        return ranges;
+    }
+
+    void endStreaming(String bookId, RangeScheduler ranges) {
+        streaming.remove(bookId, ranges);
+    }
+
+    /**
+     * Claims the content for this book's download, so two books with the same
+     * hash don't fetch it twice. Always true when the hash is unknown.
+     */
+    boolean claimContent(@Nullable String sha256, String bookId) {
+        if (sha256 == null) return true;
+        String owner = fetching.putIfAbsent(sha256.toLowerCase(Locale.ROOT), bookId);
+        return owner == null || owner.equals(bookId);
+    }
+
+    void releaseContent(@Nullable String sha256, String bookId) {
+        if (sha256 != null) fetching.remove(sha256.toLowerCase(Locale.ROOT), bookId);
+    }
+
+    int connectionsPerBook() {
+        return isMetered() ? METERED_CONNECTIONS : UNMETERED_CONNECTIONS;
+    }
+
+    private boolean isMetered() {
+        return connectivity == null || connectivity.isActiveNetworkMetered();
     }
 }
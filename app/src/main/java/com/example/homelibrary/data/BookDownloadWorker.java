@@ -0,0 +1,138 @@
+package com.example.homelibrary.data;
+
+import android.app.Notification;
+import android.content.Context;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationChannelCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.work.Data;
+import androidx.work.ForegroundInfo;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.homelibrary.R;
+
+import java.io.IOException;
+
+/**
+ * Downloads one book file with {@link ChunkedDownloader}. Scheduled only through
+ * {@link BookDownloadManager}, which also enforces the per-network caps.
+ */
+public class BookDownloadWorker extends Worker {
+
+    static final String KEY_BOOK_ID = "bookId";
+    static final String KEY_URL = "url";
+    static final String KEY_SHA256 = "sha256";
+    static final String KEY_TITLE = "title";
+    static final String KEY_URGENT = "urgent";
+    static final String KEY_DOWNLOADED = "downloaded";
+    static final String KEY_TOTAL = "total";
+
+    private static final String CHANNEL_ID = "downloads";
+    private static final int MAX_ATTEMPTS = 5;
+    /**
+     * WorkManager persists every progress update, so only restore-after-restart
+     * snapshots go there; the live feed goes through {@link DownloadProgressTracker}.
+     */
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private long lastProgressAt = 0;
+
+    public BookDownloadWorker(@NonNull Context ctx, @NonNull WorkerParameters params) {
+        super(ctx, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String bookId = getInputData().getString(KEY_BOOK_ID);
+        String url = getInputData().getString(KEY_URL);
+        if (bookId == null || url == null) return Result.failure();
+
+        String sha256 = getInputData().getString(KEY_SHA256);
+        BookStorage storage = BookStorage.getInstance(getApplicationContext());
+        // same content already stored for another book
+        if (storage.link(bookId, sha256)) return Result.success();
+
+        BookDownloadManager manager = BookDownloadManager.getInstance(getApplicationContext());
+        if (!manager.claimContent(sha256, bookId)) {
+            // another book with this hash is downloading; link to its file afterwards
+            return Result.retry();
+        }
+        boolean urgent = getInputData().getBoolean(KEY_URGENT, false);
+        if (!manager.tryAcquireSlot(urgent, getInputData())) {
+            // over the cap for the current network; back off instead of holding a
+            // thread until the manager restarts it for a free slot
+            manager.releaseContent(sha256, bookId);
+            return Result.retry();
+        }
+        RangeScheduler ranges = manager.beginStreaming(bookId);
+        try {
+            setForegroundAsync(getForegroundInfo());
+            new ChunkedDownloader(manager.connectionsPerBook()).download(
+                    url, BookDownloadManager.bookFile(getApplicationContext(), bookId), sha256,
+                    (done, total) -> reportProgress(bookId, done, total), this::isStopped, ranges);
+            if (!storage.onDownloaded(bookId, sha256)) {
+                // truncated or not a PDF at all; the file is gone, fetch it again
+                return failed(manager);
+            }
+            manager.clearFailures(getId());
+            return Result.success();
+        } catch (ChunkedDownloader.CancelledException e) {
+            return Result.retry(); // ignored when stopped; progress is kept in .part.state
+        } catch (IOException e) {
+            return failed(manager);
+        } finally {
+            manager.endStreaming(bookId, ranges);
+            manager.releaseSlot(urgent);
+            manager.releaseContent(sha256, bookId);
+        }
+    }
+
+    /** Retries until the download itself has failed {@link #MAX_ATTEMPTS} times. */
+    private Result failed(BookDownloadManager manager) {
+        if (manager.recordFailure(getId()) < MAX_ATTEMPTS) return Result.retry();
+        manager.clearFailures(getId());
+        return Result.failure();
+    }
+
+    private void reportProgress(String bookId, long downloaded, long total) {
+        DownloadProgressTracker.getInstance(getApplicationContext()).onBytes(bookId, downloaded, total);
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastProgressAt < PROGRESS_INTERVAL_MS && downloaded != total) return;
+        lastProgressAt = now;
+        setProgressAsync(new Data.Builder()
+                .putLong(KEY_DOWNLOADED, downloaded)
+                .putLong(KEY_TOTAL, total)
+                .build());
+    }
+
+    /** Also used for expedited runs before Android 12. */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        Context ctx = getApplicationContext();
+        NotificationManagerCompat.from(ctx).createNotificationChannel(
+                new NotificationChannelCompat.Builder(CHANNEL_ID,
+                        NotificationManagerCompat.IMPORTANCE_LOW)
+                        .setName(ctx.getString(R.string.download_channel))
+                        .build());
+        String title = getInputData().getString(KEY_TITLE);
+        Notification n = new NotificationCompat.Builder(ctx, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(ctx.getString(R.string.downloading_book, title != null ? title : ""))
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+        int id = getId().hashCode();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new ForegroundInfo(id, n, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        }
+        return new ForegroundInfo(id, n);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.homelibrary.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the book file store: one row per unique file (blob), keyed by its
+ * SHA-256, with size and last-open time, and one row per book pointing at
+ * its blob. Storage checks never list the books directory. Only accessed
+ * through {@link BookStorage}, always off the main thread.
+ */
+class BookFileIndex extends SQLiteOpenHelper {
+
+    private static final String NAME = "book_files.db";
+    private static final int VERSION = 2;
+
+    private static final String BLOBS = "blobs";
+    private static final String REFS = "refs";
+
+    /** One stored file. */
+    static final class Blob {
+        final String hash;
+        final long size;
+        final long lastUsed;
+
+        Blob(String hash, long size, long lastUsed) {
+            this.hash = hash;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    BookFileIndex(@NonNull Context ctx) {
+        super(ctx.getApplicationContext(), NAME, null, VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + BLOBS + " ("
+                + "hash TEXT PRIMARY KEY, size INTEGER NOT NULL, "
+                + "last_used INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX blobs_last_used ON " + BLOBS + " (last_used)");
+        db.execSQL("CREATE TABLE " + REFS + " ("
+                + "book_id TEXT PRIMARY KEY, hash TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX refs_hash ON " + REFS + " (hash)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // v1 indexed files by book id; BookStorage moves them into the blob store.
+        db.execSQL("DROP TABLE IF EXISTS files");
+        db.execSQL("DROP TABLE IF EXISTS " + BLOBS);
+        db.execSQL("DROP TABLE IF EXISTS " + REFS);
+        onCreate(db);
+    }
+
+    // ====== Blobs ======
+
+    void putBlob(@NonNull Blob b) {
+        ContentValues v = new ContentValues();
+        v.put("hash", b.hash);
+        v.put("size", b.size);
+        v.put("last_used", b.lastUsed);
+        getWritableDatabase().insertWithOnConflict(BLOBS, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    void touchBlob(@NonNull String hash, long time) {
+        ContentValues v = new ContentValues();
+        v.put("last_used", time);
+        getWritableDatabase().update(BLOBS, v, "hash = ?", new String[]{hash});
+    }
+
+    /** Removes the blob and every book reference to it. */
+    void deleteBlob(@NonNull String hash) {
+        SQLiteDatabase db = getWritableDatabase();
+        String[] args = {hash};
+        db.beginTransaction();
+        try {
+            db.delete(REFS, "hash = ?", args);
+            db.delete(BLOBS, "hash = ?", args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Every blob, least recently used first. */
+    @NonNull
+    List<Blob> blobs() {
+        List<Blob> out = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(BLOBS, null, null, null,
+                null, null, "last_used")) {
+            int hash = c.getColumnIndexOrThrow("hash");
+            int size = c.getColumnIndexOrThrow("size");
+            int used = c.getColumnIndexOrThrow("last_used");
+            while (c.moveToNext()) {
+                out.add(new Blob(c.getString(hash), c.getLong(size), c.getLong(used)));
+            }
+        }
+        return out;
+    }
+
+    // ====== Book references ======
+
+    void putRef(@NonNull String bookId, @NonNull String hash) {
+        ContentValues v = new ContentValues();
+        v.put("book_id", bookId);
+        v.put("hash", hash);
+        getWritableDatabase().insertWithOnConflict(REFS, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /** Ids of books whose file was opened most recently, newest first. */
+    @NonNull
+    List<String> recentBooks(int limit) {
+        List<String> out = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT r.book_id FROM " + REFS
+                + " r JOIN " + BLOBS + " b ON r.hash = b.hash"
+                + " ORDER BY b.last_used DESC LIMIT ?", new String[]{String.valueOf(limit)})) {
+            while (c.moveToNext()) out.add(c.getString(0));
+        }
+        return out;
+    }
+
+    /** Book id to blob hash. */
+    @NonNull
+    Map<String, String> refs() {
+        Map<String, String> out = new HashMap<>();
+        try (Cursor c = getReadableDatabase().query(REFS, null, null, null,
+                null, null, null)) {
+            int id = c.getColumnIndexOrThrow("book_id");
+            int hash = c.getColumnIndexOrThrow("hash");
+            while (c.moveToNext()) out.put(c.getString(id), c.getString(hash));
+        }
+        return out;
+    }
+}
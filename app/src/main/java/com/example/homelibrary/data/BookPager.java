@@ -0,0 +1,352 @@
+package com.example.homelibrary.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.example.homelibrary.data.models.Book;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Key-ordered, page-sized loader for the "feed" node: the card fields of each
+ * book plus its author names (see {@link DBManager}), so a page is one shallow
+ * query and rows need no author lookups.
+ * Keeps a bounded window of at most {@link #MAX_PAGES} pages: loading past
+ * either edge drops the page at the opposite edge, so memory does not grow
+ * with the catalog. The first page is served from the on-disk cache until
+ * the network page arrives. Live changes inside the window come from
+ * {@link BookChangeHub}: each page watches the key range it was loaded from,
+ * attached when the page arrives and detached when it is dropped.
+ */
+public class BookPager {
+
+    /** Window changes, reported as positions within the window. Main thread. */
+    public interface Listener {
+        void onInserted(int position, @NonNull List<Book> books);
+        void onChanged(int position, @NonNull Book book);
+        void onRemoved(int position, int count);
+        void onError(@NonNull Exception e);
+    }
+
+    public static final int PAGE_SIZE = 20;
+    public static final int MAX_PAGES = 5;
+
+    private final DatabaseReference feedRef;
+    private final SnapshotMappers.Mapper<Book> mapper;
+    private final CatalogRepository repo;
+    private final Listener listener;
+    private final BookChangeHub hub;
+
+    private final Deque<Page> pages = new ArrayDeque<>();
+    /** Book id -> the page holding it, so live changes skip scanning the window. */
+    private final Map<String, Page> pageOf = new HashMap<>();
+    /** Disk copy of the first page shown until the network page replaces it. */
+    private List<Book> provisional = null;
+    private boolean loading = false;
+    private boolean started = false;
+    /** Set by {@link #stop}; pages still in flight are then dropped unwatched. */
+    private boolean stopped = false;
+    private boolean hasNext = true;
+    private boolean hasPrevious = false;
+
+    /**
+     * A loaded page and its key range. Ranges of neighbouring pages meet, so
+     * books added between two pages are seen too; a null bound is open.
+     * An emptied page stays in the window to keep its range watched.
+     */
+    private static final class Page {
+        final List<Book> books;
+        /** First and last key loaded or added; bound the next page loads. */
+        String firstKey;
+        String lastKey;
+        String from;
+        boolean fromInclusive;
+        String to;
+        boolean toInclusive;
+        Object watch;
+
+        Page(List<Book> books) {
+            this.books = books;
+            firstKey = books.get(0).id;
+            lastKey = books.get(books.size() - 1).id;
+        }
+    }
+
+    public BookPager(@NonNull Context ctx, @NonNull Listener listener) {
+        this.feedRef = FirebaseDatabase.getInstance().getReference(DBManager.FEED);
+        this.mapper = SnapshotMappers.feed(AuthorResolver.getInstance(ctx));
+        this.repo = CatalogRepository.getInstance(ctx);
+        this.listener = listener;
+        this.hub = new BookChangeHub(DBManager.FEED, mapper, new BookChangeHub.Listener() {
+            @Override
+            public void onBookAdded(@NonNull Book book) {
+                applyAdded(book);
+            }
+
+            @Override
+            public void onBookChanged(@NonNull Book book) {
+                applyChanged(book);
+            }
+
+            @Override
+            public void onBookRemoved(@NonNull String bookId) {
+                applyRemoved(bookId);
+            }
+        });
+    }
+
+    /** Shows the cached first page and requests the first network page. */
+    public void start() {
+        if (started) return;
+        started = true;
+        repo.loadBooksPage(null, PAGE_SIZE, cached -> {
+            if (stopped || cached == null || cached.isEmpty() || !pages.isEmpty()) return;
+            provisional = cached;
+            listener.onInserted(0, cached);
+        });
+        loadNext();
+    }
+
+    /** Loads the page after the last one in the window. */
+    public void loadNext() {
+        if (stopped || loading || !hasNext) return;
+        Query q = feedRef.orderByKey();
+        Page last = pages.peekLast();
+        if (last != null) q = q.startAfter(last.lastKey);
+        fetch(q.limitToFirst(PAGE_SIZE), true);
+    }
+
+    /** Reloads the page before the first one in the window (after it was dropped). */
+    public void loadPrevious() {
+        if (stopped || loading || !hasPrevious) return;
+        Page first = pages.peekFirst();
+        if (first == null) return;
+        fetch(feedRef.orderByKey().endBefore(first.firstKey).limitToLast(PAGE_SIZE), false);
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Detaches the live subscriptions and drops pages still loading; call from
+     * onDestroyView. A stopped pager can't be restarted.
+     */
+    public void stop() {
+        stopped = true;
+        loading = false;
+        hub.stop();
+    }
+
+    private void fetch(Query q, boolean forward) {
+        loading = true;
+        q.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                boolean full = snapshot.getChildrenCount() >= PAGE_SIZE;
+                SnapshotDecoder.decodeChildren(snapshot, mapper, books -> {
+                    if (stopped) return;
+                    loading = false;
+                    // Feed rows are partial books, so they are not written to the
+                    // SQLite mirror. Rows without an id only carry author names
+                    // for a book that hasn't been saved yet.
+                    List<Book> page = new ArrayList<>();
+                    for (Book b : books) {
+                        if (b.id != null) page.add(b);
+                    }
+                    if (forward) {
+                        appendPage(page, full);
+                    } else {
+                        prependPage(page, full);
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (stopped) return;
+                loading = false;
+                listener.onError(error.toException());
+            }
+        });
+    }
+
+    private void appendPage(List<Book> books, boolean full) {
+        if (!full) hasNext = false;
+        if (provisional != null) {
+            listener.onRemoved(0, provisional.size());
+            provisional = null;
+        }
+        Page prev = pages.peekLast();
+        if (books.isEmpty()) {
+            // end of the catalog: books appended later belong to the last page
+            if (!hasNext && prev != null && prev.to != null) {
+                prev.to = null;
+                watch(prev);
+            }
+            return;
+        }
+
+        Page page = new Page(books);
+        if (prev != null) {
+            // from where the previous page's range ends
+            page.from = prev.to != null ? prev.to : prev.lastKey;
+            page.fromInclusive = prev.to != null && !prev.toInclusive;
+        } else if (hasPrevious) {
+            page.from = page.firstKey;
+            page.fromInclusive = true;
+        }
+        if (hasNext) {
+            page.to = page.lastKey;
+            page.toInclusive = true;
+        }
+        listener.onInserted(windowSize(), books);
+        pages.addLast(page);
+        index(page);
+        watch(page);
+        if (pages.size() > MAX_PAGES) {
+            Page dropped = pages.removeFirst();
+            unindex(dropped);
+            hub.unwatch(dropped.watch);
+            listener.onRemoved(0, dropped.books.size());
+            hasPrevious = true;
+        }
+    }
+
+    private void prependPage(List<Book> books, boolean full) {
+        if (!full) hasPrevious = false;
+        Page next = pages.peekFirst();
+        if (next == null) return;
+        if (books.isEmpty()) {
+            if (!hasPrevious && next.from != null) {
+                next.from = null;
+                watch(next);
+            }
+            return;
+        }
+
+        Page page = new Page(books);
+        if (hasPrevious) {
+            page.from = page.firstKey;
+            page.fromInclusive = true;
+        }
+        // up to where the next page's range starts
+        page.to = next.from != null ? next.from : next.firstKey;
+        page.toInclusive = next.from != null && !next.fromInclusive;
+        pages.addFirst(page);
+        index(page);
+        listener.onInserted(0, books);
+        watch(page);
+        if (pages.size() > MAX_PAGES) {
+            Page dropped = pages.removeLast();
+            unindex(dropped);
+            hub.unwatch(dropped.watch);
+            listener.onRemoved(windowSize(), dropped.books.size());
+            hasNext = true;
+        }
+    }
+
+    // ======================= Live changes =======================
+
+    /** (Re)attaches the page's range; other pages' subscriptions are left alone. */
+    private void watch(Page page) {
+        if (stopped) return;
+        Query q = hub.byKey();
+        if (page.from != null) q = page.fromInclusive ? q.startAt(page.from) : q.startAfter(page.from);
+        if (page.to != null) q = page.toInclusive ? q.endAt(page.to) : q.endBefore(page.to);
+        hub.unwatch(page.watch);
+        page.watch = hub.watch(q);
+    }
+
+    private void applyAdded(Book book) {
+        if (pageOf.containsKey(book.id)) {
+            applyChanged(book);
+            return;
+        }
+        // Keep key order: insert before the first book with a greater key.
+        int pos = 0;
+        for (Page page : pages) {
+            for (int i = 0; i < page.books.size(); i++, pos++) {
+                if (page.books.get(i).id.compareTo(book.id) > 0) {
+                    page.books.add(i, book);
+                    pageOf.put(book.id, page);
+                    if (book.id.compareTo(page.firstKey) < 0) page.firstKey = book.id;
+                    listener.onInserted(pos, Collections.singletonList(book));
+                    return;
+                }
+            }
+        }
+        Page last = pages.peekLast();
+        if (last == null) return;
+        last.books.add(book);
+        pageOf.put(book.id, last);
+        if (book.id.compareTo(last.lastKey) > 0) last.lastKey = book.id;
+        listener.onInserted(pos, Collections.singletonList(book));
+    }
+
+    private void applyChanged(Book book) {
+        Page page = pageOf.get(book.id);
+        if (page == null) return;
+        int i = indexIn(page, book.id);
+        if (i == -1) return;
+        Book old = page.books.get(i);
+        // Attaching a page's range replays its books; skip unchanged ones.
+        if (old.updatedAt == book.updatedAt) return;
+        page.books.set(i, book);
+        listener.onChanged(offsetOf(page) + i, book);
+    }
+
+    private void applyRemoved(String bookId) {
+        Page page = pageOf.remove(bookId);
+        if (page == null) return;
+        int i = indexIn(page, bookId);
+        if (i == -1) return;
+        page.books.remove(i);
+        listener.onRemoved(offsetOf(page) + i, 1);
+    }
+
+    private void index(Page page) {
+        for (Book b : page.books) pageOf.put(b.id, page);
+    }
+
+    private void unindex(Page page) {
+        for (Book b : page.books) pageOf.remove(b.id);
+    }
+
+    /** Position of the book within its page; at most a page's worth of compares. */
+    private static int indexIn(Page page, String bookId) {
+        for (int i = 0; i < page.books.size(); i++) {
+            if (page.books.get(i).id.equals(bookId)) return i;
+        }
+        return -1;
+    }
+
+    /** Window position of the page's first book; the page is in the window. */
+    private int offsetOf(Page page) {
+        int pos = 0;
+        for (Page p : pages) {
+            if (p == page) break;
+            pos += p.books.size();
+        }
+        return pos;
+    }
+
+    private int windowSize() {
+        int n = 0;
+        for (Page p : pages) n += p.books.size();
+        return n;
+    }
+}
@@ -0,0 +1,443 @@
+package com.example.homelibrary.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.preference.PreferenceManager;
+
+import com.example.homelibrary.data.models.Book;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Content-addressed store of downloaded book files.
+ * <ul>
+ *   <li>Each unique file is kept once as {@code blobs/<sha256>.pdf}; books
+ *   point at it through {@link BookFileIndex}, so editions and re-uploads of
+ *   the same PDF share one copy. A book whose {@link Book#sha256} is already
+ *   stored is never downloaded.</li>
+ *   <li>Sizes, references and last-open times are mirrored in memory, so "is
+ *   it downloaded" never lists the directory.</li>
+ *   <li>Files over the quota are evicted least recently opened first; books
+ *   open in the reader are pinned.</li>
+ *   <li>A file whose size differs from the index, or that isn't a complete
+ *   PDF, is treated as missing and deleted.</li>
+ * </ul>
+ */
+public class BookStorage {
+
+    /** Result callback, always invoked on the main thread. */
+    public interface Callback<T> {
+        void onResult(@NonNull T value);
+    }
+
+    /** A stored file or null, on the main thread. */
+    public interface FileCallback {
+        void onResult(@Nullable File file);
+    }
+
+    /** What Settings shows. */
+    public static final class Usage {
+        /** Books, counting ones that share a file separately. */
+        public final int files;
+        /** Unique content only. */
+        public final long bytes;
+        /** Bytes allowed, or {@link #UNLIMITED}. */
+        public final long quota;
+        public final long freeBytes;
+
+        Usage(int files, long bytes, long quota, long freeBytes) {
+            this.files = files;
+            this.bytes = bytes;
+            this.quota = quota;
+            this.freeBytes = freeBytes;
+        }
+    }
+
+    private static final String TAG = "BookStorage";
+    private static final String PREFS = "book_storage";
+    /** Set once files named by book id have been moved into the blob store. */
+    private static final String KEY_MIGRATED = "blob_store_migrated";
+
+    public static final String KEY_QUOTA = "pref_storage_quota";
+    public static final long UNLIMITED = -1;
+    private static final long DEFAULT_QUOTA = 2L * 1024 * 1024 * 1024;
+    /** The tail must hold the trailer marker. */
+    private static final int TAIL_CHECK = 1024;
+
+    private static BookStorage instance;
+
+    private final Context app;
+    private final File blobDir;
+    private final BookFileIndex index;
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    /** Answers the async queries; not queued behind migration or eviction on io. */
+    private final ExecutorService lookups = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    // mirror of the index; blob files and both maps change together under this
+    private final Map<String, String> refs = new ConcurrentHashMap<>();
+    private final Map<String, Long> blobs = new ConcurrentHashMap<>();
+    private final Set<String> pinned = ConcurrentHashMap.newKeySet();
+    /** Held here: SharedPreferences keeps listeners only weakly. */
+    private final SharedPreferences.OnSharedPreferenceChangeListener quotaListener =
+            (prefs, key) -> {
+                if (KEY_QUOTA.equals(key)) enforceQuota();
+            };
+
+    private BookStorage(Context ctx) {
+        app = ctx.getApplicationContext();
+        blobDir = new File(BookDownloadManager.booksDir(app), "blobs");
+        index = new BookFileIndex(app);
+        PreferenceManager.getDefaultSharedPreferences(app)
+                .registerOnSharedPreferenceChangeListener(quotaListener);
+        io.execute(this::load);
+    }
+
+    /** Singleton accessor. */
+    public static synchronized BookStorage getInstance(@NonNull Context ctx) {
+        if (instance == null) instance = new BookStorage(ctx);
+        return instance;
+    }
+
+    // ====== Queries ======
+
+    /**
+     * False until the index has been read after start; until then the
+     * blocking queries below wait for it. UI code uses the async ones.
+     */
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * True when the book's file is present with the size recorded at download.
+     * One stat, no directory listing, but blocks until the index is read;
+     * see {@link #isLoaded}.
+     */
+    public boolean isDownloaded(@NonNull String bookId) {
+        return file(bookId) != null;
+    }
+
+    /**
+     * Like {@link #isDownloaded(String)}, but also true without a download
+     * when another book with the same {@link Book#sha256} is stored.
+     * Doesn't point the book at that file; see {@link #fileOrLink}.
+     */
+    public boolean isDownloaded(@NonNull Book book) {
+        return book.id != null && (isDownloaded(book.id) || hasContent(book.sha256));
+    }
+
+    /** The stored file of a downloaded book, or null. Blocks like {@link #isDownloaded(String)}. */
+    @Nullable
+    public File file(@NonNull String bookId) {
+        awaitLoaded();
+        String hash = refs.get(bookId);
+        if (hash == null) return null;
+        Long size = blobs.get(hash);
+        File f = blobFile(hash);
+        return size != null && f.length() == size ? f : null;
+    }
+
+    /** {@link #file(String)} without blocking the caller. */
+    public void file(@NonNull String bookId, @NonNull FileCallback callback) {
+        lookups.execute(() -> {
+            File f = file(bookId);
+            main.post(() -> callback.onResult(f));
+        });
+    }
+
+    /**
+     * The book's file; failing that, points the book at a stored file with
+     * the same {@link Book#sha256} and returns that. Null when neither exists.
+     */
+    public void fileOrLink(@NonNull Book book, @NonNull FileCallback callback) {
+        lookups.execute(() -> {
+            File f = null;
+            if (book.id != null) {
+                f = file(book.id);
+                if (f == null && link(book.id, book.sha256)) f = file(book.id);
+            }
+            File result = f;
+            main.post(() -> callback.onResult(result));
+        });
+    }
+
+    /** Whether a file with this SHA-256 is stored; blocks like {@link #file(String)}. */
+    public boolean hasContent(@Nullable String sha256) {
+        if (sha256 == null) return false;
+        String hash = sha256.toLowerCase(Locale.ROOT);
+        awaitLoaded();
+        Long size = blobs.get(hash);
+        return size != null && blobFile(hash).length() == size;
+    }
+
+    /** Book count and size of the unique files, from the index. */
+    public void usage(@NonNull Callback<Usage> callback) {
+        io.execute(() -> {
+            long bytes = 0;
+            for (long s : blobs.values()) bytes += s;
+            long free = BookDownloadManager.booksDir(app).getUsableSpace();
+            Usage u = new Usage(refs.size(), bytes, quota(), free);
+            main.post(() -> callback.onResult(u));
+        });
+    }
+
+    /** Up to {@code limit} downloaded books, most recently opened first. */
+    public void recentBooks(int limit, @NonNull Callback<List<String>> callback) {
+        io.execute(() -> {
+            List<String> ids = index.recentBooks(limit);
+            main.post(() -> callback.onResult(ids));
+        });
+    }
+
+    /** Quota from settings (stored in MiB, -1 for none), in bytes, or {@link #UNLIMITED}. */
+    public long quota() {
+        String v = PreferenceManager.getDefaultSharedPreferences(app).getString(KEY_QUOTA, null);
+        if (v == null) return DEFAULT_QUOTA;
+        try {
+            long mb = Long.parseLong(v);
+            return mb < 0 ? UNLIMITED : mb * 1024 * 1024;
+        } catch (NumberFormatException e) {
+            return DEFAULT_QUOTA;
+        }
+    }
+
+    // ====== Events ======
+
+    /**
+     * Points the book at an already stored file with this SHA-256.
+     *
+     * @return false if no such file is stored
+     */
+    boolean link(@NonNull String bookId, @Nullable String sha256) {
+        if (sha256 == null) return false;
+        String hash = sha256.toLowerCase(Locale.ROOT);
+        awaitLoaded();
+        synchronized (this) {
+            Long size = blobs.get(hash);
+            if (size == null || blobFile(hash).length() != size) return false;
+            ref(bookId, hash);
+        }
+        io.execute(() -> index.putRef(bookId, hash));
+        return true;
+    }
+
+    /**
+     * A download finished at {@link BookDownloadManager#bookFile}. Moves it into
+     * the store, or drops it when the same content is already there.
+     *
+     * @param sha256 digest the downloader already verified, or null to compute it
+     * @return false if the file was rejected as corrupt
+     */
+    boolean onDownloaded(@NonNull String bookId, @Nullable String sha256) throws IOException {
+        File f = BookDownloadManager.bookFile(app, bookId);
+        if (!looksComplete(f)) {
+            f.delete();
+            return false;
+        }
+        String hash = sha256 != null ? sha256.toLowerCase(Locale.ROOT) : ChunkedDownloader.sha256(f);
+        long size = f.length();
+        awaitLoaded();
+        synchronized (this) {
+            store(f, hash, size);
+            ref(bookId, hash);
+        }
+        long now = System.currentTimeMillis();
+        io.execute(() -> {
+            index.putBlob(new BookFileIndex.Blob(hash, size, now));
+            index.putRef(bookId, hash);
+            trim(hash);
+        });
+        return true;
+    }
+
+    /** The reader opened the book; it stays until {@link #unpin}. */
+    public void pin(@NonNull String bookId) {
+        pinned.add(bookId);
+        String hash = refs.get(bookId);
+        if (hash != null) io.execute(() -> index.touchBlob(hash, System.currentTimeMillis()));
+    }
+
+    public void unpin(@NonNull String bookId) {
+        pinned.remove(bookId);
+    }
+
+    /**
+     * The file couldn't be read; forget it so the next open downloads it again.
+     * Books sharing the file lose it too.
+     */
+    public void markCorrupt(@NonNull String bookId) {
+        String hash = refs.get(bookId);
+        if (hash == null) return;
+        io.execute(() -> {
+            synchronized (this) {
+                drop(hash);
+            }
+        });
+    }
+
+    /** Re-applies the quota; runs by itself when the setting changes. */
+    public void enforceQuota() {
+        io.execute(() -> trim(null));
+    }
+
+    // ====== Blobs (under this) ======
+
+    private File blobFile(String hash) {
+        return new File(blobDir, hash + ".pdf");
+    }
+
+    /** Moves a downloaded file into the store; a duplicate is just deleted. */
+    private void store(File f, String hash, long size) throws IOException {
+        File blob = blobFile(hash);
+        Long known = blobs.get(hash);
+        if (known != null && blob.length() == known) {
+            f.delete();
+            return;
+        }
+        if (!blobDir.isDirectory() && !blobDir.mkdirs()) {
+            throw new IOException("Can't create " + blobDir);
+        }
+        if (!f.renameTo(blob)) throw new IOException("Can't move " + f + " to " + blob);
+        blobs.put(hash, size);
+    }
+
+    /** Points the book at the blob; the one it pointed at goes once unused. */
+    private void ref(String bookId, String hash) {
+        String old = refs.put(bookId, hash);
+        if (old == null || old.equals(hash) || refs.containsValue(old)) return;
+        io.execute(() -> {
+            synchronized (this) {
+                if (!refs.containsValue(old)) drop(old);
+            }
+        });
+    }
+
+    /** Deletes the blob and every reference to it; io thread. */
+    private void drop(String hash) {
+        blobFile(hash).delete();
+        blobs.remove(hash);
+        refs.values().removeIf(hash::equals);
+        index.deleteBlob(hash);
+    }
+
+    // ====== io thread ======
+
+    private void load() {
+        try {
+            for (BookFileIndex.Blob b : index.blobs()) blobs.put(b.hash, b.size);
+            refs.putAll(index.refs());
+        } finally {
+            loaded.countDown();
+        }
+        synchronized (this) {
+            // left behind when the process died between re-pointing a book and deleting
+            Set<String> used = new HashSet<>(refs.values());
+            for (String hash : new HashSet<>(blobs.keySet())) {
+                if (!used.contains(hash)) drop(hash);
+            }
+        }
+        SharedPreferences prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (!prefs.getBoolean(KEY_MIGRATED, false)) {
+            migrate();
+            prefs.edit().putBoolean(KEY_MIGRATED, true).apply();
+        }
+        trim(null);
+    }
+
+    /**
+     * Files from before the blob store, named by book id. Each is hashed once;
+     * last-open time is unknown, so they count as the oldest.
+     */
+    private void migrate() {
+        File[] files = BookDownloadManager.booksDir(app).listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            String name = f.getName();
+            if (!f.isFile() || !name.endsWith(".pdf")) continue;
+            String id = name.substring(0, name.length() - 4);
+            if (!looksComplete(f)) {
+                f.delete();
+                continue;
+            }
+            long size = f.length();
+            long lastUsed = f.lastModified();
+            try {
+                String hash = ChunkedDownloader.sha256(f);
+                synchronized (this) {
+                    store(f, hash, size);
+                    ref(id, hash);
+                }
+                index.putBlob(new BookFileIndex.Blob(hash, size, lastUsed));
+                index.putRef(id, hash);
+            } catch (IOException e) {
+                Log.w(TAG, "Can't migrate " + f, e);
+            }
+        }
+    }
+
+    /** Evicts least recently used files until the total fits the quota. */
+    private synchronized void trim(@Nullable String keep) {
+        long quota = quota();
+        if (quota == UNLIMITED) return;
+        long total = 0;
+        for (long s : blobs.values()) total += s;
+        if (total <= quota) return;
+        Set<String> kept = new HashSet<>();
+        if (keep != null) kept.add(keep);
+        for (String id : pinned) {
+            String hash = refs.get(id);
+            if (hash != null) kept.add(hash);
+        }
+        for (BookFileIndex.Blob b : index.blobs()) {
+            if (total <= quota) break;
+            if (kept.contains(b.hash)) continue;
+            drop(b.hash);
+            total -= b.size;
+        }
+    }
+
+    private void awaitLoaded() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** "%PDF-" at the start and "%%EOF" near the end; catches truncation and HTML error pages. */
+    static boolean looksComplete(@NonNull File f) {
+        long len = f.length();
+        if (len < 16) return false;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            byte[] head = new byte[5];
+            raf.readFully(head);
+            if (!"%PDF-".equals(new String(head, StandardCharsets.US_ASCII))) return false;
+            int tailLen = (int) Math.min(TAIL_CHECK, len);
+            byte[] tail = new byte[tailLen];
+            raf.seek(len - tailLen);
+            raf.readFully(tail);
+            return new String(tail, StandardCharsets.ISO_8859_1).contains("%%EOF");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
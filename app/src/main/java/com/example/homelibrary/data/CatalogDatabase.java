@@ -0,0 +1,251 @@
+package com.example.homelibrary.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.data.models.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * On-device SQLite copy of the "books", "authors" and "users" nodes.
+ * Only accessed through {@link CatalogRepository}, always off the main thread.
+ */
+class CatalogDatabase extends SQLiteOpenHelper {
+
+    private static final String NAME = "catalog.db";
+    private static final int VERSION = 3;
+
+    static final String BOOKS = "books";
+    static final String AUTHORS = "authors";
+    static final String USERS = "users";
+
+    /** Separator for id lists; RTDB keys cannot contain it. */
+    private static final String ID_SEPARATOR = "/";
+    /** Stays below SQLite's default limit of 999 bound parameters. */
+    private static final int MAX_ARGS = 500;
+
+    private final Context app;
+
+    CatalogDatabase(@NonNull Context ctx) {
+        super(ctx.getApplicationContext(), NAME, null, VERSION);
+        app = ctx.getApplicationContext();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + BOOKS + " ("
+                + "id TEXT PRIMARY KEY, title TEXT, description TEXT, genre TEXT, "
+                + "author_ids TEXT, download_url TEXT, image_url TEXT, "
+                + "cover_small_url TEXT, cover_medium_url TEXT, cover_large_url TEXT, "
+                + "sha256 TEXT, updated_at INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE TABLE " + AUTHORS + " ("
+                + "id TEXT PRIMARY KEY, full_name TEXT, biography TEXT, "
+                + "book_ids TEXT, updated_at INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE TABLE " + USERS + " ("
+                + "uid TEXT PRIMARY KEY, email TEXT, nickname TEXT, avatar_url TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion <= 2) {
+            // Old rows lack the new fields, and books that never change would
+            // never bring them: drop the delta-sync markers to refetch everything.
+            if (oldVersion == 1) {
+                db.execSQL("ALTER TABLE " + BOOKS + " ADD COLUMN cover_small_url TEXT");
+                db.execSQL("ALTER TABLE " + BOOKS + " ADD COLUMN cover_medium_url TEXT");
+                db.execSQL("ALTER TABLE " + BOOKS + " ADD COLUMN cover_large_url TEXT");
+            }
+            db.execSQL("ALTER TABLE " + BOOKS + " ADD COLUMN sha256 TEXT");
+            app.getSharedPreferences(CatalogRepository.PREFS, Context.MODE_PRIVATE)
+                    .edit().clear().commit();
+            return;
+        }
+        // The cache is rebuilt from RTDB, so it is safe to drop it.
+        db.execSQL("DROP TABLE IF EXISTS " + BOOKS);
+        db.execSQL("DROP TABLE IF EXISTS " + AUTHORS);
+        db.execSQL("DROP TABLE IF EXISTS " + USERS);
+        onCreate(db);
+    }
+
+    // ====== Books ======
+
+    void putBook(@NonNull Book b) {
+        ContentValues v = new ContentValues();
+        v.put("id", b.id);
+        v.put("title", b.title);
+        v.put("description", b.description);
+        v.put("genre", b.genre);
+        v.put("author_ids", joinIds(b.authorIds));
+        v.put("download_url", b.downloadUrl);
+        v.put("image_url", b.imageUrl);
+        v.put("cover_small_url", b.coverSmallUrl);
+        v.put("cover_medium_url", b.coverMediumUrl);
+        v.put("cover_large_url", b.coverLargeUrl);
+        v.put("sha256", b.sha256);
+        v.put("updated_at", b.updatedAt);
+        getWritableDatabase().insertWithOnConflict(BOOKS, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    @Nullable
+    Book getBook(@NonNull String id) {
+        try (Cursor c = getReadableDatabase().query(BOOKS, null, "id = ?",
+                new String[]{id}, null, null, null)) {
+            return c.moveToFirst() ? readBook(c) : null;
+        }
+    }
+
+    @NonNull
+    List<Book> getBooks() {
+        List<Book> out = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(BOOKS, null, null, null, null, null, "id")) {
+            while (c.moveToNext()) out.add(readBook(c));
+        }
+        return out;
+    }
+
+    /** Up to {@code limit} books with ids after {@code afterId}, in key order. */
+    @NonNull
+    List<Book> getBooksPage(@Nullable String afterId, int limit) {
+        List<Book> out = new ArrayList<>();
+        String selection = afterId != null ? "id > ?" : null;
+        String[] args = afterId != null ? new String[]{afterId} : null;
+        try (Cursor c = getReadableDatabase().query(BOOKS, null, selection, args,
+                null, null, "id", String.valueOf(limit))) {
+            while (c.moveToNext()) out.add(readBook(c));
+        }
+        return out;
+    }
+
+    void deleteBook(@NonNull String id) {
+        getWritableDatabase().delete(BOOKS, "id = ?", new String[]{id});
+    }
+
+    private static Book readBook(Cursor c) {
+        Book b = new Book();
+        b.id = c.getString(c.getColumnIndexOrThrow("id"));
+        b.title = c.getString(c.getColumnIndexOrThrow("title"));
+        b.description = c.getString(c.getColumnIndexOrThrow("description"));
+        b.genre = c.getString(c.getColumnIndexOrThrow("genre"));
+        b.authorIds = splitIds(c.getString(c.getColumnIndexOrThrow("author_ids")));
+        b.downloadUrl = c.getString(c.getColumnIndexOrThrow("download_url"));
+        b.imageUrl = c.getString(c.getColumnIndexOrThrow("image_url"));
+        b.coverSmallUrl = c.getString(c.getColumnIndexOrThrow("cover_small_url"));
+        b.coverMediumUrl = c.getString(c.getColumnIndexOrThrow("cover_medium_url"));
+        b.coverLargeUrl = c.getString(c.getColumnIndexOrThrow("cover_large_url"));
+        b.sha256 = c.getString(c.getColumnIndexOrThrow("sha256"));
+        b.updatedAt = c.getLong(c.getColumnIndexOrThrow("updated_at"));
+        return b;
+    }
+
+    // ====== Authors ======
+
+    void putAuthor(@NonNull Author a) {
+        ContentValues v = new ContentValues();
+        v.put("id", a.id);
+        v.put("full_name", a.fullName);
+        v.put("biography", a.biography);
+        v.put("book_ids", joinIds(a.bookIds));
+        v.put("updated_at", a.updatedAt);
+        getWritableDatabase().insertWithOnConflict(AUTHORS, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    @Nullable
+    Author getAuthor(@NonNull String id) {
+        try (Cursor c = getReadableDatabase().query(AUTHORS, null, "id = ?",
+                new String[]{id}, null, null, null)) {
+            return c.moveToFirst() ? readAuthor(c) : null;
+        }
+    }
+
+    /** Up to {@code limit} authors with ids after {@code afterId}, in key order. */
+    @NonNull
+    List<Author> getAuthorsPage(@Nullable String afterId, int limit) {
+        List<Author> out = new ArrayList<>();
+        String selection = afterId != null ? "id > ?" : null;
+        String[] args = afterId != null ? new String[]{afterId} : null;
+        try (Cursor c = getReadableDatabase().query(AUTHORS, null, selection, args,
+                null, null, "id", String.valueOf(limit))) {
+            while (c.moveToNext()) out.add(readAuthor(c));
+        }
+        return out;
+    }
+
+    /** Batch lookup; ids that are not cached are simply absent from the result. */
+    @NonNull
+    List<Author> getAuthors(@NonNull List<String> ids) {
+        List<Author> out = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_ARGS) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_ARGS));
+            String marks = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            try (Cursor c = getReadableDatabase().query(AUTHORS, null, "id IN (" + marks + ")",
+                    chunk.toArray(new String[0]), null, null, null)) {
+                while (c.moveToNext()) out.add(readAuthor(c));
+            }
+        }
+        return out;
+    }
+
+    void deleteAuthor(@NonNull String id) {
+        getWritableDatabase().delete(AUTHORS, "id = ?", new String[]{id});
+    }
+
+    private static Author readAuthor(Cursor c) {
+        Author a = new Author();
+        a.id = c.getString(c.getColumnIndexOrThrow("id"));
+        a.fullName = c.getString(c.getColumnIndexOrThrow("full_name"));
+        a.biography = c.getString(c.getColumnIndexOrThrow("biography"));
+        a.bookIds = splitIds(c.getString(c.getColumnIndexOrThrow("book_ids")));
+        a.updatedAt = c.getLong(c.getColumnIndexOrThrow("updated_at"));
+        return a;
+    }
+
+    // ====== Users ======
+
+    void putUser(@NonNull User u) {
+        ContentValues v = new ContentValues();
+        v.put("uid", u.uid);
+        v.put("email", u.email);
+        v.put("nickname", u.nickname);
+        v.put("avatar_url", u.avatarUrl);
+        getWritableDatabase().insertWithOnConflict(USERS, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    @Nullable
+    User getUser(@NonNull String uid) {
+        try (Cursor c = getReadableDatabase().query(USERS, null, "uid = ?",
+                new String[]{uid}, null, null, null)) {
+            if (!c.moveToFirst()) return null;
+            User u = new User();
+            u.uid = c.getString(c.getColumnIndexOrThrow("uid"));
+            u.email = c.getString(c.getColumnIndexOrThrow("email"));
+            u.nickname = c.getString(c.getColumnIndexOrThrow("nickname"));
+            u.avatarUrl = c.getString(c.getColumnIndexOrThrow("avatar_url"));
+            return u;
+        }
+    }
+
+    // ====== Helpers ======
+
+    @Nullable
+    private static String joinIds(@Nullable List<String> ids) {
+        return ids == null ? null : String.join(ID_SEPARATOR, ids);
+    }
+
+    @NonNull
+    private static List<String> splitIds(@Nullable String joined) {
+        if (joined == null || joined.isEmpty()) return Collections.emptyList();
+        return new ArrayList<>(Arrays.asList(joined.split(ID_SEPARATOR)));
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.homelibrary.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.data.models.User;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Disk-first access to the catalog. Screens read cached books, authors and users
+ * from {@link CatalogDatabase} and render immediately, while {@link #startSync()}
+ * streams deltas from RTDB into the cache.
+ *
+ * <p>Delta sync relies on the "updatedAt" server timestamp written by
+ * {@link DBManager}: after the first full pass only children with
+ * updatedAt >= last synced marker are requested
+ * (needs ".indexOn": "updatedAt" on "books" and "authors").
+ * Удаления, произошедшие пока приложение было офлайн, в дельту не попадают.
+ */
+public class CatalogRepository {
+
+    /** Result callback, always invoked on the main thread. */
+    public interface Callback<T> {
+        void onResult(@Nullable T value);
+    }
+
+    private static CatalogRepository instance;
+
+    /** Delta-sync markers; cleared by {@link CatalogDatabase} on upgrade. */
+    static final String PREFS = "catalog_sync";
+    private static final String KEY_BOOKS_SYNCED = "books_synced_at";
+    private static final String KEY_AUTHORS_SYNCED = "authors_synced_at";
+    /** Rows read from disk per search index seeding step. */
+    private static final int SEED_PAGE = 500;
+    /** Delta-synced nodes: "books" and "authors". */
+    private static final int SYNCED_NODES = 2;
+
+    private final Context app;
+    private final CatalogDatabase db;
+    private final SharedPreferences prefs;
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private boolean syncing = false;
+    // IO thread only
+    private boolean seeded = false;
+    private int firstPassesApplied = 0;
+
+    private CatalogRepository(Context ctx) {
+        app = ctx.getApplicationContext();
+        db = new CatalogDatabase(app);
+        prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    /** Singleton accessor. */
+    public static synchronized CatalogRepository getInstance(@NonNull Context ctx) {
+        if (instance == null) instance = new CatalogRepository(ctx);
+        return instance;
+    }
+
+    // ======================= Reads (disk) =======================
+
+    public void loadBook(@NonNull String bookId, @NonNull Callback<Book> callback) {
+        io.execute(() -> post(callback, db.getBook(bookId)));
+    }
+
+    public void loadBooks(@NonNull Callback<List<Book>> callback) {
+        io.execute(() -> post(callback, db.getBooks()));
+    }
+
+    public void loadBooksPage(@Nullable String afterId, int limit,
+                              @NonNull Callback<List<Book>> callback) {
+        io.execute(() -> post(callback, db.getBooksPage(afterId, limit)));
+    }
+
+    public void loadAuthor(@NonNull String authorId, @NonNull Callback<Author> callback) {
+        io.execute(() -> post(callback, db.getAuthor(authorId)));
+    }
+
+    public void loadAuthors(@NonNull List<String> authorIds, @NonNull Callback<List<Author>> callback) {
+        io.execute(() -> post(callback, db.getAuthors(authorIds)));
+    }
+
+    public void loadUser(@NonNull String uid, @NonNull Callback<User> callback) {
+        io.execute(() -> post(callback, db.getUser(uid)));
+    }
+
+    private <T> void post(Callback<T> callback, @Nullable T value) {
+        main.post(() -> callback.onResult(value));
+    }
+
+    // ======================= Writes (disk) =======================
+
+    /** Stores a freshly fetched book so the next read is served from disk. */
+    public void cacheBook(@Nullable Book book) {
+        if (book == null || book.id == null) return;
+        io.execute(() -> db.putBook(book));
+    }
+
+    public void cacheAuthor(@Nullable Author author) {
+        if (author == null || author.id == null) return;
+        io.execute(() -> db.putAuthor(author));
+    }
+
+    public void cacheUser(@Nullable User user) {
+        if (user == null || user.uid == null) return;
+        io.execute(() -> db.putUser(user));
+    }
+
+    // ======================= Delta sync =======================
+
+    /**
+     * Seeds {@link SearchIndex} from disk on the IO thread and attaches delta
+     * listeners on "books" and "authors", which also keep the index current.
+     * The index is ready once seeded from a non-empty cache, otherwise once
+     * the first sync pass has been applied.
+     * Safe to call repeatedly; only the first call does work.
+     */
+    public synchronized void startSync() {
+        if (syncing) return;
+        syncing = true;
+
+        io.execute(() -> {
+            // Opening runs any schema upgrade, which may reset the markers read below.
+            db.getWritableDatabase();
+            listenAll();
+            seedAuthors(null);
+        });
+    }
+
+    private void listenAll() {
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        listenDeltas(root.child(CatalogDatabase.BOOKS), new DeltaListener(KEY_BOOKS_SYNCED) {
+            @Override long store(@NonNull DataSnapshot ds) {
+                Book b = SnapshotMappers.BOOK.map(ds);
+                if (b == null || b.id == null) return 0;
+                db.putBook(b);
+                SearchIndex.getInstance().putBook(b);
+                return b.updatedAt;
+            }
+
+            @Override void delete(@NonNull String key) {
+                db.deleteBook(key);
+                SearchIndex.getInstance().removeBook(key);
+            }
+        });
+        listenDeltas(root.child(CatalogDatabase.AUTHORS), new DeltaListener(KEY_AUTHORS_SYNCED) {
+            @Override long store(@NonNull DataSnapshot ds) {
+                Author a = SnapshotMappers.AUTHOR.map(ds);
+                if (a == null || a.id == null) return 0;
+                db.putAuthor(a);
+                AuthorResolver.getInstance(app).put(a);
+                SearchIndex.getInstance().putAuthor(a);
+                return a.updatedAt;
+            }
+
+            @Override void delete(@NonNull String key) {
+                db.deleteAuthor(key);
+                SearchIndex.getInstance().removeAuthor(key);
+            }
+        });
+    }
+
+    /**
+     * Seeds {@link SearchIndex} from disk {@link #SEED_PAGE} rows per IO task,
+     * authors first, so the catalog is never loaded whole and reads queued
+     * behind the seed wait at most one page.
+     */
+    private void seedAuthors(@Nullable String afterId) {
+        List<Author> page = db.getAuthorsPage(afterId, SEED_PAGE);
+        for (Author a : page) SearchIndex.getInstance().seedAuthor(a);
+        if (page.size() == SEED_PAGE) {
+            String last = page.get(page.size() - 1).id;
+            io.execute(() -> seedAuthors(last));
+        } else {
+            io.execute(() -> seedBooks(null));
+        }
+    }
+
+    private void seedBooks(@Nullable String afterId) {
+        List<Book> page = db.getBooksPage(afterId, SEED_PAGE);
+        for (Book b : page) SearchIndex.getInstance().seedBook(b);
+        if (page.size() == SEED_PAGE) {
+            String last = page.get(page.size() - 1).id;
+            io.execute(() -> seedBooks(last));
+        } else {
+            seeded = true;
+            if (afterId != null || !page.isEmpty()) {
+                SearchIndex.getInstance().markReady();
+            } else {
+                markReadyIfSynced();
+            }
+        }
+    }
+
+    /** An empty cache: the index is complete once both first passes are in. */
+    private void markReadyIfSynced() {
+        if (seeded && firstPassesApplied == SYNCED_NODES) SearchIndex.getInstance().markReady();
+    }
+
+    private void listenDeltas(DatabaseReference ref, DeltaListener listener) {
+        long since = listener.marker;
+        Query q = since > 0 ? ref.orderByChild(DBManager.UPDATED_AT).startAt(since) : ref;
+        q.addChildEventListener(listener);
+        // Fires after the child events of the same data, so the task lands
+        // on the IO queue behind their writes.
+        q.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                io.execute(() -> {
+                    firstPassesApplied++;
+                    markReadyIfSynced();
+                });
+            }
+
+            @Override public void onCancelled(@NonNull DatabaseError e) { }
+        });
+    }
+
+    /**
+     * Writes child events to disk on the IO thread and advances the
+     * last-synced marker to the newest updatedAt seen.
+     */
+    private abstract class DeltaListener implements ChildEventListener {
+
+        private final String markerKey;
+        private long marker;
+
+        DeltaListener(String markerKey) {
+            this.markerKey = markerKey;
+            this.marker = prefs.getLong(markerKey, 0);
+        }
+
+        abstract long store(@NonNull DataSnapshot ds);
+
+        abstract void delete(@NonNull String key);
+
+        private void onUpsert(DataSnapshot ds) {
+            io.execute(() -> {
+                long updatedAt = store(ds);
+                if (updatedAt > marker) {
+                    marker = updatedAt;
+                    prefs.edit().putLong(markerKey, marker).apply();
+                }
+            });
+        }
+
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot ds, @Nullable String prev) {
+            onUpsert(ds);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot ds, @Nullable String prev) {
+            onUpsert(ds);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot ds) {
+            String key = ds.getKey();
+            if (key != null) io.execute(() -> delete(key));
+        }
+
+        @Override public void onChildMoved(@NonNull DataSnapshot d, @Nullable String p) { }
+        @Override public void onCancelled(@NonNull DatabaseError e) { }
+    }
+}
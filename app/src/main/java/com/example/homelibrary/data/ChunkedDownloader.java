@@ -0,0 +1,488 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Blocking HTTP downloader that splits a file into {@link #CHUNK_SIZE} ranges
+ * fetched over several connections at once. Chunks are written with positional
+ * {@link FileChannel} writes into a preallocated "{name}.part" file; finished
+ * chunks are recorded in "{name}.part.state" so a download interrupted by
+ * process death continues where it stopped. The result is checked against the
+ * caller's SHA-256 or, failing that, the MD5 advertised by the server
+ * (x-goog-hash / Content-MD5) before it is moved into place.
+ * Servers without range support are downloaded in one stream.
+ * A {@link RangeScheduler} decides the chunk order, so a reader can ask for
+ * the parts of the file it needs first.
+ */
+public class ChunkedDownloader {
+
+    /** Called from download threads; throttle before touching UI. */
+    public interface ProgressListener {
+        void onProgress(long downloadedBytes, long totalBytes);
+    }
+
+    public static final int DEFAULT_CONNECTIONS = 4;
+    static final long CHUNK_SIZE = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_ATTEMPTS = 3;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+    private static final int STATE_MAGIC = 0x484c4431; // "HLD1"
+
+    private final int connections;
+
+    public ChunkedDownloader() {
+        this(DEFAULT_CONNECTIONS);
+    }
+
+    public ChunkedDownloader(int connections) {
+        this.connections = Math.max(1, connections);
+    }
+
+    /**
+     * Downloads {@code url} into {@code dest}, resuming a previous attempt if its
+     * state still matches the remote file.
+     *
+     * @param sha256    expected hex digest, or null to rely on the server's MD5
+     * @param cancelled polled between reads; a cancelled download keeps its progress
+     * @throws IOException on network errors, cancellation or checksum mismatch
+     */
+    public void download(@NonNull String url, @NonNull File dest, @Nullable String sha256,
+                         @Nullable ProgressListener listener,
+                         @NonNull BooleanSupplier cancelled) throws IOException {
+        download(url, dest, sha256, listener, cancelled, null);
+    }
+
+    /**
+     * Same as above, letting {@code ranges} reorder chunks while the download runs
+     * so a reader can open {@link #partFile} before it completes.
+     */
+    public void download(@NonNull String url, @NonNull File dest, @Nullable String sha256,
+                         @Nullable ProgressListener listener,
+                         @NonNull BooleanSupplier cancelled,
+                         @Nullable RangeScheduler ranges) throws IOException {
+        boolean complete = false;
+        try {
+            downloadVerified(url, dest, sha256, listener, cancelled, ranges);
+            complete = true;
+        } finally {
+            if (ranges != null) ranges.finish(complete);
+        }
+    }
+
+    /** Where an unfinished download of {@code dest} is written. */
+    @NonNull
+    public static File partFile(@NonNull File dest) {
+        return new File(dest.getPath() + ".part");
+    }
+
+    private void downloadVerified(String url, File dest, @Nullable String sha256,
+                                  @Nullable ProgressListener listener, BooleanSupplier cancelled,
+                                  @Nullable RangeScheduler ranges) throws IOException {
+        File dir = dest.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File part = partFile(dest);
+        File stateFile = new File(dest.getPath() + ".part.state");
+
+        Remote remote = probe(url);
+        if (remote.rangeSupported && remote.length > 0) {
+            downloadChunked(url, remote, part, stateFile, listener, cancelled,
+                    ranges != null ? ranges : new RangeScheduler());
+        } else {
+            stateFile.delete();
+            downloadStream(url, remote, part, listener, cancelled);
+        }
+
+        try {
+            verify(part, sha256, remote.md5);
+        } catch (IOException e) {
+            part.delete();
+            stateFile.delete();
+            throw e;
+        }
+        if (dest.exists() && !dest.delete()) throw new IOException("Cannot replace " + dest);
+        if (!part.renameTo(dest)) throw new IOException("Cannot move " + part + " to " + dest);
+        stateFile.delete();
+    }
+
+    // ====== Probe ======
+
+    /** What a one-byte range request tells about the remote file. */
+    private static final class Remote {
+        long length = -1;
+        boolean rangeSupported;
+        /** ETag or Last-Modified, sent back as If-Range. */
+        String validator = "";
+        @Nullable
+        byte[] md5;
+    }
+
+    private static Remote probe(String url) throws IOException {
+        HttpURLConnection conn = open(url);
+        conn.setRequestProperty("Range", "bytes=0-0");
+        try {
+            int code = conn.getResponseCode();
+            Remote r = new Remote();
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                r.rangeSupported = true;
+                r.length = totalFromContentRange(conn.getHeaderField("Content-Range"));
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                r.length = conn.getContentLengthLong();
+            } else {
+                throw new IOException("HTTP " + code + " for " + url);
+            }
+            String etag = conn.getHeaderField("ETag");
+            String modified = conn.getHeaderField("Last-Modified");
+            r.validator = etag != null ? etag : modified != null ? modified : "";
+            r.md5 = md5Header(conn, code == HttpURLConnection.HTTP_OK);
+            return r;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static long totalFromContentRange(@Nullable String header) {
+        // "bytes 0-0/12345"; "*" means unknown
+        if (header == null) return -1;
+        int slash = header.lastIndexOf('/');
+        if (slash < 0) return -1;
+        try {
+            return Long.parseLong(header.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * MD5 of the whole object from GCS/Firebase Storage (x-goog-hash always
+     * describes the object). Content-MD5 describes the response body, so it is
+     * only used when the body is the whole file.
+     */
+    @Nullable
+    private static byte[] md5Header(HttpURLConnection conn, boolean wholeBody) {
+        List<String> hashes = conn.getHeaderFields().get("x-goog-hash");
+        List<String> values = new ArrayList<>();
+        if (hashes != null) {
+            for (String h : hashes) {
+                for (String v : h.split(",")) values.add(v.trim());
+            }
+        }
+        String contentMd5 = conn.getHeaderField("Content-MD5");
+        if (contentMd5 != null && wholeBody) values.add("md5=" + contentMd5.trim());
+        for (String v : values) {
+            if (!v.startsWith("md5=")) continue;
+            try {
+                return Base64.getDecoder().decode(v.substring(4));
+            } catch (IllegalArgumentException ignored) { }
+        }
+        return null;
+    }
+
+    // ====== Chunked ======
+
+    private void downloadChunked(String url, Remote remote, File part, File stateFile,
+                                 @Nullable ProgressListener listener,
+                                 BooleanSupplier cancelled, RangeScheduler order) throws IOException {
+        int chunkCount = (int) ((remote.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        State state = State.read(stateFile);
+        if (state == null || !state.matches(url, remote, chunkCount)
+                || part.length() != remote.length) {
+            state = new State(url, remote.validator, remote.length, chunkCount);
+            try (RandomAccessFile raf = new RandomAccessFile(part, "rw")) {
+                raf.setLength(remote.length); // preallocate so every chunk can be written in place
+            }
+            state.write(stateFile);
+        }
+
+        int pending = 0;
+        long done = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            if (state.done.get(i)) {
+                done += chunkLength(i, remote.length);
+            } else {
+                pending++;
+            }
+        }
+        order.start(remote.length, CHUNK_SIZE, state.done);
+        AtomicLong downloaded = new AtomicLong(done);
+        if (listener != null) listener.onProgress(done, remote.length);
+        if (pending == 0) return;
+
+        int workers = Math.min(connections, pending);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        State s = state;
+        try (RandomAccessFile raf = new RandomAccessFile(part, "rw");
+             FileChannel channel = raf.getChannel()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    int chunk;
+                    while ((chunk = order.next()) >= 0) {
+                        fetchChunk(url, remote, chunk, channel, downloaded, listener, cancelled);
+                        s.markDone(chunk, stateFile);
+                        order.chunkDone(chunk);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) await(f);
+            channel.force(false);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void fetchChunk(String url, Remote remote, int chunk, FileChannel channel,
+                                   AtomicLong downloaded, @Nullable ProgressListener listener,
+                                   BooleanSupplier cancelled) throws IOException {
+        long start = chunk * CHUNK_SIZE;
+        long length = chunkLength(chunk, remote.length);
+        IOException last = null;
+        for (int attempt = 0; attempt < CHUNK_ATTEMPTS; attempt++) {
+            long written = 0;
+            try {
+                HttpURLConnection conn = open(url);
+                conn.setRequestProperty("Range",
+                        "bytes=" + start + "-" + (start + length - 1));
+                if (!remote.validator.isEmpty()) conn.setRequestProperty("If-Range", remote.validator);
+                try {
+                    int code = conn.getResponseCode();
+                    if (code == HttpURLConnection.HTTP_OK) {
+                        // If-Range failed: the file changed since the download started
+                        throw new RemoteChangedException(url);
+                    }
+                    if (code != HttpURLConnection.HTTP_PARTIAL) throw new IOException("HTTP " + code);
+                    try (InputStream in = conn.getInputStream()) {
+                        byte[] buf = new byte[BUFFER_SIZE];
+                        int n;
+                        while (written < length && (n = in.read(buf, 0,
+                                (int) Math.min(buf.length, length - written))) != -1) {
+                            if (cancelled.getAsBoolean()) throw new CancelledException();
+                            ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                            long pos = start + written;
+                            while (bb.hasRemaining()) pos += channel.write(bb, pos);
+                            written += n;
+                            long total = downloaded.addAndGet(n);
+                            if (listener != null) listener.onProgress(total, remote.length);
+                        }
+                    }
+                } finally {
+                    conn.disconnect();
+                }
+                if (written != length) throw new IOException("Short chunk " + chunk);
+                return;
+            } catch (CancelledException | RemoteChangedException e) {
+                downloaded.addAndGet(-written);
+                throw e;
+            } catch (IOException e) {
+                downloaded.addAndGet(-written);
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    private static long chunkLength(int chunk, long total) {
+        return Math.min(CHUNK_SIZE, total - chunk * CHUNK_SIZE);
+    }
+
+    private static void await(Future<?> f) throws IOException {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancelledException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    // ====== Single stream ======
+
+    private static void downloadStream(String url, Remote remote, File part,
+                                       @Nullable ProgressListener listener,
+                                       BooleanSupplier cancelled) throws IOException {
+        HttpURLConnection conn = open(url);
+        try {
+            int code = conn.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + code);
+            long done = 0;
+            try (InputStream in = conn.getInputStream();
+                 FileOutputStream out = new FileOutputStream(part)) {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    if (cancelled.getAsBoolean()) throw new CancelledException();
+                    out.write(buf, 0, n);
+                    done += n;
+                    if (listener != null) listener.onProgress(done, remote.length);
+                }
+                out.getFD().sync();
+            }
+            if (remote.length > 0 && done != remote.length) throw new IOException("Truncated download");
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    // ====== Verification ======
+
+    private static void verify(File file, @Nullable String sha256, @Nullable byte[] md5)
+            throws IOException {
+        if (sha256 != null) {
+            String actual = hex(digest(file, "SHA-256"));
+            if (!actual.equalsIgnoreCase(sha256)) throw new IOException("SHA-256 mismatch");
+        } else if (md5 != null) {
+            if (!MessageDigest.isEqual(md5, digest(file, "MD5"))) throw new IOException("MD5 mismatch");
+        }
+    }
+
+    /** Hex SHA-256 of a file, the key of {@link BookStorage}'s blobs. */
+    static String sha256(File file) throws IOException {
+        return hex(digest(file, "SHA-256"));
+    }
+
+    private static byte[] digest(File file, String algorithm) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buf)) != -1) md.update(buf, 0, n);
+        }
+        return md.digest();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(String.format(Locale.ROOT, "%02x", b));
+        return sb.toString();
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        // byte offsets must refer to the stored file, not a gzip stream
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        return conn;
+    }
+
+    // ====== Resume state ======
+
+    /** Finished-chunk bitmap persisted next to the .part file. */
+    private static final class State {
+        final String url;
+        final String validator;
+        final long length;
+        final int chunkCount;
+        final BitSet done;
+
+        State(String url, String validator, long length, int chunkCount) {
+            this(url, validator, length, chunkCount, new BitSet(chunkCount));
+        }
+
+        private State(String url, String validator, long length, int chunkCount, BitSet done) {
+            this.url = url;
+            this.validator = validator;
+            this.length = length;
+            this.chunkCount = chunkCount;
+            this.done = done;
+        }
+
+        boolean matches(String url, Remote remote, int chunkCount) {
+            // signed download urls rotate tokens, so the validator decides, not the url
+            return length == remote.length && this.chunkCount == chunkCount
+                    && !validator.isEmpty() && validator.equals(remote.validator);
+        }
+
+        synchronized void markDone(int chunk, File file) throws IOException {
+            done.set(chunk);
+            write(file);
+        }
+
+        synchronized void write(File file) throws IOException {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                out.writeInt(STATE_MAGIC);
+                out.writeUTF(url);
+                out.writeUTF(validator);
+                out.writeLong(length);
+                out.writeInt(chunkCount);
+                long[] words = done.toLongArray();
+                out.writeInt(words.length);
+                for (long w : words) out.writeLong(w);
+            }
+            if (!tmp.renameTo(file)) throw new IOException("Cannot write " + file);
+        }
+
+        @Nullable
+        static State read(File file) {
+            if (!file.exists()) return null;
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                if (in.readInt() != STATE_MAGIC) return null;
+                String url = in.readUTF();
+                String validator = in.readUTF();
+                long length = in.readLong();
+                int chunkCount = in.readInt();
+                long[] words = new long[in.readInt()];
+                for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+                return new State(url, validator, length, chunkCount, BitSet.valueOf(words));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    // ====== Errors ======
+
+    /** Thrown when the caller cancelled; the .part file and its state are kept. */
+    public static class CancelledException extends IOException {
+        CancelledException() {
+            super("Download cancelled");
+        }
+    }
+
+    /** Remote file changed mid-download; the next attempt starts over. */
+    private static class RemoteChangedException extends IOException {
+        RemoteChangedException(String url) {
+            super("Remote file changed: " + url);
+        }
+    }
+}
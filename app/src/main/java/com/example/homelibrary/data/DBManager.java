@@ -1,22 +1,53 @@
 package com.example.homelibrary.data;
 
 import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.models.AuthorMapper;
 import com.example.homelibrary.data.models.Book;
 import com.example.homelibrary.data.models.User;
+import com.example.homelibrary.data.models.UserMapper;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages low-level interactions with Firebase Realtime Database.
+ *
+ * <p>Every book also has a row under "feed/{bookId}": the {@link #FEED_FIELDS}
+ * of the book plus "authorNames/{authorId}" = full name, so the feed renders
+ * from one shallow query. Writes to books and authors update their feed rows
+ * in the same multi-path {@code updateChildren}; several writes can be grouped
+ * the same way with {@link #batch()}.
+ *
+ * <p>Title words are indexed under "search_index/{token}/{bookId}" = true,
+ * tokens as produced by {@link SearchIndex#tokenize}, for {@link SearchManager}'s
+ * prefix range queries.
  */
 public class DBManager {
 
     private static DBManager instance;
 
     private static final String USERS = "users";
-    private static final String AUTHORS = "authors";
-    private static final String BOOKS = "books";
+    static final String AUTHORS = "authors";
+    static final String BOOKS = "books";
+    static final String FEED = "feed";
+    /** Child of a feed row mapping author id to full name. */
+    static final String AUTHOR_NAMES = "authorNames";
+    static final String SEARCH_INDEX = "search_index";
+    /** Book fields copied into its feed row: what a feed card shows. */
+    static final List<String> FEED_FIELDS = Arrays.asList("id", "title", "genre",
+            "authorIds", "imageUrl", "coverSmallUrl", "coverMediumUrl", "coverLargeUrl");
+
+    /** Server timestamp child used by {@link CatalogRepository} for delta sync. */
+    static final String UPDATED_AT = "updatedAt";
 
     private final DatabaseReference db;
 
@@ -36,6 +67,11 @@ public class DBManager {
         return instance;
     }
 
+    /** Empty batch of writes committed together; see {@link WriteBatch}. */
+    public WriteBatch batch() {
+        return new WriteBatch(db);
+    }
+
     // ====== User operations ======
 
     /**
@@ -44,7 +80,7 @@ public class DBManager {
      * @param user a User model containing uid, email, and other profile data
      */
     public void saveUser(User user) {
-        db.child(USERS).child(user.uid).setValue(user);
+        db.child(USERS).child(user.uid).setValue(UserMapper.toMap(user));
     }
 
     /**
@@ -57,27 +93,57 @@ public class DBManager {
     // ====== Author operations ======
 
     /**
-     * Saves an Author object under the "authors/{authorId}" path.
+     * Saves an Author object under the "authors/{authorId}" path, together with
+     * the author's name in the feed rows of their books.
      *
      * @param author an Author model containing id, fullName, biography, and bookIds
      */
-    public void saveAuthor(Author author) {
-        db.child(AUTHORS).child(author.id).setValue(author);
+    public Task<Void> saveAuthor(Author author) {
+        return batch().saveAuthor(author).commit();
     }
 
+    /**
+     * Updates one field of "authors/{authorId}". Changing the name or the book
+     * list also rewrites the name in the feed rows, which needs the other one
+     * read first.
+     */
+    @SuppressWarnings("unchecked")
     public Task<Void> updateAuthorField(String authorId, String key, Object value) {
-        return db.child(AUTHORS).child(authorId).child(key).setValue(value);
+        WriteBatch batch = batch()
+                .set(AUTHORS + "/" + authorId + "/" + key, value)
+                .set(AUTHORS + "/" + authorId + "/" + UPDATED_AT, ServerValue.TIMESTAMP);
+        if (!"fullName".equals(key) && !"bookIds".equals(key)) return batch.commit();
+
+        return db.child(AUTHORS).child(authorId).get().onSuccessTask(ds -> {
+            Author current = AuthorMapper.fromSnapshot(ds);
+            String name = "fullName".equals(key) ? (String) value
+                    : current != null ? current.fullName : null;
+            List<String> bookIds = "bookIds".equals(key) ? (List<String>) value
+                    : current != null ? current.bookIds : null;
+            return batch.feedNames(authorId, name, bookIds).commit();
+        });
     }
 
     // ====== Book metadata operations ======
 
     /**
-     * Saves book metadata under the "books/{bookId}" path.
+     * Saves book metadata under the "books/{bookId}" path, replaces its feed
+     * row and re-indexes its title. Author names and the previous title are
+     * read first; authors that can't be read are filled in by their next
+     * {@link #saveAuthor}.
      *
      * @param book a Book model containing id, title, description, genre, authorIds, и downloadLink
      */
-    public void saveBookMetadata(Book book) {
-        db.child(BOOKS).child(book.id).setValue(book);
+    public Task<Void> saveBookMetadata(Book book) {
+        return batch().saveBookMetadata(book).commit();
+    }
+
+    /**
+     * Same as {@link #saveBookMetadata(Book)} when the stored title is already
+     * known (null for a new book), so it isn't read first.
+     */
+    public Task<Void> saveBookMetadata(Book book, String previousTitle) {
+        return batch().saveBookMetadata(book, previousTitle).commit();
     }
 
     /**
@@ -89,6 +155,25 @@ public class DBManager {
      * @param value  new value to set at that key
      */
     public void updateBookField(String bookId, String key, Object value) {
-        db.child(BOOKS).child(bookId).child(key).setValue(value);
+        batch().updateBookField(bookId, key, value).commit();
+    }
+
+    // ====== Feed projection ======
+
+    /** Author id -> full name for the ids that could be read; never fails. */
+    Task<Map<String, Object>> authorNames(List<String> authorIds) {
+        List<String> ids = authorIds != null ? authorIds : new ArrayList<>();
+        List<Task<DataSnapshot>> reads = new ArrayList<>();
+        for (String id : ids) reads.add(db.child(AUTHORS).child(id).child("fullName").get());
+        return Tasks.whenAllComplete(reads).continueWith(done -> {
+            Map<String, Object> names = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Task<DataSnapshot> read = reads.get(i);
+                if (!read.isSuccessful()) continue;
+                String name = read.getResult().getValue(String.class);
+                if (name != null) names.put(ids.get(i), name);
+            }
+            return names;
+        });
     }
 }
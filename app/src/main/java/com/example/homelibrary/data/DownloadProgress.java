@@ -0,0 +1,45 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of one book download as exposed by {@link BookDownloadManager}.
+ */
+public final class DownloadProgress {
+
+    public enum State { NONE, QUEUED, RUNNING, DONE, FAILED }
+
+    public static final DownloadProgress NONE = new DownloadProgress(State.NONE, 0, -1);
+
+    @NonNull
+    public final State state;
+    public final long downloadedBytes;
+    /** -1 when the server did not report a length. */
+    public final long totalBytes;
+    /** Smoothed transfer rate, 0 until the first measurement. */
+    public final long bytesPerSecond;
+    /** Estimated time left, -1 when unknown. */
+    public final long etaMillis;
+
+    public DownloadProgress(@NonNull State state, long downloadedBytes, long totalBytes) {
+        this(state, downloadedBytes, totalBytes, 0, -1);
+    }
+
+    public DownloadProgress(@NonNull State state, long downloadedBytes, long totalBytes,
+                            long bytesPerSecond, long etaMillis) {
+        this.state = state;
+        this.downloadedBytes = downloadedBytes;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.etaMillis = etaMillis;
+    }
+
+    /** 0..1, or -1 when the total is unknown. */
+    public float fraction() {
+        return totalBytes > 0 ? Math.min(1f, downloadedBytes / (float) totalBytes) : -1f;
+    }
+
+    public boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+}
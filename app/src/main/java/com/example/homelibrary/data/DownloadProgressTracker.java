@@ -0,0 +1,203 @@
+package com.example.homelibrary.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.work.Data;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live progress and ETA of every book download, independent of any screen.
+ * <ul>
+ *   <li>Queue state comes from a single tag query over all download work, not
+ *   one query per book.</li>
+ *   <li>Byte counts come straight from running workers and are published at
+ *   most once per frame, however often the downloader reports.</li>
+ * </ul>
+ * Observers may come and go (e.g. a fragment in onPause); the tracker keeps
+ * running for the lifetime of the process.
+ */
+public final class DownloadProgressTracker {
+
+    private static DownloadProgressTracker instance;
+
+    static final String TAG_BOOK_PREFIX = "book:";
+
+    /** Speed is sampled over this window so one slow chunk doesn't swing the ETA. */
+    private static final long SPEED_WINDOW_MS = 500;
+    private static final float SPEED_SMOOTHING = 0.3f;
+
+    /** Written by worker threads, read on the main thread. */
+    private final Map<String, Live> live = new ConcurrentHashMap<>();
+    // main thread only
+    private final Map<String, DownloadProgress> latest = new HashMap<>();
+    private final Map<String, MutableLiveData<DownloadProgress>> outputs = new HashMap<>();
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final Choreographer.FrameCallback frame = t -> publishFrame();
+
+    private static final class Live {
+        volatile long downloaded;
+        volatile long total = -1;
+        volatile boolean dirty;
+        // main thread only
+        long sampleBytes;
+        long sampleAt;
+        long bytesPerSecond;
+    }
+
+    private DownloadProgressTracker(Context ctx) {
+        LiveData<List<WorkInfo>> all = WorkManager.getInstance(ctx.getApplicationContext())
+                .getWorkInfosByTagLiveData(BookDownloadManager.TAG_DOWNLOAD);
+        main.post(() -> all.observeForever(this::onWorkInfos));
+    }
+
+    public static synchronized DownloadProgressTracker getInstance(Context ctx) {
+        if (instance == null) {
+            instance = new DownloadProgressTracker(ctx);
+        }
+        return instance;
+    }
+
+    /** Progress of one book; must be observed on the main thread. */
+    @NonNull
+    public LiveData<DownloadProgress> progress(@NonNull String bookId) {
+        MutableLiveData<DownloadProgress> out = outputs.get(bookId);
+        if (out == null) {
+            DownloadProgress p = latest.get(bookId);
+            out = new MutableLiveData<>(p != null ? p : DownloadProgress.NONE);
+            outputs.put(bookId, out);
+        }
+        return out;
+    }
+
+    /** Called by {@link BookDownloadWorker} on every downloader callback, from any thread; cheap. */
+    void onBytes(@NonNull String bookId, long downloaded, long total) {
+        Live l = live.computeIfAbsent(bookId, k -> new Live());
+        // chunk threads report concurrently and may arrive out of order
+        if (downloaded > l.downloaded) l.downloaded = downloaded;
+        l.total = total;
+        l.dirty = true;
+        if (frameScheduled.compareAndSet(false, true)) {
+            main.post(() -> Choreographer.getInstance().postFrameCallback(frame));
+        }
+    }
+
+    // ====== Main thread ======
+
+    private void onWorkInfos(List<WorkInfo> infos) {
+        Map<String, WorkInfo> byBook = new HashMap<>();
+        for (WorkInfo info : infos) {
+            String id = bookId(info);
+            if (id == null) continue;
+            WorkInfo prev = byBook.get(id);
+            if (prev == null || rank(info.getState()) > rank(prev.getState())) {
+                byBook.put(id, info);
+            }
+        }
+        for (Map.Entry<String, WorkInfo> e : byBook.entrySet()) {
+            String id = e.getKey();
+            WorkInfo info = e.getValue();
+            if (info.getState() == WorkInfo.State.RUNNING) {
+                // bytes are fresher in the live map; only fill in after a process restart
+                if (live.containsKey(id)) continue;
+            } else {
+                live.remove(id);
+            }
+            // the list is re-delivered whenever any download changes; don't replay the rest
+            DownloadProgress p = fromWorkInfo(info);
+            DownloadProgress prev = latest.get(id);
+            if (prev == null || prev.state != p.state || prev.downloadedBytes != p.downloadedBytes) {
+                publish(id, p);
+            }
+        }
+    }
+
+    private void publishFrame() {
+        frameScheduled.set(false);
+        long now = SystemClock.elapsedRealtime();
+        for (Map.Entry<String, Live> e : live.entrySet()) {
+            Live l = e.getValue();
+            if (!l.dirty) continue;
+            l.dirty = false;
+            long done = l.downloaded;
+            long total = l.total;
+            if (l.sampleAt == 0) {
+                l.sampleAt = now;
+                l.sampleBytes = done;
+            } else if (now - l.sampleAt >= SPEED_WINDOW_MS) {
+                long instant = (done - l.sampleBytes) * 1000 / (now - l.sampleAt);
+                l.bytesPerSecond = l.bytesPerSecond == 0 ? instant
+                        : (long) (l.bytesPerSecond * (1 - SPEED_SMOOTHING) + instant * SPEED_SMOOTHING);
+                l.sampleAt = now;
+                l.sampleBytes = done;
+            }
+            long eta = l.bytesPerSecond > 0 && total > 0
+                    ? (total - done) * 1000 / l.bytesPerSecond : -1;
+            publish(e.getKey(), new DownloadProgress(DownloadProgress.State.RUNNING,
+                    done, total, l.bytesPerSecond, eta));
+        }
+    }
+
+    private void publish(String bookId, DownloadProgress p) {
+        latest.put(bookId, p);
+        MutableLiveData<DownloadProgress> out = outputs.get(bookId);
+        if (out != null) out.setValue(p);
+    }
+
+    @Nullable
+    private static String bookId(WorkInfo info) {
+        for (String tag : info.getTags()) {
+            if (tag.startsWith(TAG_BOOK_PREFIX)) return tag.substring(TAG_BOOK_PREFIX.length());
+        }
+        return null;
+    }
+
+    /** Replaced work lingers as CANCELLED next to its successor; prefer the live one. */
+    private static int rank(WorkInfo.State s) {
+        switch (s) {
+            case RUNNING:
+            case ENQUEUED:
+            case BLOCKED:
+                return 3;
+            case SUCCEEDED:
+                return 2;
+            case FAILED:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private static DownloadProgress fromWorkInfo(WorkInfo info) {
+        Data p = info.getProgress();
+        long done = p.getLong(BookDownloadWorker.KEY_DOWNLOADED, 0);
+        long total = p.getLong(BookDownloadWorker.KEY_TOTAL, -1);
+        switch (info.getState()) {
+            case RUNNING:
+                return new DownloadProgress(DownloadProgress.State.RUNNING, done, total);
+            case SUCCEEDED:
+                return new DownloadProgress(DownloadProgress.State.DONE, done, total);
+            case FAILED:
+            case CANCELLED:
+                return new DownloadProgress(DownloadProgress.State.FAILED, done, total);
+            default:
+                return new DownloadProgress(DownloadProgress.State.QUEUED, done, total);
+        }
+    }
+}
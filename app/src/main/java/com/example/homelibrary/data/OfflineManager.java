@@ -0,0 +1,178 @@
+package com.example.homelibrary.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Offline-first setup of Realtime Database.
+ * <ul>
+ *   <li>{@link #bootstrap} enables disk persistence before anything touches the
+ *   database, so listeners answer from disk first and writes queue while
+ *   offline.</li>
+ *   <li>Only what the user is likely to open offline is kept synced: their own
+ *   node, the last {@value #RECENT_BOOKS} books viewed and the
+ *   {@value #SYNCED_DOWNLOADS} most recently read downloads. The catalog as a
+ *   whole is mirrored by {@link CatalogRepository} instead.</li>
+ *   <li>{@link #connected()} follows ".info/connected" for the offline banner.</li>
+ * </ul>
+ * Main thread only.
+ */
+public final class OfflineManager {
+
+    /**
+     * Persisted RTDB cache. Above the 10 MB default so the synced books and the
+     * author lookups behind them survive; the catalog itself lives in SQLite.
+     */
+    static final long PERSISTENCE_CACHE_BYTES = 32L * 1024 * 1024;
+    static final int RECENT_BOOKS = 20;
+    static final int SYNCED_DOWNLOADS = 50;
+    /**
+     * ".info/connected" is false until the first handshake; the banner waits
+     * this long so a normal start doesn't flash it.
+     */
+    private static final long OFFLINE_GRACE_MS = 3000;
+
+    private static final String PREFS = "offline";
+    private static final String KEY_RECENT = "recent_books";
+    /** RTDB keys cannot contain it. */
+    private static final String SEPARATOR = "/";
+
+    private static OfflineManager instance;
+
+    private final Context app;
+    private final SharedPreferences prefs;
+    private final DatabaseReference root;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<Boolean> connected = new MutableLiveData<>(true);
+    private final Runnable goOffline = () -> connected.setValue(false);
+
+    /** Most recent first. */
+    private final List<String> recent = new ArrayList<>();
+    private final Set<String> downloads = new HashSet<>();
+    private final Set<String> syncedBooks = new HashSet<>();
+    private String syncedUid;
+
+    private OfflineManager(Context ctx) {
+        app = ctx.getApplicationContext();
+        prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        root = FirebaseDatabase.getInstance().getReference();
+        String saved = prefs.getString(KEY_RECENT, "");
+        if (!saved.isEmpty()) recent.addAll(Arrays.asList(saved.split(SEPARATOR)));
+
+        root.child(".info/connected").addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot ds) {
+                if (Boolean.TRUE.equals(ds.getValue(Boolean.class))) {
+                    main.removeCallbacks(goOffline);
+                    connected.setValue(true);
+                } else {
+                    main.postDelayed(goOffline, OFFLINE_GRACE_MS);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError e) { }
+        });
+    }
+
+    /**
+     * Turns on disk persistence. Must run before the first
+     * {@code FirebaseDatabase.getReference}, i.e. from {@code Application.onCreate}.
+     */
+    public static synchronized void bootstrap(@NonNull Context ctx) {
+        if (instance != null) return;
+        FirebaseDatabase db = FirebaseDatabase.getInstance();
+        db.setPersistenceEnabled(true);
+        db.setPersistenceCacheSizeBytes(PERSISTENCE_CACHE_BYTES);
+        instance = new OfflineManager(ctx);
+    }
+
+    /** Singleton accessor; {@link #bootstrap} must have run. */
+    public static synchronized OfflineManager getInstance() {
+        if (instance == null) throw new IllegalStateException("OfflineManager.bootstrap not called");
+        return instance;
+    }
+
+    /** False while the database has no server connection. */
+    @NonNull
+    public LiveData<Boolean> connected() {
+        return connected;
+    }
+
+    // ====== keepSynced ======
+
+    /** Keeps the signed-in user's profile and shelf fresh on disk. */
+    public void onSignedIn() {
+        FirebaseUser user = AuthManager.getInstance().getCurrentUser();
+        if (user == null || user.getUid().equals(syncedUid)) return;
+        if (syncedUid != null) onSignedOut(); // switched accounts without a restart
+        syncedUid = user.getUid();
+        root.child("users").child(syncedUid).keepSynced(true);
+        BookStorage.getInstance(app).recentBooks(SYNCED_DOWNLOADS, ids -> {
+            if (syncedUid == null) return;
+            downloads.clear();
+            downloads.addAll(ids);
+            applyBooks();
+        });
+        applyBooks();
+    }
+
+    /** Stops syncing the previous user's data and forgets their history. */
+    public void onSignedOut() {
+        if (syncedUid != null) root.child("users").child(syncedUid).keepSynced(false);
+        syncedUid = null;
+        if (!recent.isEmpty()) {
+            recent.clear();
+            prefs.edit().remove(KEY_RECENT).apply();
+        }
+        downloads.clear();
+        applyBooks();
+    }
+
+    /** The book's detail page was opened. */
+    public void bookViewed(@NonNull String bookId) {
+        recent.remove(bookId);
+        recent.add(0, bookId);
+        while (recent.size() > RECENT_BOOKS) recent.remove(recent.size() - 1);
+        prefs.edit().putString(KEY_RECENT, TextUtils.join(SEPARATOR, recent)).apply();
+        applyBooks();
+    }
+
+    private void applyBooks() {
+        Set<String> want = new LinkedHashSet<>();
+        if (syncedUid != null) {
+            want.addAll(recent);
+            want.addAll(downloads);
+        }
+        DatabaseReference books = root.child("books");
+        for (String id : new ArrayList<>(syncedBooks)) {
+            if (want.contains(id)) continue;
+            books.child(id).keepSynced(false);
+            syncedBooks.remove(id);
+        }
+        for (String id : want) {
+            if (syncedBooks.add(id)) books.child(id).keepSynced(true);
+        }
+    }
+}
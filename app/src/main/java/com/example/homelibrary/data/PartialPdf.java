@@ -0,0 +1,174 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A PDF that is still downloading. Maps pages to byte ranges with
+ * {@link PdfLayout} and asks the {@link RangeScheduler} for them ahead of
+ * the rest of the file.
+ */
+public final class PartialPdf implements Closeable {
+
+    private final RangeScheduler ranges;
+    private final RandomAccessFile raf;
+    private final PdfLayout layout;
+    /** Page lookups read objects and block; one at a time keeps them ordered. */
+    private final ExecutorService layoutThread = Executors.newSingleThreadExecutor();
+    private final ExecutorService waiters = Executors.newCachedThreadPool();
+    // guarded by this
+    private final Map<Integer, List<long[]>> pageRanges = new HashMap<>();
+    private final Set<Integer> requested = new HashSet<>();
+
+    private PartialPdf(RangeScheduler ranges, RandomAccessFile raf, PdfLayout layout) {
+        this.ranges = ranges;
+        this.raf = raf;
+        this.layout = layout;
+    }
+
+    /**
+     * Waits for the trailer, xref and page tree root, which is all a PDF renderer
+     * needs to open the file. Blocking; call off the main thread.
+     *
+     * @throws PdfLayout.UnsupportedPdfException if the file can't be read piecewise
+     */
+    @NonNull
+    public static PartialPdf open(@NonNull File part, @NonNull RangeScheduler ranges)
+            throws IOException, InterruptedException {
+        long length = ranges.awaitLength();
+        RandomAccessFile raf = new RandomAccessFile(part, "r");
+        try {
+            PdfLayout layout = PdfLayout.parse(new Source(raf, ranges, length));
+            for (long[] r : layout.structureRanges()) ranges.prioritize(r[0], r[1]);
+            for (long[] r : layout.structureRanges()) ranges.await(r[0], r[1]);
+            return new PartialPdf(ranges, raf, layout);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The open part file. Stays valid when the finished download renames the
+     * file, so a renderer should read through it rather than the path.
+     */
+    @NonNull
+    public FileDescriptor fd() throws IOException {
+        return raf.getFD();
+    }
+
+    public int pageCount() {
+        return layout.pageCount();
+    }
+
+    /** True once every byte the page needs is on disk. */
+    public synchronized boolean isPageReady(int page) {
+        List<long[]> r = pageRanges.get(page);
+        if (r == null) return false;
+        for (long[] range : r) {
+            if (!ranges.isAvailable(range[0], range[1])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moves the page's bytes to the front of the download and runs {@code onReady}
+     * on a background thread once they are on disk. Repeated calls are ignored.
+     */
+    public void request(int page, @NonNull Runnable onReady) {
+        synchronized (this) {
+            if (!requested.add(page)) return;
+        }
+        layoutThread.execute(() -> {
+            List<long[]> r;
+            try {
+                r = layout.pageRanges(page);
+            } catch (IOException e) {
+                synchronized (this) {
+                    requested.remove(page);
+                }
+                return;
+            }
+            // prioritize() pushes to the front, so the start of the page ends up first
+            for (int i = r.size() - 1; i >= 0; i--) ranges.prioritize(r.get(i)[0], r.get(i)[1]);
+            synchronized (this) {
+                pageRanges.put(page, r);
+            }
+            waiters.execute(() -> {
+                try {
+                    for (long[] range : r) ranges.await(range[0], range[1]);
+                    onReady.run();
+                } catch (IOException | InterruptedException ignored) {
+                    // download stopped or reader closed
+                } finally {
+                    synchronized (this) {
+                        requested.remove(page);
+                    }
+                }
+            });
+        });
+    }
+
+    @Override
+    public void close() {
+        layoutThread.shutdownNow();
+        waiters.shutdownNow();
+        try {
+            raf.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /** Reads through {@link RangeScheduler}: ask for the bytes, wait, then read. */
+    private static final class Source implements PdfLayout.ByteSource {
+        private final RandomAccessFile raf;
+        private final RangeScheduler ranges;
+        private final long length;
+
+        Source(RandomAccessFile raf, RangeScheduler ranges, long length) {
+            this.raf = raf;
+            this.ranges = ranges;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @NonNull
+        @Override
+        public byte[] read(long pos, int len) throws IOException {
+            ranges.prioritize(pos, pos + len);
+            try {
+                ranges.await(pos, pos + len);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            // positional reads: the renderer shares the descriptor and its offset
+            ByteBuffer buf = ByteBuffer.allocate(len);
+            FileChannel ch = raf.getChannel();
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, pos + buf.position()) < 0) throw new EOFException();
+            }
+            return buf.array();
+        }
+    }
+}
@@ -0,0 +1,777 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Byte layout of a PDF, read from its cross-reference data: which file ranges
+ * must be present to open the document and to draw a given page. Used to
+ * read a book while it is still downloading.
+ * <p>
+ * Understands classic xref tables, xref streams and object streams (Flate,
+ * PNG predictors). Anything else (encryption, other filters, broken xref)
+ * throws {@link UnsupportedPdfException}; callers then wait for the whole file.
+ */
+public final class PdfLayout {
+
+    /** Random access to the file; {@link #read} blocks until the bytes are there. */
+    public interface ByteSource {
+        long length();
+
+        @NonNull
+        byte[] read(long pos, int len) throws IOException;
+    }
+
+    public static class UnsupportedPdfException extends IOException {
+        UnsupportedPdfException(String msg) {
+            super(msg);
+        }
+    }
+
+    private static final int TAIL = 1024;
+    /** Enough for the dictionary of almost any object; stream data isn't needed. */
+    private static final int HEAD_PROBE = 16 * 1024;
+    private static final int MAX_OBJECT = 8 * 1024 * 1024;
+    private static final int OBJ_STREAM_CACHE = 8;
+    /** Keys whose targets aren't needed to draw the page and usually lead elsewhere in the book. */
+    private static final Set<String> SKIP_KEYS = new HashSet<>(Arrays.asList(
+            "Parent", "P", "Dest", "Next", "Prev", "First", "Last", "B", "Thumb", "StructParents"));
+
+    private final ByteSource src;
+    private final long fileLength;
+    /** Object number → location; the newest xref section wins. */
+    private final Map<Integer, long[]> xref = new HashMap<>();
+    /** Start of every type-1 object and xref section, plus EOF; an object ends where the next begins. */
+    private long[] starts;
+    private final List<long[]> structure = new ArrayList<>();
+    private final Map<Integer, Map<String, Object>> nodes = new HashMap<>();
+    /** Refs of every /Pages and /Page object seen while descending; never pulled into a page. */
+    private final Set<Integer> treeRefs = new HashSet<>();
+    private final Map<Integer, ObjStm> objStms = new LinkedHashMap<Integer, ObjStm>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ObjStm> eldest) {
+            return size() > OBJ_STREAM_CACHE;
+        }
+    };
+    private Ref rootPages;
+    private int pageCount;
+
+    private PdfLayout(ByteSource src) {
+        this.src = src;
+        this.fileLength = src.length();
+    }
+
+    /** Reads the trailer, xref chain, catalog and page tree root. */
+    @NonNull
+    public static PdfLayout parse(@NonNull ByteSource src) throws IOException {
+        PdfLayout l = new PdfLayout(src);
+        try {
+            l.load();
+        } catch (Lexer.Malformed e) {
+            throw new UnsupportedPdfException(e.getMessage());
+        }
+        return l;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    /** Ranges a PDF renderer reads on open: header, trailer, xref data, catalog, page tree root. */
+    @NonNull
+    public List<long[]> structureRanges() {
+        return merge(structure);
+    }
+
+    /**
+     * Ranges needed to draw {@code page}: the page, everything it references and the
+     * resources it inherits from its ancestors. Blocks while reading the objects.
+     */
+    @NonNull
+    public List<long[]> pageRanges(int page) throws IOException {
+        try {
+            List<long[]> out = new ArrayList<>();
+            List<Ref> path = new ArrayList<>();
+            Ref ref = findPage(page, path);
+            Map<String, Object> dict = nodes.get(ref.num);
+            out.add(range(ref.num));
+            for (Ref ancestor : path) {
+                out.add(range(ancestor.num));
+                Object res = nodes.get(ancestor.num).get("Resources");
+                if (res != null) collect(res, out);
+            }
+            collect(dict, out);
+            return merge(out);
+        } catch (Lexer.Malformed e) {
+            throw new UnsupportedPdfException(e.getMessage());
+        }
+    }
+
+    // ====== Loading ======
+
+    private void load() throws IOException {
+        if (fileLength < 32) throw new UnsupportedPdfException("Too short");
+        structure.add(new long[]{0, Math.min(fileLength, HEAD_PROBE)}); // header, linearization dict
+
+        int tailLen = (int) Math.min(TAIL, fileLength);
+        long tailPos = fileLength - tailLen;
+        byte[] tail = src.read(tailPos, tailLen);
+        structure.add(new long[]{tailPos, fileLength});
+        int at = lastIndexOf(tail, "startxref");
+        if (at < 0) throw new UnsupportedPdfException("No startxref");
+        Lexer lx = new Lexer(tail, at + "startxref".length());
+        long xrefPos = lx.integer();
+
+        Map<String, Object> trailer = null;
+        List<Long> sections = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        ArrayDeque<Long> todo = new ArrayDeque<>();
+        todo.add(xrefPos);
+        while (!todo.isEmpty()) {
+            long pos = todo.poll();
+            if (pos < 0 || pos >= fileLength || !seen.add(pos)) continue;
+            sections.add(pos);
+            Map<String, Object> t = readXrefSection(pos);
+            if (trailer == null) trailer = t;
+            Object stm = t.get("XRefStm"); // hybrid files: the stream goes before /Prev
+            if (stm instanceof Long) todo.addFirst((Long) stm);
+            Object prev = t.get("Prev");
+            if (prev instanceof Long) todo.add((Long) prev);
+        }
+        if (trailer == null) throw new UnsupportedPdfException("No trailer");
+        if (trailer.containsKey("Encrypt")) throw new UnsupportedPdfException("Encrypted");
+
+        List<Long> offsets = new ArrayList<>(sections);
+        for (long[] e : xref.values()) {
+            if (e[0] == 1) offsets.add(e[1]);
+        }
+        offsets.add(fileLength);
+        starts = new long[offsets.size()];
+        for (int i = 0; i < starts.length; i++) starts[i] = offsets.get(i);
+        Arrays.sort(starts);
+        for (long s : sections) structure.add(new long[]{s, nextStart(s)});
+
+        Ref root = asRef(trailer.get("Root"));
+        structure.add(range(root.num));
+        Map<String, Object> catalog = dict(resolve(root));
+        rootPages = asRef(catalog.get("Pages"));
+        structure.add(range(rootPages.num));
+        Map<String, Object> pages = node(rootPages);
+        pageCount = (int) asLong(pages.get("Count"));
+        treeRefs.add(rootPages.num);
+    }
+
+    /** Parses one xref table or xref stream at {@code pos}; returns its trailer dictionary. */
+    private Map<String, Object> readXrefSection(long pos) throws IOException {
+        int len = (int) Math.min(nextGuess(pos), MAX_OBJECT);
+        byte[] buf = src.read(pos, len);
+        Lexer lx = new Lexer(buf, 0);
+        lx.skipWs();
+        if (lx.startsWith("xref")) {
+            lx.pos += 4;
+            while (true) {
+                lx.skipWs();
+                if (lx.startsWith("trailer")) {
+                    lx.pos += 7;
+                    return dict(lx.value());
+                }
+                int first = (int) lx.integer();
+                int count = (int) lx.integer();
+                for (int i = 0; i < count; i++) {
+                    long offset = lx.integer();
+                    lx.integer(); // generation
+                    lx.skipWs();
+                    byte type = lx.next();
+                    if (type == 'n' && offset > 0) putEntry(first + i, new long[]{1, offset, 0});
+                    else putEntry(first + i, new long[]{0, 0, 0});
+                }
+            }
+        }
+        Obj obj = lx.indirect();
+        Map<String, Object> d = dict(obj.value);
+        if (!"XRef".equals(name(d.get("Type"))) || obj.streamStart < 0) {
+            throw new UnsupportedPdfException("Bad xref at " + pos);
+        }
+        byte[] data = streamData(d, buf, obj.streamStart);
+        List<Object> w = array(d.get("W"));
+        int w0 = (int) asLong(w.get(0)), w1 = (int) asLong(w.get(1)), w2 = (int) asLong(w.get(2));
+        List<Object> index = d.containsKey("Index") ? array(d.get("Index"))
+                : Arrays.asList(0L, d.get("Size"));
+        int p = 0;
+        for (int s = 0; s + 1 < index.size(); s += 2) {
+            int first = (int) asLong(index.get(s));
+            int count = (int) asLong(index.get(s + 1));
+            for (int i = 0; i < count && p + w0 + w1 + w2 <= data.length; i++) {
+                long type = w0 == 0 ? 1 : field(data, p, w0);
+                long f2 = field(data, p + w0, w1);
+                long f3 = field(data, p + w0 + w1, w2);
+                p += w0 + w1 + w2;
+                putEntry(first + i, new long[]{type, f2, f3});
+            }
+        }
+        return d;
+    }
+
+    private void putEntry(int num, long[] entry) {
+        if (!xref.containsKey(num)) xref.put(num, entry);
+    }
+
+    // ====== Page tree ======
+
+    /** Descends by /Count so only the nodes on the way to the page are read. */
+    private Ref findPage(int index, List<Ref> path) throws IOException {
+        if (index < 0 || index >= pageCount) throw new IndexOutOfBoundsException("page " + index);
+        Ref current = rootPages;
+        while (true) {
+            Map<String, Object> n = node(current);
+            if (!"Pages".equals(name(n.get("Type")))) return current;
+            path.add(current);
+            List<Object> kids = array(n.get("Kids"));
+            boolean allLeaves = asLong(n.get("Count")) == kids.size();
+            Ref chosen = null;
+            for (Object k : kids) {
+                Ref kid = asRef(k);
+                treeRefs.add(kid.num);
+                long count;
+                if (allLeaves) {
+                    count = 1;
+                } else {
+                    Map<String, Object> kn = node(kid);
+                    count = "Pages".equals(name(kn.get("Type"))) ? asLong(kn.get("Count")) : 1;
+                }
+                if (index < count) {
+                    chosen = kid;
+                    break;
+                }
+                index -= count;
+            }
+            if (chosen == null) throw new UnsupportedPdfException("Page tree shorter than /Count");
+            current = chosen;
+        }
+    }
+
+    private Map<String, Object> node(Ref ref) throws IOException {
+        Map<String, Object> n = nodes.get(ref.num);
+        if (n == null) {
+            n = dict(resolve(ref));
+            nodes.put(ref.num, n);
+        }
+        return n;
+    }
+
+    /** Adds the range of every object reachable from {@code root}, without entering the page tree. */
+    private void collect(Object root, List<long[]> out) throws IOException {
+        Set<Integer> visited = new HashSet<>();
+        ArrayDeque<Object> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Object v = queue.poll();
+            if (v instanceof Ref) {
+                Ref r = (Ref) v;
+                if (treeRefs.contains(r.num) || !visited.add(r.num) || !xref.containsKey(r.num)) continue;
+                out.add(range(r.num));
+                Object target = resolve(r);
+                if (target instanceof Map && isTreeNode(dict(target))) {
+                    treeRefs.add(r.num);
+                    continue;
+                }
+                queue.add(target);
+            } else if (v instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> d = (Map<String, Object>) v;
+                for (Map.Entry<String, Object> e : d.entrySet()) {
+                    if (!SKIP_KEYS.contains(e.getKey())) queue.add(e.getValue());
+                }
+            } else if (v instanceof List) {
+                queue.addAll((List<?>) v);
+            }
+        }
+    }
+
+    private static boolean isTreeNode(Map<String, Object> d) {
+        String type = name(d.get("Type"));
+        return "Page".equals(type) || "Pages".equals(type);
+    }
+
+    // ====== Objects ======
+
+    /** File range holding object {@code num}; for compressed objects, their object stream. */
+    private long[] range(int num) throws IOException {
+        long[] e = xref.get(num);
+        if (e == null) throw new UnsupportedPdfException("No xref entry for " + num);
+        if (e[0] == 2) return range((int) e[1]);
+        if (e[0] != 1) throw new UnsupportedPdfException("Free object " + num);
+        return new long[]{e[1], nextStart(e[1])};
+    }
+
+    private Object resolve(Ref ref) throws IOException {
+        long[] e = xref.get(ref.num);
+        if (e == null || e[0] == 0) return null;
+        if (e[0] == 2) return objStm((int) e[1]).get((int) e[2], ref.num);
+        long[] r = range(ref.num);
+        int len = (int) Math.min(r[1] - r[0], MAX_OBJECT);
+        byte[] buf = src.read(r[0], Math.min(len, HEAD_PROBE));
+        try {
+            return new Lexer(buf, 0).indirect().value;
+        } catch (Lexer.Malformed truncated) {
+            if (buf.length == len) throw truncated;
+            return new Lexer(src.read(r[0], len), 0).indirect().value; // dictionary longer than the probe
+        }
+    }
+
+    private ObjStm objStm(int num) throws IOException {
+        ObjStm s = objStms.get(num);
+        if (s != null) return s;
+        long[] r = range(num);
+        int len = (int) Math.min(r[1] - r[0], MAX_OBJECT);
+        byte[] buf = src.read(r[0], len);
+        Obj obj = new Lexer(buf, 0).indirect();
+        Map<String, Object> d = dict(obj.value);
+        if (obj.streamStart < 0) throw new UnsupportedPdfException("Object stream " + num + " has no data");
+        s = new ObjStm(streamData(d, buf, obj.streamStart),
+                (int) asLong(d.get("N")), (int) asLong(d.get("First")));
+        objStms.put(num, s);
+        return s;
+    }
+
+    private static final class ObjStm {
+        final byte[] data;
+        final int[] nums;
+        final int[] offsets;
+        final int first;
+
+        ObjStm(byte[] data, int n, int first) {
+            this.data = data;
+            this.first = first;
+            nums = new int[n];
+            offsets = new int[n];
+            Lexer lx = new Lexer(data, 0);
+            for (int i = 0; i < n; i++) {
+                nums[i] = (int) lx.integer();
+                offsets[i] = (int) lx.integer();
+            }
+        }
+
+        Object get(int index, int num) {
+            if (index >= nums.length || nums[index] != num) {
+                index = -1;
+                for (int i = 0; i < nums.length; i++) {
+                    if (nums[i] == num) index = i;
+                }
+                if (index < 0) return null;
+            }
+            return new Lexer(data, first + offsets[index]).value();
+        }
+    }
+
+    // ====== Streams ======
+
+    private static byte[] streamData(Map<String, Object> d, byte[] buf, int start) throws IOException {
+        int end = buf.length;
+        Object length = d.get("Length");
+        if (length instanceof Long) end = (int) Math.min(end, start + (Long) length);
+        byte[] raw = Arrays.copyOfRange(buf, start, end);
+
+        Object filter = d.get("Filter");
+        if (filter instanceof List) {
+            List<?> f = (List<?>) filter;
+            if (f.size() > 1) throw new UnsupportedPdfException("Filter chain");
+            filter = f.isEmpty() ? null : f.get(0);
+        }
+        byte[] data;
+        if (filter == null) {
+            data = raw;
+        } else if ("FlateDecode".equals(name(filter))) {
+            data = inflate(raw);
+        } else {
+            throw new UnsupportedPdfException("Filter " + name(filter));
+        }
+
+        Object parms = d.get("DecodeParms");
+        if (parms instanceof List) parms = ((List<?>) parms).isEmpty() ? null : ((List<?>) parms).get(0);
+        if (parms instanceof Map) {
+            Map<String, Object> p = dict(parms);
+            long predictor = p.containsKey("Predictor") ? asLong(p.get("Predictor")) : 1;
+            if (predictor >= 10) {
+                int columns = p.containsKey("Columns") ? (int) asLong(p.get("Columns")) : 1;
+                data = unpredictPng(data, columns);
+            } else if (predictor != 1) {
+                throw new UnsupportedPdfException("Predictor " + predictor);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] inflate(byte[] raw) throws IOException {
+        Inflater inf = new Inflater();
+        inf.setInput(raw);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length * 4);
+        byte[] buf = new byte[8192];
+        try {
+            // trailing "endstream" after the zlib data is ignored
+            while (!inf.finished()) {
+                int n = inf.inflate(buf);
+                if (n == 0 && (inf.needsInput() || inf.needsDictionary())) break;
+                out.write(buf, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new UnsupportedPdfException("Bad Flate data");
+        } finally {
+            inf.end();
+        }
+        return out.toByteArray();
+    }
+
+    /** PNG row filters with one byte per pixel, as used by xref streams. */
+    static byte[] unpredictPng(byte[] data, int columns) {
+        int rowLen = columns + 1;
+        int rows = data.length / rowLen;
+        byte[] out = new byte[rows * columns];
+        for (int r = 0; r < rows; r++) {
+            int type = data[r * rowLen] & 0xff;
+            int in = r * rowLen + 1;
+            int o = r * columns;
+            for (int c = 0; c < columns; c++) {
+                int x = data[in + c] & 0xff;
+                int left = c > 0 ? out[o + c - 1] & 0xff : 0;
+                int up = r > 0 ? out[o - columns + c] & 0xff : 0;
+                int upLeft = r > 0 && c > 0 ? out[o - columns + c - 1] & 0xff : 0;
+                int v;
+                switch (type) {
+                    case 1: v = x + left; break;
+                    case 2: v = x + up; break;
+                    case 3: v = x + ((left + up) >> 1); break;
+                    case 4: v = x + paeth(left, up, upLeft); break;
+                    default: v = x; break;
+                }
+                out[o + c] = (byte) v;
+            }
+        }
+        return out;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+    }
+
+    private static long field(byte[] data, int pos, int width) {
+        long v = 0;
+        for (int i = 0; i < width; i++) v = (v << 8) | (data[pos + i] & 0xff);
+        return v;
+    }
+
+    // ====== Helpers ======
+
+    private long nextStart(long pos) {
+        int i = Arrays.binarySearch(starts, pos + 1);
+        if (i < 0) i = -i - 1;
+        return i < starts.length ? starts[i] : fileLength;
+    }
+
+    /** Before object offsets are known, read up to EOF or the probe size, whichever is smaller. */
+    private long nextGuess(long pos) {
+        return Math.min(fileLength - pos, Math.max(HEAD_PROBE, 256 * 1024));
+    }
+
+    /** Sorted, coalesced copy of {@code ranges}. */
+    static List<long[]> merge(List<long[]> ranges) {
+        List<long[]> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> out = new ArrayList<>();
+        for (long[] r : sorted) {
+            long[] last = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (last != null && r[0] <= last[1]) {
+                last[1] = Math.max(last[1], r[1]);
+            } else {
+                out.add(new long[]{r[0], r[1]});
+            }
+        }
+        return out;
+    }
+
+    private static int lastIndexOf(byte[] buf, String s) {
+        byte[] needle = s.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = buf.length - needle.length; i >= 0; i--) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buf[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> dict(Object o) throws UnsupportedPdfException {
+        if (!(o instanceof Map)) throw new UnsupportedPdfException("Expected dictionary");
+        return (Map<String, Object>) o;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> array(Object o) throws UnsupportedPdfException {
+        if (!(o instanceof List)) throw new UnsupportedPdfException("Expected array");
+        return (List<Object>) o;
+    }
+
+    private static Ref asRef(Object o) throws UnsupportedPdfException {
+        if (!(o instanceof Ref)) throw new UnsupportedPdfException("Expected reference");
+        return (Ref) o;
+    }
+
+    private static long asLong(Object o) throws UnsupportedPdfException {
+        if (!(o instanceof Long)) throw new UnsupportedPdfException("Expected integer");
+        return (Long) o;
+    }
+
+    @Nullable
+    private static String name(Object o) {
+        return o instanceof Name ? ((Name) o).value : null;
+    }
+
+    // ====== Lexer ======
+
+    private static final class Ref {
+        final int num;
+
+        Ref(int num) {
+            this.num = num;
+        }
+    }
+
+    private static final class Name {
+        final String value;
+
+        Name(String value) {
+            this.value = value;
+        }
+    }
+
+    private static final class Keyword {
+        final String value;
+
+        Keyword(String value) {
+            this.value = value;
+        }
+    }
+
+    private static final class Obj {
+        Object value;
+        /** Offset of stream data within the buffer, -1 for plain objects. */
+        int streamStart = -1;
+    }
+
+    /** Just enough of the PDF object syntax to follow references. */
+    private static final class Lexer {
+
+        /** Ran off the buffer or met bad syntax. */
+        static final class Malformed extends RuntimeException {
+            Malformed(String msg) {
+                super(msg);
+            }
+        }
+
+        final byte[] buf;
+        int pos;
+
+        Lexer(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        byte peek() {
+            if (pos >= buf.length) throw new Malformed("Unexpected end of data");
+            return buf[pos];
+        }
+
+        byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        boolean startsWith(String s) {
+            if (pos + s.length() > buf.length) return false;
+            for (int i = 0; i < s.length(); i++) {
+                if (buf[pos + i] != s.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        void skipWs() {
+            while (pos < buf.length) {
+                byte b = buf[pos];
+                if (b == '%') {
+                    while (pos < buf.length && buf[pos] != '\n' && buf[pos] != '\r') pos++;
+                } else if (isWhite(b)) {
+                    pos++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        long integer() {
+            Object v = value();
+            if (!(v instanceof Long)) throw new Malformed("Expected integer");
+            return (Long) v;
+        }
+
+        Obj indirect() {
+            integer();
+            integer();
+            skipWs();
+            if (!startsWith("obj")) throw new Malformed("Expected obj");
+            pos += 3;
+            Obj o = new Obj();
+            o.value = value();
+            skipWs();
+            if (startsWith("stream")) {
+                pos += 6;
+                if (pos < buf.length && buf[pos] == '\r') pos++;
+                if (pos < buf.length && buf[pos] == '\n') pos++;
+                o.streamStart = pos;
+            }
+            return o;
+        }
+
+        Object value() {
+            skipWs();
+            byte b = peek();
+            if (b == '<' && pos + 1 < buf.length && buf[pos + 1] == '<') return dictionary();
+            if (b == '<') return hexString();
+            if (b == '(') return literalString();
+            if (b == '[') return array();
+            if (b == '/') return name();
+            if (b == '+' || b == '-' || b == '.' || (b >= '0' && b <= '9')) return numberOrRef();
+            String word = word();
+            if (word.isEmpty()) throw new Malformed("Unexpected '" + (char) b + "'");
+            switch (word) {
+                case "true": return Boolean.TRUE;
+                case "false": return Boolean.FALSE;
+                case "null": return null;
+                default: return new Keyword(word);
+            }
+        }
+
+        private Map<String, Object> dictionary() {
+            pos += 2;
+            Map<String, Object> d = new LinkedHashMap<>();
+            while (true) {
+                skipWs();
+                if (peek() == '>') {
+                    pos += 2;
+                    return d;
+                }
+                Object key = value();
+                if (!(key instanceof Name)) throw new Malformed("Dictionary key is not a name");
+                d.put(((Name) key).value, value());
+            }
+        }
+
+        private List<Object> array() {
+            pos++;
+            List<Object> a = new ArrayList<>();
+            while (true) {
+                skipWs();
+                if (peek() == ']') {
+                    pos++;
+                    return a;
+                }
+                a.add(value());
+            }
+        }
+
+        private Name name() {
+            pos++;
+            return new Name(word());
+        }
+
+        private Object numberOrRef() {
+            String n1 = word();
+            if (n1.contains(".")) return parseDouble(n1);
+            long v1 = parseLong(n1);
+            int save = pos;
+            // "12 0 R" is a reference; anything else is a plain integer
+            skipWs();
+            if (pos < buf.length && buf[pos] >= '0' && buf[pos] <= '9') {
+                String n2 = word();
+                skipWs();
+                if (!n2.contains(".") && pos < buf.length && buf[pos] == 'R'
+                        && (pos + 1 >= buf.length || isDelimiterOrWhite(buf[pos + 1]))) {
+                    pos++;
+                    return new Ref((int) v1);
+                }
+            }
+            pos = save;
+            return v1;
+        }
+
+        private byte[] hexString() {
+            pos++;
+            while (next() != '>') { }
+            return new byte[0]; // contents never hold references
+        }
+
+        private byte[] literalString() {
+            pos++;
+            int depth = 1;
+            while (depth > 0) {
+                byte b = next();
+                if (b == '\\') next();
+                else if (b == '(') depth++;
+                else if (b == ')') depth--;
+            }
+            return new byte[0];
+        }
+
+        private String word() {
+            int start = pos;
+            while (pos < buf.length && !isDelimiterOrWhite(buf[pos])) pos++;
+            if (pos >= buf.length && start == pos) throw new Malformed("Unexpected end of data");
+            return new String(buf, start, pos - start, StandardCharsets.ISO_8859_1);
+        }
+
+        private static long parseLong(String s) {
+            try {
+                return Long.parseLong(s.startsWith("+") ? s.substring(1) : s);
+            } catch (NumberFormatException e) {
+                throw new Malformed("Bad number " + s);
+            }
+        }
+
+        private static double parseDouble(String s) {
+            try {
+                return Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                throw new Malformed("Bad number " + s);
+            }
+        }
+
+        private static boolean isWhite(byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+        }
+
+        private static boolean isDelimiterOrWhite(byte b) {
+            return isWhite(b) || b == '(' || b == ')' || b == '<' || b == '>' || b == '['
+                    || b == ']' || b == '{' || b == '}' || b == '/' || b == '%';
+        }
+    }
+}
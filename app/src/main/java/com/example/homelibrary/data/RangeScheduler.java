@@ -0,0 +1,122 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+
+/**
+ * Chunk order of one {@link ChunkedDownloader} run, shared with a reader that
+ * wants some byte ranges before others.
+ * <ul>
+ *   <li>Without requests, the first and last chunks go first (PDF header,
+ *   trailer and xref), then the rest in file order.</li>
+ *   <li>{@link #prioritize} moves a range to the front of the queue.</li>
+ *   <li>{@link #await} blocks until a range is on disk.</li>
+ * </ul>
+ * Thread-safe.
+ */
+public final class RangeScheduler {
+
+    private long length = -1;
+    private long chunkSize;
+    private int chunkCount;
+    private BitSet done;
+    private BitSet claimed;
+    private final ArrayDeque<Integer> urgent = new ArrayDeque<>();
+    private int cursor;
+    private boolean finished;
+    private boolean complete;
+
+    // ====== Downloader side ======
+
+    /** Chunked download is starting with {@code done} chunks already on disk. */
+    synchronized void start(long length, long chunkSize, @NonNull BitSet done) {
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) ((length + chunkSize - 1) / chunkSize);
+        this.done = (BitSet) done.clone();
+        this.claimed = new BitSet(chunkCount);
+        cursor = 0;
+        if (chunkCount > 0) {
+            urgent.addFirst(chunkCount - 1);
+            urgent.addFirst(0);
+        }
+        notifyAll();
+    }
+
+    /** Next chunk to fetch, or -1 when every chunk is done or in flight. */
+    synchronized int next() {
+        while (!urgent.isEmpty()) {
+            int c = urgent.poll();
+            if (c < chunkCount && !done.get(c) && !claimed.get(c)) {
+                claimed.set(c);
+                return c;
+            }
+        }
+        while (cursor < chunkCount) {
+            int c = cursor++;
+            if (!done.get(c) && !claimed.get(c)) {
+                claimed.set(c);
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    synchronized void chunkDone(int chunk) {
+        done.set(chunk);
+        notifyAll();
+    }
+
+    /** The download stopped; waiters either get the whole file or an error. */
+    synchronized void finish(boolean complete) {
+        this.finished = true;
+        this.complete = complete;
+        notifyAll();
+    }
+
+    // ====== Reader side ======
+
+    /** File size once the download has started, -1 before. */
+    public synchronized long length() {
+        return length;
+    }
+
+    public synchronized boolean isAvailable(long from, long to) {
+        if (complete) return true;
+        if (done == null) return false;
+        for (int c = (int) (from / chunkSize); c <= (to - 1) / chunkSize; c++) {
+            if (!done.get(c)) return false;
+        }
+        return true;
+    }
+
+    /** Fetches [from, to) before anything else that isn't already in flight. */
+    public synchronized void prioritize(long from, long to) {
+        if (done == null || complete || from >= to) return;
+        int first = (int) (from / chunkSize);
+        int last = (int) Math.min(chunkCount - 1, (to - 1) / chunkSize);
+        for (int c = last; c >= first; c--) {
+            if (!done.get(c) && !claimed.get(c)) urgent.addFirst(c);
+        }
+    }
+
+    /** Waits for the download to start and report its length. */
+    public synchronized long awaitLength() throws IOException, InterruptedException {
+        while (length < 0) {
+            if (finished) throw new IOException("Download stopped before it started");
+            wait();
+        }
+        return length;
+    }
+
+    /** Blocks until [from, to) is on disk. */
+    public synchronized void await(long from, long to) throws IOException, InterruptedException {
+        while (!isAvailable(from, to)) {
+            if (finished) throw new IOException("Download stopped");
+            wait();
+        }
+    }
+}
@@ -9,22 +9,21 @@ import java.util.Collections;
 
 public class SampleDataInserter {
 
+    /** Author and book go out in one batch, so neither is saved without the other. */
     public static void insertPushkinAndOnegin() {
         DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
 
         DatabaseReference authorsRef = rootRef.child("authors");
         String authorId = authorsRef.push().getKey();
 
+        WriteBatch batch = DBManager.getInstance().batch();
+        String bookId = batch.newBookId();
+
         Author pushkin = new Author();
         pushkin.id = authorId;
         pushkin.fullName = "А.С. Пушкин";
         pushkin.biography = "Александр Сергеевич Пушкин — русский поэт, драматург и прозаик.";
-        pushkin.bookIds = Collections.emptyList();
-
-        DBManager.getInstance().saveAuthor(pushkin);
-
-        DatabaseReference booksRef = rootRef.child("books");
-        String bookId = booksRef.push().getKey();
+        pushkin.bookIds = Collections.singletonList(bookId);
 
         Book onegin = new Book();
         onegin.id = bookId;
@@ -35,8 +34,8 @@ public class SampleDataInserter {
         onegin.downloadUrl = "https://imwerden.de/pdf/pushkin_evgenij_onegin.pdf";
         onegin.imageUrl = "https://upload.wikimedia.org/wikipedia/commons/e/ed/Eugene_Onegin_book_edition.jpg";
 
-        DBManager.getInstance().saveBookMetadata(onegin);
-
-        DBManager.getInstance().updateAuthorField(authorId, "bookIds", Collections.singletonList(bookId));
+        batch.saveAuthor(pushkin)
+                .saveBookMetadata(onegin)
+                .commit();
     }
 }
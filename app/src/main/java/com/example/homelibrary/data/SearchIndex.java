@@ -0,0 +1,253 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.text.SearchText;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over books (title, description, genre, author names).
+ * Seeded from the on-disk catalog a page at a time and kept up to date by
+ * {@link CatalogRepository}'s delta sync, so queries are answered locally
+ * without a network round trip and without listening to all of "books".
+ * Токены нормализуются одинаково для кириллицы и латиницы, поиск по префиксу.
+ */
+public class SearchIndex {
+
+    private static SearchIndex instance;
+
+    private static final char PREFIX_END = '\uffff';
+
+    /** token -> ids of books containing it; sorted for prefix range lookups. */
+    private final TreeMap<String, Set<String>> postings = new TreeMap<>();
+    /** bookId -> tokens that were indexed for it (needed to un-index on change). */
+    private final Map<String, Set<String>> bookTokens = new HashMap<>();
+    private final Map<String, Book> books = new HashMap<>();
+    private final Map<String, String> authorNames = new HashMap<>();
+    /** authorId -> ids of books that reference this author. */
+    private final Map<String, Set<String>> booksByAuthor = new HashMap<>();
+
+    private boolean ready = false;
+
+    private SearchIndex() { }
+
+    /** Singleton accessor. */
+    public static synchronized SearchIndex getInstance() {
+        if (instance == null) instance = new SearchIndex();
+        return instance;
+    }
+
+    // ======================= Lifecycle =======================
+
+    /**
+     * True once seeded from a non-empty on-disk catalog, or, on a first run,
+     * once the first sync pass has been applied.
+     */
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Pre-fills the index with a cached author. Entries already received
+     * through {@link CatalogRepository}'s delta sync win.
+     */
+    public synchronized void seedAuthor(@NonNull Author author) {
+        if (author.id != null && !authorNames.containsKey(author.id)) putAuthor(author);
+    }
+
+    /** Pre-fills the index with a cached book; see {@link #seedAuthor}. */
+    public synchronized void seedBook(@NonNull Book book) {
+        if (book.id != null && !books.containsKey(book.id)) putBook(book);
+    }
+
+    /** Called by {@link CatalogRepository} once the index holds the catalog. */
+    public synchronized void markReady() {
+        ready = true;
+    }
+
+    // ======================= Index maintenance =======================
+
+    /** Adds or re-indexes a single book. */
+    public synchronized void putBook(@Nullable Book book) {
+        if (book == null || book.id == null) return;
+        unindex(book.id);
+        Book old = books.put(book.id, book);
+        if (old != null) unlinkAuthors(old);
+        if (book.authorIds != null) {
+            for (String aId : book.authorIds) {
+                Set<String> ids = booksByAuthor.get(aId);
+                if (ids == null) {
+                    ids = new HashSet<>();
+                    booksByAuthor.put(aId, ids);
+                }
+                ids.add(book.id);
+            }
+        }
+        index(book);
+    }
+
+    /** Drops a book from the index. */
+    public synchronized void removeBook(@Nullable String bookId) {
+        if (bookId == null) return;
+        unindex(bookId);
+        Book old = books.remove(bookId);
+        if (old != null) unlinkAuthors(old);
+    }
+
+    /** Updates an author name and re-indexes the books referencing it. */
+    public synchronized void putAuthor(@Nullable Author author) {
+        if (author == null || author.id == null) return;
+        String old = authorNames.put(author.id, author.fullName);
+        if (old == null ? author.fullName != null : !old.equals(author.fullName)) {
+            reindexAuthorBooks(author.id);
+        }
+    }
+
+    public synchronized void removeAuthor(@Nullable String authorId) {
+        if (authorId == null) return;
+        if (authorNames.remove(authorId) != null) reindexAuthorBooks(authorId);
+    }
+
+    private void reindexAuthorBooks(String authorId) {
+        Set<String> ids = booksByAuthor.get(authorId);
+        if (ids == null) return;
+        for (String id : ids) {
+            unindex(id);
+            index(books.get(id));
+        }
+    }
+
+    private void unlinkAuthors(Book book) {
+        if (book.authorIds == null) return;
+        for (String aId : book.authorIds) {
+            Set<String> ids = booksByAuthor.get(aId);
+            if (ids == null) continue;
+            ids.remove(book.id);
+            if (ids.isEmpty()) booksByAuthor.remove(aId);
+        }
+    }
+
+    private void index(@Nullable Book book) {
+        if (book == null) return;
+        Set<String> tokens = new HashSet<>();
+        tokenizeInto(book.title, tokens);
+        tokenizeInto(book.description, tokens);
+        tokenizeInto(book.genre, tokens);
+        if (book.authorIds != null) {
+            for (String aId : book.authorIds) tokenizeInto(authorNames.get(aId), tokens);
+        }
+        for (String t : tokens) {
+            Set<String> ids = postings.get(t);
+            if (ids == null) {
+                ids = new HashSet<>();
+                postings.put(t, ids);
+            }
+            ids.add(book.id);
+        }
+        bookTokens.put(book.id, tokens);
+    }
+
+    private void unindex(String bookId) {
+        Set<String> tokens = bookTokens.remove(bookId);
+        if (tokens == null) return;
+        for (String t : tokens) {
+            Set<String> ids = postings.get(t);
+            if (ids == null) continue;
+            ids.remove(bookId);
+            if (ids.isEmpty()) postings.remove(t);
+        }
+    }
+
+    // ======================= Queries =======================
+
+    /**
+     * Returns books whose indexed text contains every query token as a word prefix.
+     * An empty query matches nothing.
+     */
+    @NonNull
+    public synchronized List<Book> search(@Nullable String query) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) return Collections.emptyList();
+
+        Set<String> result = null;
+        for (String term : terms) {
+            Set<String> matches = new HashSet<>();
+            for (Set<String> ids : postings.subMap(term, true, term + PREFIX_END, false).values()) {
+                matches.addAll(ids);
+            }
+            if (result == null) {
+                result = matches;
+            } else {
+                result.retainAll(matches);
+            }
+            if (result.isEmpty()) return Collections.emptyList();
+        }
+
+        List<Book> out = new ArrayList<>(result.size());
+        for (String id : result) {
+            Book b = books.get(id);
+            if (b != null) out.add(b);
+        }
+        return out;
+    }
+
+    /**
+     * Checks whether a book matches the query using the same rules as {@link #search}.
+     */
+    public synchronized boolean matches(@NonNull Book book, @Nullable String query) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) return true;
+        Set<String> tokens = bookTokens.get(book.id);
+        if (tokens == null || books.get(book.id) != book) {
+            tokens = new HashSet<>();
+            tokenizeInto(book.title, tokens);
+            tokenizeInto(book.description, tokens);
+            tokenizeInto(book.genre, tokens);
+            if (book.authorIds != null) {
+                for (String aId : book.authorIds) tokenizeInto(authorNames.get(aId), tokens);
+            }
+        }
+        for (String term : terms) {
+            boolean found = false;
+            for (String t : tokens) {
+                if (t.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    // ======================= Normalization =======================
+
+    /** See {@link SearchText#normalize}. */
+    @NonNull
+    public static String normalize(@Nullable String text) {
+        return SearchText.normalize(text);
+    }
+
+    /** See {@link SearchText#tokenize}. */
+    @NonNull
+    public static List<String> tokenize(@Nullable String text) {
+        return SearchText.tokenize(text);
+    }
+
+    private static void tokenizeInto(@Nullable String text, Set<String> out) {
+        SearchText.tokenizeInto(text, out);
+    }
+}
@@ -1,20 +1,27 @@
 package com.example.homelibrary.data;
 
-import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import com.example.homelibrary.data.models.Book;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
- * Provides methods to search books by title.
- * Since RTDB не поддерживает полнотекстовый поиск,
- * мы забираем все книги и фильтруем на клиенте.
+ * Provides methods to search books.
+ * Since RTDB не поддерживает полнотекстовый поиск, запросы обслуживает
+ * локальный {@link SearchIndex}, а пока он пуст (первый запуск) — серверный
+ * индекс слов названий "search_index/{token}/{bookId}" (см. {@link DBManager}):
+ * по сети приходят только id книг с подходящими словами.
  */
 public class SearchManager {
 
@@ -23,37 +30,126 @@ public class SearchManager {
         void onError(Exception e);
     }
 
+    /** Books fetched per server-side title search; a list this long may be cut short. */
+    public static final int MAX_REMOTE_RESULTS = 50;
+    /** Shortest word looked up on the server; shorter ones only filter fetched titles. */
+    static final int MIN_REMOTE_PREFIX = 2;
+    /** Index words read per query word; a common prefix may be cut short. */
+    static final int MAX_REMOTE_TOKENS = 100;
+    /** High code point: keys from "term" to "term" + PREFIX_END are those starting with term. */
+    private static final String PREFIX_END = "\uf8ff";
+
     /**
-     * Загружает все книги из RTDB и затем отбирает те,
-     * у которых title содержит query (без учёта регистра).
+     * Ищет книги по названию, описанию, жанру и именам авторов.
+     * Каждое слово запроса должно совпасть с началом какого-либо слова книги.
+     * Без локального каталога ищет только по названиям на сервере.
+     *
+     * @param query    строка для поиска
+     * @param callback колбэк, в который возвращается список найденных книг
+     */
+    public static void searchBooks(String query, SearchCallback callback) {
+        SearchIndex index = SearchIndex.getInstance();
+        if (index.isReady()) {
+            callback.onResults(index.search(query));
+        } else {
+            searchBooksByTitle(query, callback);
+        }
+    }
+
+    /**
+     * Отбирает книги, в названии которых встречаются все слова query
+     * (без учёта регистра и диакритики, по префиксу).
+     * Each word of at least {@link #MIN_REMOTE_PREFIX} letters is a key range
+     * query on "search_index", reading at most {@link #MAX_REMOTE_TOKENS} index
+     * words; the id sets are intersected and at most
+     * {@link #MAX_REMOTE_RESULTS} "feed" rows fetched. A query of single
+     * letters finds nothing.
      *
      * @param query    строка для поиска
      * @param callback колбэк, в который возвращается список найденных книг
      */
     public static void searchBooksByTitle(String query, SearchCallback callback) {
-        FirebaseDatabase.getInstance()
-                .getReference()
-                .child("books")
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        List<Book> matched = new ArrayList<>();
-                        String lowerQuery = query.toLowerCase();
-                        for (DataSnapshot snap : snapshot.getChildren()) {
-                            Book b = snap.getValue(Book.class);
-                            if (b != null && b.title != null) {
-                                if (b.title.toLowerCase().contains(lowerQuery)) {
-                                    matched.add(b);
-                                }
-                            }
-                        }
-                        callback.onResults(matched);
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        callback.onError(error.toException());
-                    }
-                });
+        List<String> terms = SearchIndex.tokenize(query);
+        List<String> lookup = lookupTerms(terms);
+        if (lookup.isEmpty()) {
+            callback.onResults(Collections.emptyList());
+            return;
+        }
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        List<Task<DataSnapshot>> lookups = new ArrayList<>();
+        for (String term : lookup) {
+            lookups.add(root.child(DBManager.SEARCH_INDEX).orderByKey()
+                    .startAt(term).endAt(term + PREFIX_END)
+                    .limitToFirst(MAX_REMOTE_TOKENS).get());
+        }
+        Tasks.whenAllSuccess(lookups).onSuccessTask(tokens -> {
+            Set<String> ids = null;
+            for (Object t : tokens) {
+                Set<String> matches = new HashSet<>();
+                for (DataSnapshot token : ((DataSnapshot) t).getChildren()) {
+                    for (DataSnapshot book : token.getChildren()) matches.add(book.getKey());
+                }
+                if (ids == null) {
+                    ids = matches;
+                } else {
+                    ids.retainAll(matches);
+                }
+            }
+            List<Task<DataSnapshot>> rows = new ArrayList<>();
+            for (String id : new TreeSet<>(ids)) {
+                if (rows.size() == MAX_REMOTE_RESULTS) break;
+                rows.add(root.child(DBManager.FEED).child(id).get());
+            }
+            return Tasks.whenAllSuccess(rows);
+        }).addOnSuccessListener(rows -> {
+            // the index may still list a book under words of an older title
+            List<Book> matched = new ArrayList<>();
+            for (Object row : rows) {
+                Book b = SnapshotMappers.BOOK.map((DataSnapshot) row);
+                if (b != null && b.id != null && titleMatches(b, terms)) matched.add(b);
+            }
+            callback.onResults(matched);
+        }).addOnFailureListener(callback::onError);
+    }
+
+    /**
+     * Whether a book returned by {@link #searchBooks} matches {@code query} by
+     * the rules of the search that found it. Lets results be narrowed as the
+     * query grows.
+     */
+    public static boolean matches(Book b, String query) {
+        SearchIndex index = SearchIndex.getInstance();
+        if (index.isReady()) return index.matches(b, query);
+        return titleMatches(b, SearchIndex.tokenize(query));
+    }
+
+    /**
+     * Terms sent to the server: shorter ones match a large part of the index,
+     * so they are only checked against the fetched titles. Empty when no term
+     * is long enough.
+     */
+    @VisibleForTesting
+    static List<String> lookupTerms(List<String> terms) {
+        List<String> out = new ArrayList<>();
+        for (String t : terms) {
+            if (t.length() >= MIN_REMOTE_PREFIX) out.add(t);
+        }
+        return out;
+    }
+
+    @VisibleForTesting
+    static boolean titleMatches(Book b, List<String> terms) {
+        List<String> words = SearchIndex.tokenize(b.title);
+        for (String term : terms) {
+            boolean found = false;
+            for (String w : words) {
+                if (w.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
     }
 }
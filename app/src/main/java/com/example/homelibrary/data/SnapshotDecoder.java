@@ -0,0 +1,69 @@
+package com.example.homelibrary.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves snapshot -> model mapping off Firebase's main-thread callbacks.
+ * Snapshots are immutable, so they are handed to one background thread as-is;
+ * only finished models are posted back. A single thread keeps results in the
+ * same order the events arrived.
+ */
+public final class SnapshotDecoder {
+
+    /** Receives the mapped value on the main thread. */
+    public interface Callback<T> {
+        void onDecoded(@Nullable T value);
+    }
+
+    private static final ExecutorService DECODER = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    private SnapshotDecoder() {}
+
+    public static <T> void decode(@NonNull DataSnapshot ds,
+                                  @NonNull SnapshotMappers.Mapper<T> mapper,
+                                  @NonNull Callback<T> callback) {
+        DECODER.execute(() -> {
+            T value = mapper.map(ds);
+            MAIN.post(() -> callback.onDecoded(value));
+        });
+    }
+
+    /** Maps every child of {@code ds}, skipping ones that map to null. */
+    public static <T> void decodeChildren(@NonNull DataSnapshot ds,
+                                          @NonNull SnapshotMappers.Mapper<T> mapper,
+                                          @NonNull Callback<List<T>> callback) {
+        DECODER.execute(() -> {
+            List<T> out = new ArrayList<>((int) ds.getChildrenCount());
+            for (DataSnapshot child : ds.getChildren()) {
+                T value = mapper.map(child);
+                if (value != null) out.add(value);
+            }
+            MAIN.post(() -> callback.onDecoded(out));
+        });
+    }
+
+    /** Runs work on the main thread once everything queued before it has been delivered. */
+    public static void runAfterPending(@NonNull Runnable mainThreadWork) {
+        DECODER.execute(() -> MAIN.post(mainThreadWork));
+    }
+
+    /**
+     * Runs work on the decoder thread, after everything queued before it.
+     * For consumers that are themselves thread-safe and need no main-thread hop.
+     */
+    public static void execute(@NonNull Runnable work) {
+        DECODER.execute(work);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.models.AuthorMapper;
+import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.data.models.BookMapper;
+import com.example.homelibrary.data.models.User;
+import com.example.homelibrary.data.models.UserMapper;
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Snapshot -> model mappers. Backed by the {@code *Mapper} classes generated
+ * from {@code @SnapshotModel}, which read fields in one pass over the children
+ * instead of going through Firebase's reflective CustomClassMapper.
+ */
+public final class SnapshotMappers {
+
+    /** Maps one snapshot to a model; returns null when the node does not exist. */
+    public interface Mapper<T> {
+        @Nullable
+        T map(@NonNull DataSnapshot ds);
+    }
+
+    public static final Mapper<Book> BOOK = BookMapper::fromSnapshot;
+    public static final Mapper<Author> AUTHOR = AuthorMapper::fromSnapshot;
+    public static final Mapper<User> USER = UserMapper::fromSnapshot;
+
+    /**
+     * Decodes a "feed" row: the card fields of a book. The author names stored
+     * with it go straight into {@code names}, so rows render without author
+     * reads. Runs on the decoder thread, hence the thread-safe put.
+     */
+    @NonNull
+    public static Mapper<Book> feed(@NonNull AuthorResolver names) {
+        return ds -> {
+            for (DataSnapshot a : ds.child(DBManager.AUTHOR_NAMES).getChildren()) {
+                names.put(a.getKey(), a.getValue(String.class));
+            }
+            return BookMapper.fromSnapshot(ds);
+        };
+    }
+
+    private SnapshotMappers() {}
+}
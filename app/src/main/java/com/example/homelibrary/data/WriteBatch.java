@@ -0,0 +1,317 @@
+package com.example.homelibrary.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.models.AuthorMapper;
+import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.data.models.BookMapper;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Path -> value writes collected from several DBManager-style operations and
+ * sent as one multi-path {@code updateChildren}, so they land together or not
+ * at all. Obtain from {@link DBManager#batch()}.
+ * <ul>
+ *   <li>Writes apply in call order: a later write to a node replaces earlier
+ *   writes below it, a later write below a node is merged into it. RTDB itself
+ *   rejects overlapping paths in one update.</li>
+ *   <li>Feed rows of books saved here take author names from authors saved in
+ *   the same batch or given to {@link #authorName}; the rest are read at
+ *   {@link #commit}.</li>
+ *   <li>Books whose title is written here are re-indexed in "search_index":
+ *   the previous title's words that the new title lacks are dropped. It is
+ *   read at {@link #commit} unless the book's id came from {@link #newBookId}
+ *   or the caller passed it to {@link #saveBookMetadata(Book, String)}.</li>
+ *   <li>Batches above {@link #MAX_PATHS} paths are split into several updates.
+ *   Each is atomic on its own, the batch as a whole is not.</li>
+ * </ul>
+ * Not thread-safe.
+ */
+public final class WriteBatch {
+
+    /** Top-level paths per {@code updateChildren}; keeps a single request well under RTDB's write limits. */
+    public static final int MAX_PATHS = 1000;
+
+    private final DatabaseReference root;
+    /** Sorted so a node's descendants are one contiguous range. */
+    private final TreeMap<String, Object> writes = new TreeMap<>();
+    /** Author id -> full name, for feed rows. */
+    private final Map<String, String> names = new HashMap<>();
+    /** Book id -> authors whose names weren't known when the book was saved. */
+    private final Map<String, List<String>> unnamed = new HashMap<>();
+    /** Book id -> title written in this batch. */
+    private final Map<String, String> titles = new HashMap<>();
+    /** Book id -> title stored before this batch, where known without a read; null for new books. */
+    private final Map<String, String> previousTitles = new HashMap<>();
+
+    WriteBatch(@NonNull DatabaseReference root) {
+        this.root = root;
+    }
+
+    // ====== Raw writes ======
+
+    /**
+     * Writes {@code value} at {@code path} (relative to the root, without
+     * leading slash); null deletes the node.
+     */
+    @NonNull
+    public WriteBatch set(@NonNull String path, @Nullable Object value) {
+        // an earlier write to an ancestor: merge into its value
+        for (int i = path.lastIndexOf('/'); i > 0; i = path.lastIndexOf('/', i - 1)) {
+            String parent = path.substring(0, i);
+            if (!writes.containsKey(parent)) continue;
+            writes.put(parent, merged(writes.get(parent), path.substring(i + 1), value));
+            return this;
+        }
+        // earlier writes below this node are overwritten ('0' follows '/')
+        writes.subMap(path + "/", path + "0").clear();
+        writes.put(path, value);
+        return this;
+    }
+
+    /** Number of top-level paths collected so far. */
+    public int size() {
+        return writes.size();
+    }
+
+    /** Path -> value as it would be sent now. */
+    @VisibleForTesting
+    @NonNull
+    Map<String, Object> paths() {
+        return Collections.unmodifiableMap(writes);
+    }
+
+    /** A fresh "books" key; its previous title is known to be empty. */
+    @NonNull
+    public String newBookId() {
+        String id = root.child(DBManager.BOOKS).push().getKey();
+        previousTitles.put(id, null);
+        return id;
+    }
+
+    /** Name of an author saved earlier, so feed rows need not read it. */
+    @NonNull
+    public WriteBatch authorName(@NonNull String authorId, @Nullable String fullName) {
+        if (fullName != null) names.put(authorId, fullName);
+        return this;
+    }
+
+    // ====== Model writes ======
+
+    /** Same as {@link DBManager#saveAuthor}, including the name in the book's feed rows. */
+    @NonNull
+    public WriteBatch saveAuthor(@NonNull Author author) {
+        Map<String, Object> value = AuthorMapper.toMap(author);
+        value.put(DBManager.UPDATED_AT, ServerValue.TIMESTAMP);
+        set(DBManager.AUTHORS + "/" + author.id, value);
+        authorName(author.id, author.fullName);
+        feedNames(author.id, author.fullName, author.bookIds);
+        return this;
+    }
+
+    /**
+     * Like {@link #saveBookMetadata(Book)} for a book whose stored title the
+     * caller already has, e.g. from the screen that edited it; null when the
+     * book is new. Saves reading it at {@link #commit}.
+     */
+    @NonNull
+    public WriteBatch saveBookMetadata(@NonNull Book book, @Nullable String previousTitle) {
+        if (!titles.containsKey(book.id)) previousTitles.put(book.id, previousTitle);
+        return saveBookMetadata(book);
+    }
+
+    /** Same as {@link DBManager#saveBookMetadata}: the book and its feed row. */
+    @NonNull
+    public WriteBatch saveBookMetadata(@NonNull Book book) {
+        Map<String, Object> value = BookMapper.toMap(book);
+        value.put(DBManager.UPDATED_AT, ServerValue.TIMESTAMP);
+
+        Map<String, Object> row = new HashMap<>();
+        for (String f : DBManager.FEED_FIELDS) row.put(f, value.get(f));
+        Map<String, Object> rowNames = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        if (book.authorIds != null) {
+            for (String id : book.authorIds) {
+                String name = names.get(id);
+                if (name != null) {
+                    rowNames.put(id, name);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        row.put(DBManager.AUTHOR_NAMES, rowNames);
+        row.put(DBManager.UPDATED_AT, ServerValue.TIMESTAMP);
+
+        set(DBManager.BOOKS + "/" + book.id, value);
+        set(DBManager.FEED + "/" + book.id, row);
+        indexTitle(book.id, book.title);
+        if (missing.isEmpty()) {
+            unnamed.remove(book.id);
+        } else {
+            unnamed.put(book.id, missing);
+        }
+        return this;
+    }
+
+    /** One field of "books/{bookId}", mirrored into the feed row when it shows there. */
+    @NonNull
+    public WriteBatch updateBookField(@NonNull String bookId, @NonNull String key, @Nullable Object value) {
+        set(DBManager.BOOKS + "/" + bookId + "/" + key, value);
+        set(DBManager.BOOKS + "/" + bookId + "/" + DBManager.UPDATED_AT, ServerValue.TIMESTAMP);
+        if (DBManager.FEED_FIELDS.contains(key)) {
+            set(DBManager.FEED + "/" + bookId + "/" + key, value);
+            set(DBManager.FEED + "/" + bookId + "/" + DBManager.UPDATED_AT, ServerValue.TIMESTAMP);
+        }
+        if ("title".equals(key)) indexTitle(bookId, (String) value);
+        return this;
+    }
+
+    private void indexTitle(String bookId, @Nullable String title) {
+        for (String token : SearchIndex.tokenize(title)) {
+            set(DBManager.SEARCH_INDEX + "/" + token + "/" + bookId, true);
+        }
+        titles.put(bookId, title);
+    }
+
+    /** Writes the author's name into the feed row of each book. */
+    @NonNull
+    WriteBatch feedNames(@NonNull String authorId, @Nullable String name, @Nullable List<String> bookIds) {
+        if (bookIds == null) return this;
+        for (String bookId : bookIds) {
+            set(DBManager.FEED + "/" + bookId + "/" + DBManager.AUTHOR_NAMES + "/" + authorId, name);
+            set(DBManager.FEED + "/" + bookId + "/" + DBManager.UPDATED_AT, ServerValue.TIMESTAMP);
+            List<String> missing = unnamed.get(bookId);
+            if (missing != null) missing.remove(authorId);
+        }
+        return this;
+    }
+
+    // ====== Commit ======
+
+    /**
+     * Sends the writes, at most {@link #MAX_PATHS} paths per update, and
+     * empties the batch so it can be filled again right away. Completes when
+     * every update has; fails if any did.
+     */
+    @NonNull
+    public Task<Void> commit() {
+        WriteBatch out = new WriteBatch(root);
+        out.writes.putAll(writes);
+        Map<String, List<String>> pending = new HashMap<>(unnamed);
+        Map<String, String> retitled = new HashMap<>(titles);
+        Map<String, String> known = new HashMap<>(previousTitles);
+        writes.clear();
+        unnamed.clear();
+        titles.clear();
+        previousTitles.clear();
+
+        Set<String> toName = new LinkedHashSet<>();
+        for (List<String> ids : pending.values()) toName.addAll(ids);
+        List<String> toRead = new ArrayList<>();
+        for (Map.Entry<String, String> e : retitled.entrySet()) {
+            if (known.containsKey(e.getKey())) {
+                out.dropTokens(e.getKey(), staleTokens(known.get(e.getKey()), e.getValue()));
+            } else {
+                toRead.add(e.getKey());
+            }
+        }
+        if (toName.isEmpty() && toRead.isEmpty()) return send(out.writes);
+
+        List<Task<?>> reads = new ArrayList<>();
+        Task<Map<String, Object>> names = DBManager.getInstance().authorNames(new ArrayList<>(toName));
+        reads.add(names);
+        Map<String, Task<DataSnapshot>> oldTitles = new HashMap<>();
+        for (String bookId : toRead) {
+            Task<DataSnapshot> read = root.child(DBManager.BOOKS).child(bookId).child("title").get();
+            oldTitles.put(bookId, read);
+            reads.add(read);
+        }
+        return Tasks.whenAllComplete(reads).onSuccessTask(done -> {
+            Map<String, Object> read = names.getResult(); // authorNames never fails
+            for (Map.Entry<String, List<String>> e : pending.entrySet()) {
+                for (String authorId : e.getValue()) {
+                    Object name = read.get(authorId);
+                    if (name == null) continue;
+                    out.set(DBManager.FEED + "/" + e.getKey() + "/" + DBManager.AUTHOR_NAMES + "/" + authorId, name);
+                }
+            }
+            // An unreadable old title leaves stale tokens; SearchManager re-checks titles.
+            for (Map.Entry<String, Task<DataSnapshot>> e : oldTitles.entrySet()) {
+                if (!e.getValue().isSuccessful()) continue;
+                String bookId = e.getKey();
+                String old = e.getValue().getResult().getValue(String.class);
+                out.dropTokens(bookId, staleTokens(old, retitled.get(bookId)));
+            }
+            return send(out.writes);
+        });
+    }
+
+    private void dropTokens(String bookId, List<String> tokens) {
+        for (String token : tokens) set(DBManager.SEARCH_INDEX + "/" + token + "/" + bookId, null);
+    }
+
+    /** Words of the old title that the new one lacks. */
+    @VisibleForTesting
+    @NonNull
+    static List<String> staleTokens(@Nullable String oldTitle, @Nullable String newTitle) {
+        List<String> kept = SearchIndex.tokenize(newTitle);
+        List<String> stale = new ArrayList<>();
+        for (String token : SearchIndex.tokenize(oldTitle)) {
+            if (!kept.contains(token)) stale.add(token);
+        }
+        return stale;
+    }
+
+    private Task<Void> send(Map<String, Object> writes) {
+        List<Task<Void>> sent = new ArrayList<>();
+        for (Map<String, Object> chunk : chunks(writes, MAX_PATHS)) sent.add(root.updateChildren(chunk));
+        return Tasks.whenAll(sent);
+    }
+
+    /** {@code writes} split into updates of at most {@code max} paths each. */
+    @VisibleForTesting
+    static List<Map<String, Object>> chunks(Map<String, Object> writes, int max) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        Map<String, Object> chunk = new HashMap<>();
+        for (Map.Entry<String, Object> e : writes.entrySet()) {
+            chunk.put(e.getKey(), e.getValue());
+            if (chunk.size() < max) continue;
+            out.add(chunk);
+            chunk = new HashMap<>();
+        }
+        if (!chunk.isEmpty()) out.add(chunk);
+        return out;
+    }
+
+    /** {@code base} with {@code value} written at the relative {@code path}; a non-map base is replaced. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> merged(@Nullable Object base, String path, @Nullable Object value) {
+        Map<String, Object> out = base instanceof Map
+                ? new HashMap<>((Map<String, Object>) base) : new HashMap<>();
+        int slash = path.indexOf('/');
+        if (slash < 0) {
+            out.put(path, value);
+        } else {
+            String key = path.substring(0, slash);
+            out.put(key, merged(out.get(key), path.substring(slash + 1), value));
+        }
+        return out;
+    }
+}
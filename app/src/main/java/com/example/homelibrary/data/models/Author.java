@@ -1,11 +1,14 @@
 package com.example.homelibrary.data.models;
 
+import com.example.homelibrary.processor.SnapshotModel;
+
 import java.util.List;
 
 /**
  * Represents an author in the HomeLibrary application.
  * This model is used for interactions with the database.
  */
+@SnapshotModel
 public class Author {
     /**
      * Unique identifier for the author.
@@ -27,6 +30,11 @@ public class Author {
      */
     public List<String> bookIds;
 
+    /**
+     * Server timestamp (ms) of the last write; used for delta sync.
+     */
+    public long updatedAt;
+
     /**
      * Default constructor required for Firebase deserialization.
      */
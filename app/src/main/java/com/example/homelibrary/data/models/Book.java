@@ -1,11 +1,14 @@
 package com.example.homelibrary.data.models;
 
+import com.example.homelibrary.processor.SnapshotModel;
+
 import java.util.List;
 
 /**
  * Represents a book in the HomeLibrary application.
  * This model is used for interactions with the database and storage.
  */
+@SnapshotModel
 public class Book {
     /**
      * Unique identifier for the book.
@@ -42,6 +45,30 @@ public class Book {
      */
     public String imageUrl;
 
+    /**
+     * WebP cover variants derived from {@link #imageUrl} by the thumbnailer tool,
+     * {@value #COVER_SMALL_WIDTH}, {@value #COVER_MEDIUM_WIDTH} and
+     * {@value #COVER_LARGE_WIDTH} px wide. Null until generated.
+     */
+    public String coverSmallUrl;
+    public String coverMediumUrl;
+    public String coverLargeUrl;
+
+    public static final int COVER_SMALL_WIDTH = 160;
+    public static final int COVER_MEDIUM_WIDTH = 320;
+    public static final int COVER_LARGE_WIDTH = 640;
+
+    /**
+     * Hex SHA-256 of the book file. Books with the same hash share one local
+     * copy, and a known hash skips the download. Null when not recorded.
+     */
+    public String sha256;
+
+    /**
+     * Server timestamp (ms) of the last metadata write; used for delta sync.
+     */
+    public long updatedAt;
+
     /**
      * Default constructor required for Firebase deserialization.
      */
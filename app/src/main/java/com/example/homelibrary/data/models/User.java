@@ -1,8 +1,11 @@
 package com.example.homelibrary.data.models;
 
+import com.example.homelibrary.processor.SnapshotModel;
+
 /**
  * Represents a user in the HomeLibrary application.
  */
+@SnapshotModel
 public class User {
     /**
      * Unique identifier of the user (provided by Firebase Auth).
@@ -8,6 +8,8 @@ import androidx.fragment.app.FragmentTransaction;
 
 import com.example.homelibrary.R;
 import com.example.homelibrary.data.AuthManager;
+import com.example.homelibrary.data.CatalogRepository;
+import com.example.homelibrary.data.OfflineManager;
 import com.example.homelibrary.ui.auth.AuthHostFragment;
 import com.example.homelibrary.ui.auth.AuthFragment.NavigationListener;
 import com.example.homelibrary.ui.home.HomeHostFragment;
@@ -31,12 +33,15 @@ public class MainActivity extends AppCompatActivity implements NavigationListene
     }
 
     private void showAuth() {
+        OfflineManager.getInstance().onSignedOut();
         FragmentTransaction ft = getSupportFragmentManager().beginTransaction();
         ft.replace(R.id.main_fragment_container, new AuthHostFragment());
         ft.commit();
     }
 
     private void showHome() {
+        CatalogRepository.getInstance(this).startSync();
+        OfflineManager.getInstance().onSignedIn();
         FragmentTransaction ft = getSupportFragmentManager().beginTransaction();
         ft.replace(R.id.main_fragment_container, new HomeHostFragment());
         ft.commit();
@@ -14,16 +14,17 @@ import androidx.fragment.app.Fragment;
 import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
 
-import com.bumptech.glide.Glide;
 import com.example.homelibrary.R;
-import com.example.homelibrary.data.models.Author;
-import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.data.AuthorResolver;
+import com.example.homelibrary.data.CatalogRepository;
+import com.example.homelibrary.data.SnapshotDecoder;
+import com.example.homelibrary.data.SnapshotMappers;
+import com.example.homelibrary.ui.common.CoverLoader;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -61,17 +62,30 @@ public class BookCardFragment extends Fragment {
         TextView genre = v.findViewById(R.id.card_genre);
         CardView root = v.findViewById(R.id.card_root);
 
+        CatalogRepository repo = CatalogRepository.getInstance(requireContext());
+        boolean[] fresh = {false};
+        repo.loadBook(bookId, cached -> {
+            if (cached == null || fresh[0] || !isAdded()) return;
+            title.setText(cached.title);
+            genre.setText(cached.genre);
+            CoverLoader.intoCard(this, cached, cover);
+            fetchAuthors(cached.authorIds, authors);
+        });
+
         FirebaseDatabase.getInstance().getReference()
                 .child("books").child(bookId)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override public void onDataChange(@NonNull DataSnapshot ds) {
-                        Book b = ds.getValue(Book.class);
-                        if (b == null) return;
-                        title.setText(b.title);
-                        genre.setText(b.genre);
-                        Glide.with(requireContext()).load(b.imageUrl)
-                                .placeholder(R.drawable.placeholder_cover).into(cover);
-                        fetchAuthors(b.authorIds, authors);
+                        SnapshotDecoder.decode(ds, SnapshotMappers.BOOK, b -> {
+                            if (b == null) return;
+                            repo.cacheBook(b);
+                            if (!isAdded()) return;
+                            fresh[0] = true;
+                            title.setText(b.title);
+                            genre.setText(b.genre);
+                            CoverLoader.intoCard(BookCardFragment.this, b, cover);
+                            fetchAuthors(b.authorIds, authors);
+                        });
                     }
                     @Override public void onCancelled(@NonNull DatabaseError e) {}
                 });
@@ -86,19 +100,8 @@ public class BookCardFragment extends Fragment {
 
     private void fetchAuthors(List<String> ids, TextView out) {
         if (ids == null || ids.isEmpty()) { out.setText(R.string.unknown_authors); return; }
-        List<String> list = new ArrayList<>();
-        for (String id : ids) {
-            FirebaseDatabase.getInstance().getReference()
-                    .child("authors").child(id)
-                    .addListenerForSingleValueEvent(new ValueEventListener() {
-                        @Override public void onDataChange(@NonNull DataSnapshot ds) {
-                            Author a = ds.getValue(Author.class);
-                            list.add(a != null ? a.fullName : getString(R.string.unknown_author));
-                            if (list.size() == ids.size())
-                                out.setText(String.join(", ", list));
-                        }
-                        @Override public void onCancelled(@NonNull DatabaseError e) {}
-                    });
-        }
+        AuthorResolver.getInstance(requireContext()).resolve(ids, names -> {
+            if (isAdded()) out.setText(AuthorResolver.join(names, getString(R.string.unknown_author)));
+        });
     }
 }
@@ -1,16 +1,8 @@
 package com.example.homelibrary.ui.book;
 
-import android.annotation.SuppressLint;
-import android.app.DownloadManager;
-import android.content.ActivityNotFoundException;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-import android.net.Uri;
-import android.os.Build;
 import android.os.Bundle;
-import android.os.Environment;
+import android.text.format.DateUtils;
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -24,24 +16,27 @@ import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.Toolbar;
-import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.Navigation;
 
-import com.bumptech.glide.Glide;
 import com.example.homelibrary.R;
 import com.example.homelibrary.data.AuthManager;
+import com.example.homelibrary.data.AuthorResolver;
 import com.example.homelibrary.data.BookDownloadManager;
-import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.BookStorage;
+import com.example.homelibrary.data.OfflineManager;
+import com.example.homelibrary.data.CatalogRepository;
+import com.example.homelibrary.data.DownloadProgress;
+import com.example.homelibrary.data.SnapshotDecoder;
+import com.example.homelibrary.data.SnapshotMappers;
 import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.ui.common.CoverLoader;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
-import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -60,33 +55,13 @@ public class BookDetailFragment extends Fragment {
     private TextView descriptionText;
     private Button readButton;
     private ProgressBar progressBar;
+    private TextView downloadStatus;
 
     private String bookId;
     private Book currentBook;
-    private long downloadId = -1;
 
-    private final BroadcastReceiver downloadReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context ctx, Intent intent) {
-            long id = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, -1);
-            if (id != downloadId) {
-                return;
-            }
-            boolean success = BookDownloadManager.getInstance(requireContext())
-                    .isDownloadSuccessful(id);
-            progressBar.setVisibility(View.GONE);
-            readButton.setEnabled(true);
-            if (success) {
-                File localFile = new File(
-                        requireContext().getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS),
-                        "books/" + currentBook.id + ".pdf"
-                );
-                openPdf(localFile);
-            } else {
-                Toast.makeText(requireContext(), "Download failed", Toast.LENGTH_SHORT).show();
-            }
-        }
-    };
+    /** Set when the user tapped "read" on a missing file; the reader opens once it can. */
+    private boolean openWhenDownloaded;
 
     public BookDetailFragment() { }
 
@@ -127,7 +102,6 @@ public class BookDetailFragment extends Fragment {
      * @param view               Root view returned by onCreateView
      * @param savedInstanceState Previously saved state, if any
      */
-    @SuppressLint("UnspecifiedRegisterReceiverFlag")
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         toolbar = view.findViewById(R.id.book_detail_toolbar);
@@ -138,6 +112,7 @@ public class BookDetailFragment extends Fragment {
         descriptionText = view.findViewById(R.id.book_description);
         readButton = view.findViewById(R.id.button_read);
         progressBar = view.findViewById(R.id.book_progress_bar);
+        downloadStatus = view.findViewById(R.id.book_download_status);
 
         toolbar.setNavigationIcon(R.drawable.ic_arrow_back);
         toolbar.setNavigationOnClickListener(v ->
@@ -155,64 +130,105 @@ public class BookDetailFragment extends Fragment {
         if (getArguments() != null) {
             bookId = getArguments().getString(ARG_BOOK_ID);
             loadBookDetails();
+            BookDownloadManager.getInstance(requireContext()).progress(bookId)
+                    .observe(getViewLifecycleOwner(), this::showDownloadProgress);
         }
 
         readButton.setOnClickListener(v -> {
-            if (currentBook != null) {
-                File localFile = new File(
-                        requireContext().getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS),
-                        "books/" + currentBook.id + ".pdf"
-                );
-                if (localFile.exists()) {
-                    openPdf(localFile);
+            if (currentBook == null) return;
+            if (canReadWhileDownloading()) {
+                openWhenDownloaded = false;
+                openReader();
+                return;
+            }
+            Book book = currentBook;
+            BookStorage.getInstance(requireContext()).fileOrLink(book, file -> {
+                if (getView() == null || book != currentBook) return;
+                if (file != null || canReadWhileDownloading()) {
+                    openWhenDownloaded = false;
+                    openReader();
                 } else {
                     startDownloadAndListen();
                 }
-            }
+            });
         });
     }
 
     /**
-     * Registers the broadcast receiver to listen for download completion.
+     * Mirrors the download queue: the bar and ETA stay up while the book is queued
+     * or running, even after the fragment was paused or recreated.
      */
-    @SuppressLint("UnspecifiedRegisterReceiverFlag")
-    @Override
-    public void onResume() {
-        super.onResume();
-        IntentFilter filter = new IntentFilter(DownloadManager.ACTION_DOWNLOAD_COMPLETE);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            requireContext().registerReceiver(downloadReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            requireContext().registerReceiver(downloadReceiver, filter);
+    private void showDownloadProgress(DownloadProgress p) {
+        boolean active = p.isActive();
+        progressBar.setVisibility(active ? View.VISIBLE : View.GONE);
+        downloadStatus.setVisibility(active ? View.VISIBLE : View.GONE);
+        boolean streamable = canReadWhileDownloading();
+        readButton.setEnabled(!active || streamable);
+        if (active) {
+            float fraction = p.fraction();
+            progressBar.setIndeterminate(p.state == DownloadProgress.State.QUEUED || fraction < 0);
+            if (fraction >= 0) progressBar.setProgress(Math.round(fraction * progressBar.getMax()));
+            downloadStatus.setText(statusText(p, fraction));
+            if (openWhenDownloaded && streamable) {
+                // the reader shows the first pages long before the whole book lands
+                openWhenDownloaded = false;
+                openReader();
+            }
+            return;
+        }
+        if (!openWhenDownloaded) return;
+        if (p.state == DownloadProgress.State.DONE) {
+            BookStorage.getInstance(requireContext()).file(bookId, file -> {
+                if (getView() == null || !openWhenDownloaded || file == null) return;
+                openWhenDownloaded = false;
+                openReader();
+            });
+        } else if (p.state == DownloadProgress.State.FAILED) {
+            openWhenDownloaded = false;
+            Toast.makeText(requireContext(), R.string.download_failed, Toast.LENGTH_SHORT).show();
         }
     }
 
-    /**
-     * Unregisters the broadcast receiver to avoid memory leaks.
-     */
-    @Override
-    public void onPause() {
-        super.onPause();
-        try {
-            requireContext().unregisterReceiver(downloadReceiver);
-        } catch (IllegalArgumentException ignored) { }
+    private String statusText(DownloadProgress p, float fraction) {
+        if (p.state == DownloadProgress.State.QUEUED) {
+            return getString(R.string.download_queued);
+        }
+        if (fraction >= 0 && p.etaMillis >= 0) {
+            return getString(R.string.download_progress, Math.round(fraction * 100),
+                    DateUtils.formatElapsedTime(p.etaMillis / 1000));
+        }
+        return getString(R.string.download_progress_bytes,
+                Formatter.formatShortFileSize(requireContext(), p.downloadedBytes));
     }
 
     /**
-     * Fetches the Book object from Firebase Realtime Database and populates UI.
+     * Shows the cached Book right away, then fetches the fresh one from
+     * Firebase Realtime Database and populates UI again. Offline, the second
+     * read is answered from the RTDB disk cache.
      */
     private void loadBookDetails() {
+        // kept synced from now on, so the single read below is served fresh from disk
+        OfflineManager.getInstance().bookViewed(bookId);
+        CatalogRepository repo = CatalogRepository.getInstance(requireContext());
+        repo.loadBook(bookId, cached -> {
+            if (cached == null || currentBook != null || !isAdded()) return;
+            currentBook = cached;
+            populateBookData(cached);
+        });
+
         DatabaseReference bookRef = FirebaseDatabase.getInstance()
                 .getReference("books")
                 .child(bookId);
         bookRef.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                Book book = snapshot.getValue(Book.class);
-                if (book != null) {
+                SnapshotDecoder.decode(snapshot, SnapshotMappers.BOOK, book -> {
+                    if (book == null) return;
+                    repo.cacheBook(book);
+                    if (!isAdded()) return;
                     currentBook = book;
                     populateBookData(book);
-                }
+                });
             }
 
             @Override
@@ -232,10 +248,9 @@ public class BookDetailFragment extends Fragment {
         genreText.setText(book.genre);
         descriptionText.setText(book.description);
 
-        Glide.with(requireContext())
-                .load(book.imageUrl)
-                .placeholder(R.drawable.placeholder_cover)
-                .into(coverImage);
+        CoverLoader.intoDetail(this, book, coverImage);
+        // книга открыта — её загрузка из очереди полки идёт первой
+        BookDownloadManager.getInstance(requireContext()).prioritize(book);
 
         loadAuthors(book.authorIds);
     }
@@ -250,34 +265,10 @@ public class BookDetailFragment extends Fragment {
             authorsText.setText(R.string.unknown_authors);
             return;
         }
-        List<String> names = new ArrayList<>();
-        DatabaseReference authorsRoot = FirebaseDatabase.getInstance()
-                .getReference("authors");
-        for (String aId : authorIds) {
-            authorsRoot.child(aId).addListenerForSingleValueEvent(
-                    new ValueEventListener() {
-                        @Override
-                        public void onDataChange(@NonNull DataSnapshot snapshot) {
-                            Author author = snapshot.getValue(Author.class);
-                            if (author != null) {
-                                names.add(author.fullName);
-                            } else {
-                                names.add(getString(R.string.unknown_author));
-                            }
-                            if (names.size() == authorIds.size()) {
-                                authorsText.setText(String.join(", ", names));
-                            }
-                        }
-
-                        @Override
-                        public void onCancelled(@NonNull DatabaseError error) {
-                            names.add(getString(R.string.unknown_author));
-                            if (names.size() == authorIds.size()) {
-                                authorsText.setText(String.join(", ", names));
-                            }
-                        }
-                    });
-        }
+        AuthorResolver.getInstance(requireContext()).resolve(authorIds, names -> {
+            if (!isAdded()) return;
+            authorsText.setText(AuthorResolver.join(names, getString(R.string.unknown_author)));
+        });
     }
 
     /**
@@ -285,30 +276,22 @@ public class BookDetailFragment extends Fragment {
      */
     private void startDownloadAndListen() {
         String userId = AuthManager.getInstance().getCurrentUser().getUid();
+        openWhenDownloaded = true;
         progressBar.setVisibility(View.VISIBLE);
         readButton.setEnabled(false);
-        downloadId = BookDownloadManager.getInstance(requireContext())
-                .downloadBook(currentBook, userId);
+        BookDownloadManager.getInstance(requireContext()).downloadBook(currentBook, userId);
+    }
+
+    private boolean canReadWhileDownloading() {
+        return BookDownloadManager.getInstance(requireContext()).streaming(bookId) != null;
     }
 
     /**
-     * Opens the specified PDF file using an external PDF reader application.
-     *
-     * @param file Local PDF file to open
+     * Opens the book in the built-in reader, downloaded or still downloading.
      */
-    private void openPdf(File file) {
-        Uri uri = FileProvider.getUriForFile(
-                requireContext(),
-                requireContext().getPackageName() + ".fileprovider",
-                file
-        );
-        Intent intent = new Intent(Intent.ACTION_VIEW);
-        intent.setDataAndType(uri, "application/pdf");
-        intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-        try {
-            startActivity(intent);
-        } catch (ActivityNotFoundException ex) {
-            Toast.makeText(requireContext(), "No PDF reader found", Toast.LENGTH_SHORT).show();
-        }
+    private void openReader() {
+        Bundle args = new Bundle();
+        args.putString(BookReaderFragment.ARG_BOOK_ID, bookId);
+        Navigation.findNavController(requireView()).navigate(R.id.bookReaderFragment, args);
     }
 }
@@ -0,0 +1,342 @@
+package com.example.homelibrary.ui.book;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.widget.Toolbar;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.navigation.Navigation;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.SimpleItemAnimator;
+
+import com.example.homelibrary.R;
+import com.example.homelibrary.data.BookDownloadManager;
+import com.example.homelibrary.data.BookStorage;
+import com.example.homelibrary.data.DownloadProgress;
+import com.example.homelibrary.data.PartialPdf;
+import com.example.homelibrary.data.RangeScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-app PDF reader: a vertical list of pages rendered by {@link PdfPageRenderer}.
+ * A book that is still downloading opens as soon as its structure is on disk;
+ * the pages on screen are then fetched ahead of the rest. Remembers the last
+ * page per book.
+ */
+public class BookReaderFragment extends Fragment implements PdfPageRenderer.Listener {
+
+    static final String ARG_BOOK_ID = "bookId";
+
+    private static final String PREFS = "reader";
+    private static final String KEY_PAGE_PREFIX = "page_";
+
+    private RecyclerView pages;
+    private ProgressBar progress;
+    private TextView pageIndicator;
+    private LinearLayoutManager layoutManager;
+
+    private String bookId;
+    private PdfPageRenderer renderer;
+    /** Set while reading a book that is still downloading. */
+    @Nullable
+    private PartialPdf partial;
+    private ExecutorService opener;
+    private final PageAdapter adapter = new PageAdapter();
+    /** Height/width of the first page; placeholder size until a page is rendered. */
+    private float defaultAspect = 1.414f;
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater,
+                             @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_book_reader, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        Toolbar toolbar = view.findViewById(R.id.reader_toolbar);
+        pages = view.findViewById(R.id.reader_pages);
+        progress = view.findViewById(R.id.reader_progress);
+        pageIndicator = view.findViewById(R.id.reader_page_indicator);
+
+        toolbar.setNavigationIcon(R.drawable.ic_arrow_back);
+        toolbar.setNavigationOnClickListener(v ->
+                Navigation.findNavController(requireView()).popBackStack());
+
+        layoutManager = new LinearLayoutManager(requireContext());
+        pages.setLayoutManager(layoutManager);
+        pages.setHasFixedSize(true);
+        pages.setItemViewCacheSize(0); // offscreen pages live in the renderer's cache instead
+        // a rendered page replaces its placeholder in place, no cross-fade copy
+        ((SimpleItemAnimator) pages.getItemAnimator()).setSupportsChangeAnimations(false);
+        pages.setAdapter(adapter);
+        pages.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                onVisibleRangeChanged();
+            }
+        });
+
+        bookId = requireArguments().getString(ARG_BOOK_ID);
+        opener = Executors.newSingleThreadExecutor();
+        // page width is known only after layout
+        pages.post(this::openBook);
+    }
+
+    /**
+     * Opens the downloaded file, or the part downloaded so far when the download
+     * is running here; otherwise waits for it to finish.
+     */
+    private void openBook() {
+        if (getView() == null) return;
+        BookStorage.getInstance(requireContext()).file(bookId, file -> {
+            if (getView() == null || renderer != null) return;
+            if (file != null) {
+                // kept out of quota eviction while open
+                BookStorage.getInstance(requireContext()).pin(bookId);
+                renderer = new PdfPageRenderer(file, pages.getWidth(), this, null);
+            } else {
+                openPartial();
+            }
+        });
+    }
+
+    /** Reads the part downloaded so far, or waits when the download isn't running here. */
+    private void openPartial() {
+        Context ctx = requireContext();
+        int width = pages.getWidth();
+        RangeScheduler ranges = BookDownloadManager.getInstance(ctx).streaming(bookId);
+        if (ranges == null) {
+            waitForDownload();
+            return;
+        }
+        // the part file becomes the book file when done; keep it from eviction too
+        BookStorage.getInstance(ctx).pin(bookId);
+        File part = BookDownloadManager.partFile(ctx, bookId);
+        opener.execute(() -> {
+            PartialPdf pdf;
+            try {
+                pdf = PartialPdf.open(part, ranges);
+            } catch (IOException | InterruptedException e) {
+                pages.post(this::waitForDownload); // e.g. encrypted or unusual xref
+                return;
+            }
+            // The download may rename the part file any moment now, so the
+            // renderer shares the descriptor PartialPdf already holds.
+            ParcelFileDescriptor fd;
+            try {
+                fd = ParcelFileDescriptor.dup(pdf.fd());
+            } catch (IOException e) {
+                pdf.close();
+                pages.post(this::waitForDownload);
+                return;
+            }
+            pages.post(() -> {
+                if (getView() == null) {
+                    pdf.close();
+                    closeQuietly(fd);
+                    return;
+                }
+                partial = pdf;
+                renderer = new PdfPageRenderer(fd, width, this, new PdfPageRenderer.PageGate() {
+                    @Override
+                    public boolean isReady(int page) {
+                        return pdf.isPageReady(page);
+                    }
+
+                    @Override
+                    public void request(int page, Runnable onReady) {
+                        pdf.request(page, onReady);
+                    }
+                });
+            });
+        });
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor fd) {
+        try {
+            fd.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /** Reopens the book once the download completes. */
+    private void waitForDownload() {
+        if (getView() == null) return;
+        LiveData<DownloadProgress> progress =
+                BookDownloadManager.getInstance(requireContext()).progress(bookId);
+        progress.observe(getViewLifecycleOwner(), new Observer<DownloadProgress>() {
+            @Override
+            public void onChanged(DownloadProgress p) {
+                if (p.isActive()) return;
+                progress.removeObserver(this);
+                if (p.state == DownloadProgress.State.DONE) {
+                    openBook();
+                } else {
+                    onError(new IOException("Book is not downloaded"));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        if (first != RecyclerView.NO_POSITION) {
+            prefs().edit().putInt(KEY_PAGE_PREFIX + bookId, first).apply();
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        pages.setAdapter(null); // releases bound bitmaps before the renderer drops them
+        opener.shutdownNow();
+        closeRenderer();
+        BookStorage.getInstance(requireContext()).unpin(bookId);
+        super.onDestroyView();
+    }
+
+    // ====== PdfPageRenderer.Listener ======
+
+    @Override
+    public void onOpened(int pageCount) {
+        if (renderer == null) return;
+        progress.setVisibility(View.GONE);
+        adapter.setPageCount(pageCount);
+        int last = prefs().getInt(KEY_PAGE_PREFIX + bookId, 0);
+        if (last > 0 && last < pageCount) layoutManager.scrollToPosition(last);
+        pages.post(this::onVisibleRangeChanged);
+    }
+
+    @Override
+    public void onPageRendered(int page) {
+        if (renderer == null) return;
+        adapter.notifyItemChanged(page);
+    }
+
+    @Override
+    public void onError(IOException e) {
+        if (getView() == null) return;
+        if (partial != null) {
+            // the renderer couldn't use the partial file; read the whole one instead
+            closeRenderer();
+            waitForDownload();
+            return;
+        }
+        if (renderer != null) {
+            // PdfRenderer rejected the whole file; drop it so the next open downloads it again
+            BookStorage.getInstance(requireContext()).markCorrupt(bookId);
+        }
+        Toast.makeText(requireContext(), R.string.reader_open_failed, Toast.LENGTH_SHORT).show();
+        Navigation.findNavController(requireView()).popBackStack();
+    }
+
+    private void onVisibleRangeChanged() {
+        if (renderer == null) return;
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) return;
+        renderer.setVisible(first, last);
+        pageIndicator.setVisibility(View.VISIBLE);
+        pageIndicator.setText(getString(R.string.reader_page, first + 1, adapter.getItemCount()));
+    }
+
+    private void closeRenderer() {
+        if (renderer != null) {
+            renderer.close();
+            renderer = null;
+        }
+        if (partial != null) {
+            partial.close();
+            partial = null;
+        }
+    }
+
+    private SharedPreferences prefs() {
+        return requireContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    // ====== Adapter ======
+
+    private class PageAdapter extends RecyclerView.Adapter<PageAdapter.Holder> {
+
+        private int pageCount = 0;
+
+        void setPageCount(int count) {
+            pageCount = count;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getItemCount() {
+            return pageCount;
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View v = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_pdf_page, parent, false);
+            return new Holder((ImageView) v);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull Holder h, int position) {
+            h.unbind();
+            Bitmap b = renderer != null ? renderer.acquire(position) : null;
+            int width = pages.getWidth();
+            ViewGroup.LayoutParams lp = h.image.getLayoutParams();
+            if (b != null) {
+                if (position == 0) defaultAspect = b.getHeight() / (float) b.getWidth();
+                lp.height = b.getHeight();
+            } else {
+                lp.height = Math.round(width * defaultAspect);
+            }
+            h.image.setLayoutParams(lp);
+            h.image.setImageBitmap(b);
+            h.bitmap = b;
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull Holder h) {
+            h.unbind();
+        }
+
+        class Holder extends RecyclerView.ViewHolder {
+            final ImageView image;
+            Bitmap bitmap;
+
+            Holder(ImageView v) {
+                super(v);
+                image = v;
+            }
+
+            void unbind() {
+                image.setImageDrawable(null);
+                if (bitmap != null && renderer != null) renderer.release(bitmap);
+                bitmap = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.homelibrary.ui.book;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.pdf.PdfRenderer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders PDF pages at a fixed width for {@link BookReaderFragment}.
+ * <ul>
+ *   <li>PdfRenderer reads the file through a ParcelFileDescriptor, so only the
+ *   pages being drawn are parsed and memory doesn't depend on book size.</li>
+ *   <li>All PdfRenderer calls run on one background thread, because it allows
+ *   only one open page at a time.</li>
+ *   <li>Rendered pages live in a byte-bounded LRU. Evicted bitmaps are reused
+ *   for later pages once no view shows them.</li>
+ *   <li>Only the visible window and {@link #PREFETCH} pages around it are
+ *   rendered; requests that scroll out of range before their turn are dropped.</li>
+ *   <li>With a {@link PageGate}, a page whose bytes haven't arrived is skipped
+ *   and rendered once they do.</li>
+ * </ul>
+ */
+final class PdfPageRenderer {
+
+    interface Listener {
+        void onOpened(int pageCount);
+        void onPageRendered(int page);
+        void onError(IOException e);
+    }
+
+    /** For files still downloading: says whether a page's bytes are on disk yet. */
+    interface PageGate {
+        boolean isReady(int page);
+
+        /** Fetch the page first; {@code onReady} may run on any thread. */
+        void request(int page, Runnable onReady);
+    }
+
+    /** Pages rendered ahead of and behind the visible window. */
+    static final int PREFETCH = 2;
+    private static final int POOL_SIZE = 4;
+
+    @Nullable
+    private final File file;
+    private final int pageWidth;
+    private final Listener listener;
+    @Nullable
+    private final PageGate gate;
+    private final ExecutorService renderThread = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    // render thread only
+    private ParcelFileDescriptor fd;
+    private PdfRenderer renderer;
+
+    // guarded by this
+    private final LruCache<Integer, Bitmap> cache;
+    private final ArrayDeque<Bitmap> pool = new ArrayDeque<>();
+    private final Map<Bitmap, Integer> inUse = new HashMap<>();
+    private final Set<Bitmap> evictedInUse = new HashSet<>();
+    private final Set<Integer> pending = new HashSet<>();
+    private int wantFrom = 0;
+    private int wantTo = -1;
+    private int visibleFirst = -1;
+    private int visibleLast = -1;
+    private int pageCount = 0;
+    private boolean closed;
+    /** A page failed to render; reported once, the file is unusable. */
+    private boolean failed;
+
+    PdfPageRenderer(@NonNull File file, int pageWidth, @NonNull Listener listener,
+                    @Nullable PageGate gate) {
+        this(file, null, pageWidth, listener, gate);
+    }
+
+    /** Reads an already open descriptor, which the renderer then owns and closes. */
+    PdfPageRenderer(@NonNull ParcelFileDescriptor fd, int pageWidth, @NonNull Listener listener,
+                    @Nullable PageGate gate) {
+        this(null, fd, pageWidth, listener, gate);
+    }
+
+    private PdfPageRenderer(@Nullable File file, @Nullable ParcelFileDescriptor fd, int pageWidth,
+                            @NonNull Listener listener, @Nullable PageGate gate) {
+        this.file = file;
+        this.fd = fd;
+        this.pageWidth = pageWidth;
+        this.listener = listener;
+        this.gate = gate;
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        cache = new LruCache<Integer, Bitmap>((int) Math.min(Integer.MAX_VALUE, budget)) {
+            @Override
+            protected int sizeOf(Integer page, Bitmap b) {
+                return b.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Integer page, Bitmap old, Bitmap replacement) {
+                recycle(old);
+            }
+        };
+        renderThread.execute(this::openOnRenderThread);
+    }
+
+    // ====== Main thread API ======
+
+    /** Rendered bitmap of the page or null; pair every non-null result with {@link #release}. */
+    @Nullable
+    synchronized Bitmap acquire(int page) {
+        Bitmap b = cache.get(page);
+        if (b != null) inUse.merge(b, 1, Integer::sum);
+        return b;
+    }
+
+    synchronized void release(@Nullable Bitmap b) {
+        if (b == null) return;
+        Integer refs = inUse.get(b);
+        if (refs == null) return;
+        if (refs > 1) {
+            inUse.put(b, refs - 1);
+            return;
+        }
+        inUse.remove(b);
+        if (evictedInUse.remove(b)) toPool(b);
+    }
+
+    /** Visible pages changed; renders them first, then the neighbours. */
+    synchronized void setVisible(int first, int last) {
+        if (closed || pageCount == 0 || first < 0) return;
+        visibleFirst = first;
+        visibleLast = last;
+        wantFrom = Math.max(0, first - PREFETCH);
+        wantTo = Math.min(pageCount - 1, last + PREFETCH);
+        List<Integer> order = new ArrayList<>();
+        for (int p = first; p <= last && p < pageCount; p++) order.add(p);
+        for (int d = 1; d <= PREFETCH; d++) {
+            if (last + d <= wantTo) order.add(last + d);
+            if (first - d >= wantFrom) order.add(first - d);
+        }
+        for (int page : order) {
+            if (cache.get(page) != null || !pending.add(page)) continue;
+            renderThread.execute(() -> renderOnRenderThread(page));
+        }
+    }
+
+    private synchronized void retryVisible() {
+        setVisible(visibleFirst, visibleLast);
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            cache.evictAll();
+            pool.clear();
+            evictedInUse.clear();
+        }
+        renderThread.execute(() -> {
+            if (renderer != null) renderer.close();
+            try {
+                if (fd != null) fd.close();
+            } catch (IOException ignored) {
+            }
+        });
+        renderThread.shutdown();
+    }
+
+    // ====== Render thread ======
+
+    private void openOnRenderThread() {
+        try {
+            if (fd == null) fd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+            renderer = new PdfRenderer(fd);
+        } catch (IOException | SecurityException e) {
+            IOException err = e instanceof IOException ? (IOException) e : new IOException(e);
+            main.post(() -> listener.onError(err));
+            return;
+        }
+        int count = renderer.getPageCount();
+        synchronized (this) {
+            pageCount = count;
+        }
+        main.post(() -> listener.onOpened(count));
+    }
+
+    private void renderOnRenderThread(int page) {
+        synchronized (this) {
+            pending.remove(page);
+            // scrolled past before its turn came
+            if (closed || page < wantFrom || page > wantTo || cache.get(page) != null) return;
+        }
+        if (gate != null && !gate.isReady(page)) {
+            gate.request(page, () -> main.post(this::retryVisible));
+            return;
+        }
+        Bitmap bitmap = null;
+        try (PdfRenderer.Page p = renderer.openPage(page)) {
+            int height = Math.round(pageWidth * (float) p.getHeight() / p.getWidth());
+            bitmap = obtain(pageWidth, height);
+            p.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+        } catch (RuntimeException e) {
+            // e.g. a truncated or damaged file: PdfRenderer throws instead of returning
+            synchronized (this) {
+                if (bitmap != null) toPool(bitmap);
+                if (closed || failed) return;
+                failed = true;
+            }
+            IOException err = new IOException("Page " + page + " failed to render", e);
+            main.post(() -> listener.onError(err));
+            return;
+        }
+        synchronized (this) {
+            if (closed) return;
+            cache.put(page, bitmap);
+        }
+        main.post(() -> listener.onPageRendered(page));
+    }
+
+    // ====== Bitmap pool ======
+
+    /** PdfRenderer needs ARGB_8888 and draws transparent; paper is white. */
+    private Bitmap obtain(int width, int height) {
+        Bitmap b;
+        synchronized (this) {
+            b = pool.poll();
+        }
+        if (b != null && b.getWidth() == width && b.getHeight() == height) {
+            b.eraseColor(Color.WHITE);
+            return b;
+        }
+        if (b != null && b.getAllocationByteCount() >= width * height * 4) {
+            b.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            b.eraseColor(Color.WHITE);
+            return b;
+        }
+        b = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        b.eraseColor(Color.WHITE);
+        return b;
+    }
+
+    /** Called under the lock from LruCache. */
+    private void recycle(Bitmap b) {
+        if (inUse.containsKey(b)) {
+            evictedInUse.add(b);
+        } else {
+            toPool(b);
+        }
+    }
+
+    private void toPool(Bitmap b) {
+        if (!closed && pool.size() < POOL_SIZE) pool.add(b);
+    }
+}
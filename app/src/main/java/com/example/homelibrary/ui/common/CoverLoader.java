@@ -0,0 +1,121 @@
+package com.example.homelibrary.ui.common;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.TypedValue;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
+import com.example.homelibrary.R;
+import com.example.homelibrary.data.models.Book;
+
+import java.util.Objects;
+
+/**
+ * Cover loading with sizes fixed per slot, so Glide downsamples while decoding
+ * instead of holding full-resolution originals in memory. Every call site asks
+ * for the same size and options, which keeps the memory/disk cache keys equal:
+ * the feed, its preloader and the detail thumbnail all hit one entry.
+ * When the book has generated WebP variants, the smallest one covering the
+ * slot is downloaded instead of the original.
+ */
+public final class CoverLoader {
+
+    /** item_book_card / fragment_book_card card_cover slot. */
+    private static final int CARD_WIDTH_DP = 64;
+    private static final int CARD_HEIGHT_DP = 96;
+    /** android:maxHeight of book_cover_image. */
+    private static final int DETAIL_MAX_HEIGHT_DP = 550;
+
+    private CoverLoader() {}
+
+    /**
+     * Card-sized request. Covers are opaque, so RGB_565 halves the bitmap
+     * compared to ARGB_8888.
+     */
+    @NonNull
+    public static RequestBuilder<Drawable> card(@NonNull RequestManager glide,
+                                                @NonNull Context ctx,
+                                                @NonNull Book book) {
+        return glide.load(cardUrl(ctx, book))
+                .override(px(ctx, CARD_WIDTH_DP), px(ctx, CARD_HEIGHT_DP))
+                .format(DecodeFormat.PREFER_RGB_565)
+                .placeholder(R.drawable.placeholder_cover);
+    }
+
+    /** Size provider for RecyclerViewPreloader matching {@link #card}. */
+    @NonNull
+    public static <T> FixedPreloadSizeProvider<T> cardPreloadSize(@NonNull Context ctx) {
+        return new FixedPreloadSizeProvider<>(px(ctx, CARD_WIDTH_DP), px(ctx, CARD_HEIGHT_DP));
+    }
+
+    /** Loads a card cover, skipping the request when the view already shows this url. */
+    public static void intoCard(@NonNull Fragment fragment, @NonNull Book book,
+                                @NonNull ImageView view) {
+        if (!claim(view, cardUrl(fragment.requireContext(), book))) return;
+        card(Glide.with(fragment), fragment.requireContext(), book).into(view);
+    }
+
+    /** Url of the cover to show in a card slot; null when the book has no cover. */
+    @Nullable
+    public static String cardUrl(@NonNull Context ctx, @NonNull Book book) {
+        return urlFor(book, px(ctx, CARD_WIDTH_DP));
+    }
+
+    /**
+     * Smallest generated variant at least {@code widthPx} wide, falling back to the
+     * original when none is large enough or variants were not generated yet.
+     */
+    @Nullable
+    static String urlFor(@NonNull Book book, int widthPx) {
+        if (widthPx <= Book.COVER_SMALL_WIDTH && book.coverSmallUrl != null) return book.coverSmallUrl;
+        if (widthPx <= Book.COVER_MEDIUM_WIDTH && book.coverMediumUrl != null) return book.coverMediumUrl;
+        if (widthPx <= Book.COVER_LARGE_WIDTH && book.coverLargeUrl != null) return book.coverLargeUrl;
+        return book.imageUrl != null ? book.imageUrl : book.coverLargeUrl;
+    }
+
+    /**
+     * Detail hero image: the card-sized copy (usually already in memory from the
+     * feed) is shown first, then the screen-sized decode replaces it.
+     * Full-size decodes keep ARGB_8888 so Glide may use hardware bitmaps.
+     */
+    public static void intoDetail(@NonNull Fragment fragment, @NonNull Book book,
+                                  @NonNull ImageView view) {
+        Context ctx = fragment.requireContext();
+        int width = ctx.getResources().getDisplayMetrics().widthPixels;
+        String url = urlFor(book, width);
+        if (!claim(view, url)) return;
+        RequestManager glide = Glide.with(fragment);
+        glide.load(url)
+                .override(width, px(ctx, DETAIL_MAX_HEIGHT_DP))
+                .thumbnail(card(glide, ctx, book))
+                .placeholder(R.drawable.placeholder_cover)
+                .into(view);
+    }
+
+    /** Cancels the view's request and frees its bitmap, e.g. when a row is recycled. */
+    public static void clear(@NonNull Fragment fragment, @NonNull ImageView view) {
+        view.setTag(R.id.cover_url_tag, null);
+        Glide.with(fragment).clear(view);
+    }
+
+    private static boolean claim(ImageView view, @Nullable String url) {
+        // disk and network copies of a book usually carry the same url
+        if (url != null && Objects.equals(view.getTag(R.id.cover_url_tag), url)) return false;
+        view.setTag(R.id.cover_url_tag, url);
+        return true;
+    }
+
+    private static int px(Context ctx, int dp) {
+        return Math.round(TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_DIP, dp, ctx.getResources().getDisplayMetrics()));
+    }
+}
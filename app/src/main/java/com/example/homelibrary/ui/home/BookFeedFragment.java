@@ -1,6 +1,9 @@
 package com.example.homelibrary.ui.home;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,36 +13,78 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
 import com.example.homelibrary.R;
-import com.example.homelibrary.data.models.Author;
+import com.example.homelibrary.data.AuthorResolver;
+import com.example.homelibrary.data.BookPager;
+import com.example.homelibrary.data.SearchIndex;
+import com.example.homelibrary.data.SearchManager;
 import com.example.homelibrary.data.models.Book;
+import com.example.homelibrary.ui.common.CoverLoader;
 import com.google.android.material.snackbar.Snackbar;
-import com.google.firebase.database.ChildEventListener;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
 /**
- * Scrollable real-time book feed. Pagination упрощена до первого экрана,
- * акцент на подписке на изменения конкретных книг.
+ * Scrollable real-time book feed. Книги подгружаются страницами по ключу
+ * через {@link BookPager} по мере прокрутки; изменения книг в окне приходят
+ * через одну общую подписку, а не через слушатели каждой строки.
+ * {@link #setQuery} switches the same instance and adapter between the feed
+ * and live search results.
  */
 public class BookFeedFragment extends Fragment {
 
     public static final String ARG_QUERY = "query";
 
+    /** Rows left before an edge of the window when the next page is requested. */
+    private static final int PREFETCH_DISTANCE = BookPager.PAGE_SIZE / 2;
+    /** Covers fetched ahead of the scroll direction, about one screen of cards. */
+    private static final int COVER_PRELOAD = 10;
+    /** Keystrokes closer together than this make one search. */
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
     private RecyclerView recycler;
     private final BookFeedAdapter adapter = new BookFeedAdapter();
-    private String query;
+    private BookPager pager;
+    private RecyclerView.OnScrollListener pageScroll;
+    /** Bumped when the pager is stopped; its late page loads are dropped. */
+    private int pagesSeq = 0;
+    private String query = "";
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedSearch = this::searchBooks;
+    private boolean searchPending = false;
+    /** Bumped by every search and query change; late results of older searches are dropped. */
+    private int searchSeq = 0;
+    /** Query of the results on screen and the results; null while the feed is shown. */
+    private String shownQuery;
+    private List<Book> shownResults;
+    /** The results on screen came from the local index rather than the server. */
+    private boolean shownLocal;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        Bundle state = savedInstanceState != null ? savedInstanceState : getArguments();
+        if (state != null) query = state.getString(ARG_QUERY, "");
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(ARG_QUERY, query);
+    }
 
     @Nullable
     @Override
@@ -54,82 +99,265 @@ public class BookFeedFragment extends Fragment {
         recycler = view.findViewById(R.id.recycler_book_feed);
         recycler.setLayoutManager(new GridLayoutManager(requireContext(), 1));
         recycler.setAdapter(adapter);
+        recycler.addOnScrollListener(coverPreloader());
+        adapter.clear();
+        shownQuery = null;
+        shownResults = null;
+
+        if (query.isEmpty()) {
+            loadPages();
+        } else {
+            searchBooks();
+        }
+    }
+
+    // ======================= Search =======================
 
-        if (getArguments() != null) {
-            query = getArguments().getString(ARG_QUERY, "");
+    /**
+     * Live search: the query runs {@link #SEARCH_DEBOUNCE_MS} after the last
+     * change, and an empty query brings the feed back. Results of a search
+     * that is still running when the query changes are discarded.
+     */
+    public void setQuery(@Nullable String newQuery) {
+        String q = newQuery != null ? newQuery.trim() : "";
+        if (q.equals(query)) return;
+        query = q;
+        main.removeCallbacks(debouncedSearch);
+        searchPending = false;
+        searchSeq++;
+        if (getView() == null) return; // applied in onViewCreated
+        if (q.isEmpty()) {
+            showFeed();
+        } else {
+            searchPending = true;
+            main.postDelayed(debouncedSearch, SEARCH_DEBOUNCE_MS);
         }
-        subscribeToBooks();
     }
 
-    /** Live-подписка на узел "books". */
-    private void subscribeToBooks() {
-        DatabaseReference ref = FirebaseDatabase.getInstance()
-                .getReference("books");
+    /** Runs a debounced search right away, e.g. on submit. */
+    public void searchNow() {
+        if (!searchPending) return;
+        main.removeCallbacks(debouncedSearch);
+        searchBooks();
+    }
 
-        ref.addChildEventListener(new ChildEventListener() {
+    /**
+     * Поиск по локальному индексу или, пока он пуст, по серверному индексу
+     * названий. A query that extends the one on screen can only match a
+     * subset of its results, so local results are filtered instead of
+     * searching again.
+     */
+    private void searchBooks() {
+        searchPending = false;
+        stopPages();
+        int seq = ++searchSeq;
+        String q = query;
+        if (narrows(q)) {
+            List<Book> narrowed = new ArrayList<>();
+            for (Book b : shownResults) {
+                if (SearchManager.matches(b, q)) narrowed.add(b);
+            }
+            showResults(q, narrowed, true);
+            return;
+        }
+        // SearchManager picks the same source
+        boolean local = SearchIndex.getInstance().isReady();
+        SearchManager.searchBooks(q, new SearchManager.SearchCallback() {
             @Override
-            public void onChildAdded(@NonNull DataSnapshot ds, @Nullable String prev) {
-                Book b = ds.getValue(Book.class);
-                if (b == null) return;
-                if (matchesQuery(b)) {
-                    adapter.addOrUpdate(b);
-                }
+            public void onResults(List<Book> results) {
+                if (!isAdded() || seq != searchSeq) return;
+                showResults(q, results, local);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (!isAdded() || seq != searchSeq) return;
+                Snackbar.make(requireView(), R.string.error_loading_books, Snackbar.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * True when the results on screen contain every match of {@code q}: they
+     * came from the local index, which returns all matches, and {@code q} is
+     * their query with more typed. Server results can be cut short and follow
+     * other rules, so those are searched again, by the index once it is ready.
+     */
+    private boolean narrows(String q) {
+        if (shownQuery == null || !shownLocal) return false;
+        return SearchIndex.normalize(q).startsWith(SearchIndex.normalize(shownQuery));
+    }
+
+    private void showResults(String q, List<Book> results, boolean local) {
+        shownQuery = q;
+        shownResults = results;
+        shownLocal = local;
+        adapter.replaceAll(results);
+    }
+
+    private void showFeed() {
+        shownQuery = null;
+        shownResults = null;
+        adapter.clear();
+        loadPages();
+    }
+
+    // ======================= Feed =======================
+
+    /** Постраничная загрузка "feed": первая страница из кэша, далее по прокрутке. */
+    private void loadPages() {
+        stopPages();
+        int seq = pagesSeq;
+        pager = new BookPager(requireContext(), new BookPager.Listener() {
+            @Override
+            public void onInserted(int position, @NonNull List<Book> books) {
+                if (isAdded() && seq == pagesSeq) adapter.insert(position, books);
             }
 
             @Override
-            public void onChildChanged(@NonNull DataSnapshot ds, @Nullable String prev) {
-                Book b = ds.getValue(Book.class);
-                if (b == null) return;
-                adapter.addOrUpdate(b);
+            public void onChanged(int position, @NonNull Book book) {
+                if (isAdded() && seq == pagesSeq) adapter.set(position, book);
             }
 
             @Override
-            public void onChildRemoved(@NonNull DataSnapshot ds) {
-                Book b = ds.getValue(Book.class);
-                if (b == null) return;
-                adapter.remove(b.id);
+            public void onRemoved(int position, int count) {
+                if (isAdded() && seq == pagesSeq) adapter.removeRange(position, count);
             }
 
-            @Override public void onChildMoved(@NonNull DataSnapshot d, @Nullable String p) { }
-            @Override public void onCancelled(@NonNull DatabaseError e) {
+            @Override
+            public void onError(@NonNull Exception e) {
+                if (!isAdded() || seq != pagesSeq) return;
                 Snackbar.make(requireView(), R.string.error_loading_books, Snackbar.LENGTH_SHORT).show();
             }
         });
+
+        pageScroll = new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                GridLayoutManager lm = (GridLayoutManager) rv.getLayoutManager();
+                if (lm == null || pager.isLoading()) return;
+                if (dy > 0 && lm.findLastVisibleItemPosition()
+                        >= adapter.getItemCount() - 1 - PREFETCH_DISTANCE) {
+                    pager.loadNext();
+                } else if (dy < 0 && lm.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+                    pager.loadPrevious();
+                }
+            }
+        };
+        recycler.addOnScrollListener(pageScroll);
+        pager.start();
+    }
+
+    private void stopPages() {
+        pagesSeq++;
+        if (pager != null) pager.stop();
+        pager = null;
+        if (pageScroll != null) recycler.removeOnScrollListener(pageScroll);
+        pageScroll = null;
+    }
+
+    /** Requests the covers of upcoming rows with the same size/options as bind does. */
+    private RecyclerViewPreloader<Book> coverPreloader() {
+        ListPreloader.PreloadModelProvider<Book> models = new ListPreloader.PreloadModelProvider<Book>() {
+            @NonNull
+            @Override
+            public List<Book> getPreloadItems(int position) {
+                List<Book> rows = adapter.getCurrentList();
+                if (position >= rows.size()
+                        || CoverLoader.cardUrl(requireContext(), rows.get(position)) == null) {
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(rows.get(position));
+            }
+
+            @Nullable
+            @Override
+            public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Book book) {
+                return CoverLoader.card(Glide.with(BookFeedFragment.this), requireContext(), book);
+            }
+        };
+        return new RecyclerViewPreloader<>(this, models,
+                CoverLoader.<Book>cardPreloadSize(requireContext()), COVER_PRELOAD);
     }
 
-    private boolean matchesQuery(Book b) {
-        return query.isEmpty() ||
-                (b.title != null && b.title.toLowerCase().contains(query.toLowerCase()));
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        main.removeCallbacks(debouncedSearch);
+        searchSeq++;
+        stopPages();
     }
 
-    private class BookFeedAdapter extends RecyclerView.Adapter<BookFeedAdapter.Holder> {
+    private static final DiffUtil.ItemCallback<Book> BOOK_DIFF = new DiffUtil.ItemCallback<Book>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Book a, @NonNull Book b) {
+            return a.id.equals(b.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Book a, @NonNull Book b) {
+            return a.updatedAt == b.updatedAt
+                    && Objects.equals(a.title, b.title)
+                    && Objects.equals(a.genre, b.genre)
+                    && Objects.equals(a.imageUrl, b.imageUrl)
+                    && Objects.equals(a.coverSmallUrl, b.coverSmallUrl)
+                    && Objects.equals(a.coverMediumUrl, b.coverMediumUrl)
+                    && Objects.equals(a.authorIds, b.authorIds);
+        }
+    };
+
+    /**
+     * Events mutate {@link BookFeedItems} and the copy is submitted at most once
+     * per frame; ListAdapter computes the diff off the main thread.
+     */
+    private class BookFeedAdapter extends ListAdapter<Book, BookFeedAdapter.Holder> {
 
-        private final List<Book> data = new ArrayList<>();
+        private final BookFeedItems items = new BookFeedItems();
+        private boolean flushScheduled = false;
+
+        BookFeedAdapter() {
+            super(BOOK_DIFF);
+        }
 
         void addOrUpdate(Book book) {
-            int idx = indexOf(book.id);
-            if (idx == -1) {
-                data.add(book);
-                notifyItemInserted(data.size() - 1);
-            } else {
-                data.set(idx, book);
-                notifyItemChanged(idx);
-            }
+            items.addOrUpdate(book);
+            scheduleFlush();
         }
 
-        void remove(String bookId) {
-            int idx = indexOf(bookId);
-            if (idx != -1) {
-                data.remove(idx);
-                notifyItemRemoved(idx);
-            }
+        void insert(int position, List<Book> books) {
+            items.insert(position, books);
+            scheduleFlush();
         }
 
-        private int indexOf(String id) {
-            for (int i = 0; i < data.size(); i++) {
-                if (data.get(i).id.equals(id)) return i;
-            }
-            return -1;
+        void set(int position, Book book) {
+            items.set(position, book);
+            scheduleFlush();
+        }
+
+        void removeRange(int position, int count) {
+            items.removeRange(position, count);
+            scheduleFlush();
+        }
+
+        void clear() {
+            items.clear();
+            submitList(null);
+        }
+
+        /** Shows exactly {@code books}; the diff animates the change. */
+        void replaceAll(List<Book> books) {
+            items.clear();
+            items.insert(0, books);
+            scheduleFlush();
+        }
+
+        private void scheduleFlush() {
+            if (flushScheduled) return;
+            flushScheduled = true;
+            Choreographer.getInstance().postFrameCallback(t -> {
+                flushScheduled = false;
+                submitList(items.snapshot());
+            });
         }
 
         @NonNull
@@ -142,12 +370,12 @@ public class BookFeedFragment extends Fragment {
 
         @Override
         public void onBindViewHolder(@NonNull Holder h, int pos) {
-            h.bind(data.get(pos));
+            h.bind(getItem(pos));
         }
 
         @Override
-        public int getItemCount() {
-            return data.size();
+        public void onViewRecycled(@NonNull Holder h) {
+            CoverLoader.clear(BookFeedFragment.this, h.cover);
         }
 
         class Holder extends RecyclerView.ViewHolder {
@@ -157,15 +385,14 @@ public class BookFeedFragment extends Fragment {
             private final android.widget.TextView authors = itemView.findViewById(R.id.card_authors);
             private final android.widget.TextView genre = itemView.findViewById(R.id.card_genre);
 
-            private DatabaseReference bookRef;
-            private com.google.firebase.database.ValueEventListener bookListener;
+            private String boundBookId;
 
             Holder(View v) {
                 super(v);
                 v.setOnClickListener(v1 -> {
                     int pos = getAdapterPosition();
                     if (pos == RecyclerView.NO_POSITION) return;
-                    Book b = data.get(pos);
+                    Book b = getItem(pos);
                     NavController nav = NavHostFragment.findNavController(BookFeedFragment.this);
                     Bundle args = new Bundle();
                     args.putString("bookId", b.id);
@@ -176,33 +403,9 @@ public class BookFeedFragment extends Fragment {
             void bind(Book b) {
                 title.setText(b.title);
                 genre.setText(b.genre);
-                Glide.with(requireContext())
-                        .load(b.imageUrl)
-                        .placeholder(R.drawable.placeholder_cover)
-                        .into(cover);
+                CoverLoader.intoCard(BookFeedFragment.this, b, cover);
+                boundBookId = b.id;
                 subscribeAuthors(b.authorIds);
-
-                // обновление при изменении книги
-                if (bookRef != null && bookListener != null) {
-                    bookRef.removeEventListener(bookListener);
-                }
-                bookRef = FirebaseDatabase.getInstance()
-                        .getReference("books").child(b.id);
-                bookListener = (com.google.firebase.database.ValueEventListener) (new com.google.firebase.database.ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot ds) {
-                        Book fresh = ds.getValue(Book.class);
-                        if (fresh == null) return;
-                        title.setText(fresh.title);
-                        genre.setText(fresh.genre);
-                        Glide.with(requireContext())
-                                .load(fresh.imageUrl)
-                                .placeholder(R.drawable.placeholder_cover)
-                                .into(cover);
-                    }
-                    @Override public void onCancelled(@NonNull DatabaseError e) { }
-                });
-                bookRef.addValueEventListener(bookListener);
             }
 
             private void subscribeAuthors(List<String> ids) {
@@ -210,24 +413,13 @@ public class BookFeedFragment extends Fragment {
                     authors.setText(R.string.unknown_authors);
                     return;
                 }
-                Map<String, String> cache = new HashMap<>();
-                for (String id : ids) {
-                    FirebaseDatabase.getInstance().getReference("authors")
-                            .child(id)
-                            .addListenerForSingleValueEvent(new com.google.firebase.database.ValueEventListener() {
-                                @Override
-                                public void onDataChange(@NonNull DataSnapshot ds) {
-                                    Author a = ds.getValue(Author.class);
-                                    cache.put(id, a != null ? a.fullName : getString(R.string.unknown_author));
-                                    if (cache.size() == ids.size()) {
-                                        List<String> list = new ArrayList<>();
-                                        for (String k : ids) list.add(cache.get(k));
-                                        authors.setText(String.join(", ", list));
-                                    }
-                                }
-                                @Override public void onCancelled(@NonNull DatabaseError e) { }
-                            });
-                }
+                String expected = boundBookId;
+                // имена уже в кэше из строки "feed", колбэк обычно синхронный
+                AuthorResolver.getInstance(requireContext()).resolve(ids, names -> {
+                    // holder may have been rebound to another book meanwhile
+                    if (!isAdded() || !expected.equals(boundBookId)) return;
+                    authors.setText(AuthorResolver.join(names, getString(R.string.unknown_author)));
+                });
             }
         }
     }
@@ -0,0 +1,74 @@
+package com.example.homelibrary.ui.home;
+
+import com.example.homelibrary.data.models.Book;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Working copy of the feed rows with an id -> position index.
+ * Appends keep the index current; mid-list inserts and removals only mark it
+ * dirty, and it is rebuilt on the next lookup.
+ */
+final class BookFeedItems {
+
+    private final List<Book> working = new ArrayList<>();
+    private final Map<String, Integer> index = new HashMap<>();
+    private boolean indexDirty = false;
+
+    void addOrUpdate(Book book) {
+        int idx = indexOf(book.id);
+        if (idx == -1) {
+            index.put(book.id, working.size());
+            working.add(book);
+        } else {
+            working.set(idx, book);
+        }
+    }
+
+    void insert(int position, List<Book> books) {
+        boolean append = position == working.size();
+        working.addAll(position, books);
+        if (append && !indexDirty) {
+            for (int i = position; i < working.size(); i++) index.put(working.get(i).id, i);
+        } else {
+            indexDirty = true;
+        }
+    }
+
+    void set(int position, Book book) {
+        working.set(position, book);
+    }
+
+    void removeRange(int position, int count) {
+        working.subList(position, position + count).clear();
+        indexDirty = true;
+    }
+
+    void clear() {
+        working.clear();
+        index.clear();
+        indexDirty = false;
+    }
+
+    int indexOf(String id) {
+        if (indexDirty) {
+            index.clear();
+            for (int i = 0; i < working.size(); i++) index.put(working.get(i).id, i);
+            indexDirty = false;
+        }
+        Integer pos = index.get(id);
+        return pos != null ? pos : -1;
+    }
+
+    int size() {
+        return working.size();
+    }
+
+    /** Copy handed to ListAdapter.submitList. */
+    List<Book> snapshot() {
+        return new ArrayList<>(working);
+    }
+}
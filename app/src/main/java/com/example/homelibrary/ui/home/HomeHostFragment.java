@@ -14,12 +14,14 @@ import androidx.navigation.ui.NavigationUI;
 import androidx.appcompat.widget.SearchView;
 
 import com.example.homelibrary.R;
+import com.example.homelibrary.data.OfflineManager;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import java.util.Objects;
 
 /**
- * Hosts Toolbar, NavHostFragment, and BottomNavigationView for main content.
+ * Hosts Toolbar, NavHostFragment, and BottomNavigationView for main content,
+ * plus a banner while the database is offline.
  */
 public class HomeHostFragment extends Fragment {
 
@@ -47,5 +49,9 @@ public class HomeHostFragment extends Fragment {
         BottomNavigationView bottom = view.findViewById(R.id.bottom_navigation);
         bottom.setLabelVisibilityMode(BottomNavigationView.LABEL_VISIBILITY_LABELED);
         NavigationUI.setupWithNavController(bottom, navController);
+
+        View offline = view.findViewById(R.id.offline_banner);
+        OfflineManager.getInstance().connected().observe(getViewLifecycleOwner(),
+                online -> offline.setVisibility(online ? View.GONE : View.VISIBLE));
     }
 }
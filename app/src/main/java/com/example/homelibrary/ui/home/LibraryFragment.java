@@ -53,30 +53,33 @@ public class LibraryFragment extends Fragment {
         initSystemBackHandler();
 
         if (savedInstanceState == null) {
-            openFeed(null);
+            openFeed();
         }
     }
 
     /**
-     * Configures the SearchView listener to perform searches and show the back button.
+     * Configures the SearchView listener to search as the user types and show the back button.
+     * The feed fragment stays in place; it debounces the keystrokes itself.
      */
     private void initSearch() {
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                String trimmed = query.trim();
-                if (!trimmed.isEmpty()) {
-                    currentQuery = trimmed;
-                    showBackButton(true);
-                    openFeed(trimmed);
-                }
+                onQueryTextChange(query);
+                BookFeedFragment feed = feed();
+                if (feed != null) feed.searchNow();
                 searchView.clearFocus();
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                return false;
+                String trimmed = newText.trim();
+                currentQuery = trimmed.isEmpty() ? null : trimmed;
+                showBackButton(currentQuery != null);
+                BookFeedFragment feed = feed();
+                if (feed != null) feed.setQuery(trimmed);
+                return true;
             }
         });
     }
@@ -86,11 +89,8 @@ public class LibraryFragment extends Fragment {
      */
     private void initBackButton() {
         backButton.setOnClickListener(v -> {
-            currentQuery = null;
-            showBackButton(false);
-            searchView.setQuery("", false);
+            clearSearch();
             searchView.clearFocus();
-            openFeed(null);
         });
     }
 
@@ -103,10 +103,7 @@ public class LibraryFragment extends Fragment {
                     @Override
                     public void handleOnBackPressed() {
                         if (currentQuery != null) {
-                            currentQuery = null;
-                            showBackButton(false);
-                            searchView.setQuery("", false);
-                            openFeed(null);
+                            clearSearch();
                         } else {
                             setEnabled(false);
                             requireActivity().onBackPressed();
@@ -115,6 +112,17 @@ public class LibraryFragment extends Fragment {
                 });
     }
 
+    /**
+     * Empties the search field; the query listener brings the full feed back.
+     */
+    private void clearSearch() {
+        searchView.setQuery("", false);
+        currentQuery = null;
+        showBackButton(false);
+        BookFeedFragment feed = feed();
+        if (feed != null) feed.setQuery(null);
+    }
+
     /**
      * Toggles visibility of the back button. Uses INVISIBLE to reserve space.
      *
@@ -125,17 +133,17 @@ public class LibraryFragment extends Fragment {
     }
 
     /**
-     * Replaces the child fragment with BookFeedFragment, passing an optional query argument.
-     *
-     * @param query Text query to filter book feed, or null for full feed
+     * Adds the BookFeedFragment that shows both the feed and the search results.
      */
-    private void openFeed(@Nullable String query) {
-        Bundle args = new Bundle();
-        if (query != null && !query.isEmpty()) {
-            args.putString(BookFeedFragment.ARG_QUERY, query);
-        }
+    private void openFeed() {
         FragmentTransaction ft = getChildFragmentManager().beginTransaction();
-        ft.replace(R.id.library_feed_container, BookFeedFragment.class, args);
+        ft.replace(R.id.library_feed_container, BookFeedFragment.class, null);
         ft.commit();
     }
+
+    @Nullable
+    private BookFeedFragment feed() {
+        return (BookFeedFragment) getChildFragmentManager()
+                .findFragmentById(R.id.library_feed_container);
+    }
 }
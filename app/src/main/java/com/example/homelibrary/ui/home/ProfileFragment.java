@@ -16,6 +16,9 @@ import androidx.fragment.app.FragmentTransaction;
 import com.bumptech.glide.Glide;
 import com.example.homelibrary.R;
 import com.example.homelibrary.data.AuthManager;
+import com.example.homelibrary.data.CatalogRepository;
+import com.example.homelibrary.data.SnapshotDecoder;
+import com.example.homelibrary.data.SnapshotMappers;
 import com.example.homelibrary.data.models.User;
 import com.example.homelibrary.ui.common.AvatarUtil;
 import com.google.firebase.database.DataSnapshot;
@@ -62,13 +65,22 @@ public class ProfileFragment extends Fragment {
     private void subscribeUser() {
         if (AuthManager.getInstance().getCurrentUser() == null) return;
         String uid = AuthManager.getInstance().getCurrentUser().getUid();
+        CatalogRepository repo = CatalogRepository.getInstance(requireContext());
+        boolean[] fresh = {false};
+        repo.loadUser(uid, cached -> {
+            if (cached != null && !fresh[0] && isAdded()) bind(cached);
+        });
+
         userRef = FirebaseDatabase.getInstance().getReference("users").child(uid);
 
         userListener = new ValueEventListener() {
             @Override public void onDataChange(@NonNull DataSnapshot ds) {
-                if (!isAdded()) return;
-                User u = ds.getValue(User.class);
-                if (u != null) bind(u);
+                SnapshotDecoder.decode(ds, SnapshotMappers.USER, u -> {
+                    repo.cacheUser(u);
+                    if (!isAdded()) return;
+                    fresh[0] = true;
+                    if (u != null) bind(u);
+                });
             }
             @Override public void onCancelled(@NonNull DatabaseError e) { }
         };
@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.format.Formatter;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
@@ -13,12 +14,13 @@ import androidx.preference.PreferenceFragmentCompat;
 
 import com.example.homelibrary.R;
 import com.example.homelibrary.data.AuthManager;
+import com.example.homelibrary.data.BookStorage;
 import com.example.homelibrary.ui.MainActivity;
 import com.example.homelibrary.ui.common.LocaleUtil;
 import com.google.android.material.snackbar.Snackbar;
 
 /**
- * Settings screen: nickname, email, avatar, language, logout.
+ * Settings screen: nickname, email, avatar, language, storage, logout.
  */
 public class SettingsFragment extends PreferenceFragmentCompat {
 
@@ -27,6 +29,7 @@ public class SettingsFragment extends PreferenceFragmentCompat {
     private static final String KEY_AVATAR = "pref_avatar";
     private static final String KEY_LANG   = "pref_lang";
     private static final String KEY_LOGOUT = "pref_logout";
+    private static final String KEY_USAGE  = "pref_storage_usage";
 
     /** Launcher для выбора изображения. */
     private final ActivityResultLauncher<Intent> avatarPicker =
@@ -45,11 +48,18 @@ public class SettingsFragment extends PreferenceFragmentCompat {
         initListeners();
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        showStorageUsage();
+    }
+
     private void initListeners() {
         EditTextPreference nick  = findPreference(KEY_NICK);
         EditTextPreference email = findPreference(KEY_EMAIL);
         Preference avatar        = findPreference(KEY_AVATAR);
         Preference lang          = findPreference(KEY_LANG);
+        Preference quota         = findPreference(BookStorage.KEY_QUOTA);
         Preference logout        = findPreference(KEY_LOGOUT);
 
         if (nick != null) {
@@ -88,6 +98,14 @@ public class SettingsFragment extends PreferenceFragmentCompat {
             });
         }
 
+        if (quota != null) {
+            quota.setOnPreferenceChangeListener((p, v) -> {
+                // BookStorage trims on the saved value; refresh once that is queued
+                requireView().post(this::showStorageUsage);
+                return true;
+            });
+        }
+
         if (logout != null) {
             logout.setOnPreferenceClickListener(p -> {
                 AuthManager.getInstance().logout();
@@ -95,6 +113,20 @@ public class SettingsFragment extends PreferenceFragmentCompat {
                 return true;
             });
         }
+    }
 
+    /** Summary of the usage row: count, size against the quota, free space. */
+    private void showStorageUsage() {
+        Preference usage = findPreference(KEY_USAGE);
+        if (usage == null) return;
+        BookStorage.getInstance(requireContext()).usage(u -> {
+            if (!isAdded()) return;
+            String quota = u.quota == BookStorage.UNLIMITED
+                    ? getString(R.string.storage_unlimited)
+                    : Formatter.formatShortFileSize(requireContext(), u.quota);
+            usage.setSummary(getString(R.string.storage_usage_summary, u.files,
+                    Formatter.formatShortFileSize(requireContext(), u.bytes), quota,
+                    Formatter.formatShortFileSize(requireContext(), u.freeBytes)));
+        });
     }
 }
@@ -0,0 +1,127 @@
+package com.example.homelibrary.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PartialPdf} against a {@link RangeScheduler} driven the way
+ * {@link ChunkedDownloader} drives it.
+ */
+public class PartialPdfTest {
+
+    private static final long CHUNK = 1024;
+
+    private File part;
+    private byte[] pdf;
+    private TestPdf builder;
+
+    @Before
+    public void setUp() throws IOException {
+        builder = new TestPdf()
+                .obj(1, "<</Type /Catalog /Pages 2 0 R>>")
+                .obj(2, "<</Type /Pages /Kids [3 0 R 4 0 R] /Count 2>>")
+                .obj(3, "<</Type /Page /Parent 2 0 R /Contents 5 0 R>>")
+                .obj(4, "<</Type /Page /Parent 2 0 R /Contents 6 0 R>>")
+                .stream(5, "", new byte[20000])
+                .stream(6, "", new byte[20000]);
+        pdf = builder.classicXref("/Root 1 0 R");
+        part = File.createTempFile("book", ".pdf.part");
+        try (FileOutputStream out = new FileOutputStream(part)) {
+            out.write(pdf);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        part.delete();
+    }
+
+    @Test
+    public void open_whileDownloading() throws Exception {
+        RangeScheduler ranges = new RangeScheduler();
+        ranges.start(pdf.length, CHUNK, new BitSet());
+        Thread downloader = new Thread(() -> {
+            // fetches whatever the scheduler asks for first, until the reader is open
+            int c;
+            while (!Thread.currentThread().isInterrupted() && (c = ranges.next()) >= 0) {
+                ranges.chunkDone(c);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        downloader.start();
+        try (PartialPdf doc = PartialPdf.open(part, ranges)) {
+            assertEquals(2, doc.pageCount());
+            for (long[] r : PdfLayout.parse(TestPdf.source(pdf)).structureRanges()) {
+                assertTrue(ranges.isAvailable(r[0], r[1]));
+            }
+        } finally {
+            downloader.interrupt();
+            downloader.join();
+        }
+    }
+
+    @Test
+    public void request_reportsPageOnceItsBytesArrive() throws Exception {
+        RangeScheduler ranges = new RangeScheduler();
+        BitSet done = new BitSet();
+        int chunks = (int) ((pdf.length + CHUNK - 1) / CHUNK);
+        done.set(0, chunks);
+        // page 2's contents are still missing
+        int missing = (int) ((builder.offset(6) + 2000) / CHUNK);
+        done.clear(missing);
+        ranges.start(pdf.length, CHUNK, done);
+
+        try (PartialPdf doc = PartialPdf.open(part, ranges)) {
+            CountDownLatch first = new CountDownLatch(1);
+            doc.request(0, first::countDown);
+            assertTrue(first.await(5, TimeUnit.SECONDS));
+            assertTrue(doc.isPageReady(0));
+
+            CountDownLatch second = new CountDownLatch(1);
+            doc.request(1, second::countDown);
+            assertFalse(second.await(200, TimeUnit.MILLISECONDS));
+            assertFalse(doc.isPageReady(1));
+            // the missing chunk jumped the queue
+            assertEquals(missing, ranges.next());
+
+            ranges.chunkDone(missing);
+            assertTrue(second.await(5, TimeUnit.SECONDS));
+            assertTrue(doc.isPageReady(1));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_failsWhenDownloadStops() throws Exception {
+        RangeScheduler ranges = new RangeScheduler();
+        ranges.start(pdf.length, CHUNK, new BitSet());
+        ranges.finish(false);
+        PartialPdf.open(part, ranges);
+    }
+
+    @Test(expected = PdfLayout.UnsupportedPdfException.class)
+    public void open_rejectsUnsupportedFile() throws Exception {
+        byte[] junk = new byte[256];
+        try (FileOutputStream out = new FileOutputStream(part)) {
+            out.write(junk);
+        }
+        RangeScheduler ranges = new RangeScheduler();
+        BitSet done = new BitSet();
+        done.set(0, 4);
+        ranges.start(junk.length, CHUNK, done);
+        PartialPdf.open(part, ranges);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.homelibrary.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PdfLayout} on small generated files: every cross-reference flavour
+ * it reads, and the files it must refuse so the reader waits for the download.
+ */
+public class PdfLayoutTest {
+
+    // Two pages. Page 1 draws with the font its parent passes down, page 2
+    // adds an image of its own.
+    private static final String CATALOG = "<</Type /Catalog /Pages 2 0 R>>";
+    private static final String PAGES = "<</Type /Pages /Kids [3 0 R 4 0 R] /Count 2"
+            + " /Resources <</Font <</F1 7 0 R>>>>>>";
+    private static final String PAGE_1 = "<</Type /Page /Parent 2 0 R /Contents 5 0 R>>";
+    private static final String PAGE_2 = "<</Type /Page /Parent 2 0 R /Contents 6 0 R"
+            + " /Resources <</XObject <</Im1 8 0 R>>>>>>";
+    private static final String FONT = "<</Type /Font /Subtype /Type1 /BaseFont /Helvetica>>";
+
+    @Test
+    public void classicXref_mapsPagesToTheirObjects() throws IOException {
+        TestPdf pdf = plainObjects();
+        byte[] file = pdf.classicXref("/Root 1 0 R");
+        PdfLayout layout = PdfLayout.parse(TestPdf.source(file));
+
+        assertEquals(2, layout.pageCount());
+        List<long[]> structure = layout.structureRanges();
+        assertTrue(covers(structure, 0));
+        assertTrue(covers(structure, file.length - 1));
+        assertTrue(covers(structure, pdf.offset(1)));
+        assertTrue(covers(structure, pdf.offset(2)));
+
+        List<long[]> first = layout.pageRanges(0);
+        for (int num : new int[]{2, 3, 5, 7}) assertTrue("object " + num, covers(first, pdf.offset(num)));
+        for (int num : new int[]{4, 6, 8}) assertFalse("object " + num, covers(first, pdf.offset(num)));
+
+        List<long[]> second = layout.pageRanges(1);
+        for (int num : new int[]{2, 4, 6, 7, 8}) assertTrue("object " + num, covers(second, pdf.offset(num)));
+        assertFalse(covers(second, pdf.offset(5)));
+    }
+
+    @Test
+    public void xrefStream_withPngPredictor() throws IOException {
+        TestPdf pdf = plainObjects();
+        byte[] file = pdf.xrefStream(9, "/Root 1 0 R", null);
+        PdfLayout layout = PdfLayout.parse(TestPdf.source(file));
+
+        assertEquals(2, layout.pageCount());
+        assertTrue(covers(layout.structureRanges(), pdf.offset(9)));
+        List<long[]> first = layout.pageRanges(0);
+        assertTrue(covers(first, pdf.offset(5)));
+        assertFalse(covers(first, pdf.offset(6)));
+    }
+
+    @Test
+    public void objectStream_pagesResolveToTheirStream() throws IOException {
+        TestPdf pdf = new TestPdf()
+                .objStm(9, 1, CATALOG, PAGES, PAGE_1, PAGE_2)
+                .stream(5, "", ascii("BT /F1 12 Tf (One) Tj ET"))
+                .stream(6, "", ascii("q /Im1 Do Q"))
+                .objStm(10, 7, FONT)
+                .stream(8, "/Type /XObject /Subtype /Image /Width 1 /Height 1", new byte[]{0});
+        byte[] file = pdf.xrefStream(11, "/Root 1 0 R", null);
+        PdfLayout layout = PdfLayout.parse(TestPdf.source(file));
+
+        assertEquals(2, layout.pageCount());
+        assertTrue(covers(layout.structureRanges(), pdf.offset(9)));
+        List<long[]> first = layout.pageRanges(0);
+        assertTrue(covers(first, pdf.offset(9)));
+        assertTrue(covers(first, pdf.offset(5)));
+        assertTrue(covers(first, pdf.offset(10)));
+        assertFalse(covers(first, pdf.offset(6)));
+        assertFalse(covers(first, pdf.offset(8)));
+        assertTrue(covers(layout.pageRanges(1), pdf.offset(8)));
+    }
+
+    @Test
+    public void unsupported_encrypted() {
+        byte[] file = plainObjects().obj(9, "<</Filter /Standard /V 2>>")
+                .classicXref("/Root 1 0 R /Encrypt 9 0 R");
+        assertUnsupported(file);
+    }
+
+    @Test
+    public void unsupported_otherXrefFilter() {
+        assertUnsupported(plainObjects().xrefStream(9, "/Root 1 0 R", "LZWDecode"));
+    }
+
+    @Test
+    public void unsupported_brokenOrMissingXref() {
+        byte[] junk = new byte[200];
+        Arrays.fill(junk, (byte) 'x');
+        assertUnsupported(junk);
+        assertUnsupported(ascii("%PDF-1.4\n"));
+
+        // startxref points into the middle of an object
+        byte[] file = plainObjects().classicXref("/Root 1 0 R");
+        String text = new String(file, StandardCharsets.ISO_8859_1);
+        int at = text.lastIndexOf("startxref\n") + "startxref\n".length();
+        String broken = text.substring(0, at) + "12" + text.substring(text.indexOf('\n', at));
+        assertUnsupported(broken.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void merge_sortsAndCoalesces() {
+        List<long[]> merged = PdfLayout.merge(Arrays.asList(
+                new long[]{50, 60}, new long[]{0, 10}, new long[]{5, 20}, new long[]{20, 30}));
+        assertEquals(2, merged.size());
+        assertArrayEquals(new long[]{0, 30}, merged.get(0));
+        assertArrayEquals(new long[]{50, 60}, merged.get(1));
+    }
+
+    @Test
+    public void unpredictPng_undoesRowFilters() {
+        byte[] data = {
+                0, 1, 2, 3,   // None
+                1, 1, 1, 1,   // Sub
+                2, 1, 1, 1,   // Up
+                4, 0, 0, 0,   // Paeth, predicts from above here
+        };
+        assertArrayEquals(new byte[]{1, 2, 3, 1, 2, 3, 2, 3, 4, 2, 3, 4},
+                PdfLayout.unpredictPng(data, 3));
+    }
+
+    private static TestPdf plainObjects() {
+        return new TestPdf()
+                .obj(1, CATALOG)
+                .obj(2, PAGES)
+                .obj(3, PAGE_1)
+                .obj(4, PAGE_2)
+                .stream(5, "", ascii("BT /F1 12 Tf (One) Tj ET"))
+                .stream(6, "", ascii("q /Im1 Do Q"))
+                .obj(7, FONT)
+                .stream(8, "/Type /XObject /Subtype /Image /Width 1 /Height 1", new byte[]{0});
+    }
+
+    private static void assertUnsupported(byte[] file) {
+        try {
+            PdfLayout.parse(TestPdf.source(file));
+            fail("parsed");
+        } catch (PdfLayout.UnsupportedPdfException expected) {
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    private static boolean covers(List<long[]> ranges, long pos) {
+        for (long[] r : ranges) {
+            if (pos >= r[0] && pos < r[1]) return true;
+        }
+        return false;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.homelibrary.data;
+
+import com.example.homelibrary.data.models.Book;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Indexing and prefix queries of {@link SearchIndex}. */
+public class SearchIndexTest {
+
+    @Test
+    public void search_matchesEveryTermAsPrefix() {
+        SearchIndex index = SearchIndex.getInstance();
+        index.putBook(book("t-onegin", "Евгений Онегин"));
+        index.putBook(book("t-voina", "Война и мир"));
+
+        assertEquals(ids("t-onegin"), idsOf(index.search("евг оне")));
+        assertEquals(ids("t-voina"), idsOf(index.search("вой")));
+        // "й" no longer folds into "и"
+        assertTrue(index.search("евгении").isEmpty());
+        assertTrue(index.search("").isEmpty());
+
+        index.removeBook("t-onegin");
+        assertTrue(index.search("онегин").isEmpty());
+        index.removeBook("t-voina");
+    }
+
+    @Test
+    public void matches_usesSearchRules() {
+        Book b = book("t-matches", "Капитанская дочка");
+        SearchIndex index = SearchIndex.getInstance();
+        assertTrue(index.matches(b, "кап доч"));
+        assertFalse(index.matches(b, "кап сын"));
+        assertTrue(index.matches(b, ""));
+    }
+
+    private static Book book(String id, String title) {
+        Book b = new Book();
+        b.id = id;
+        b.title = title;
+        return b;
+    }
+
+    private static List<String> ids(String... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> idsOf(List<Book> books) {
+        String[] out = new String[books.size()];
+        for (int i = 0; i < out.length; i++) out[i] = books.get(i).id;
+        Arrays.sort(out);
+        return Arrays.asList(out);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.homelibrary.data;
+
+import com.example.homelibrary.data.models.Book;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/** Server-side title search rules of {@link SearchManager}. */
+public class SearchManagerTest {
+
+    @Test
+    public void lookupTerms_dropsShortPrefixes() {
+        assertEquals(Arrays.asList("мир", "во"),
+                SearchManager.lookupTerms(Arrays.asList("мир", "и", "во")));
+        // nothing worth a range query: no lookup at all
+        assertEquals(Collections.emptyList(),
+                SearchManager.lookupTerms(Arrays.asList("а", "б")));
+    }
+
+    @Test
+    public void titleMatches_everyTermIsAPrefixOfATitleWord() {
+        Book b = new Book();
+        b.title = "Война и мир";
+        assertTrue(SearchManager.titleMatches(b, SearchIndex.tokenize("мир в")));
+        assertTrue(SearchManager.titleMatches(b, SearchIndex.tokenize("ВОЙ И")));
+        assertFalse(SearchManager.titleMatches(b, SearchIndex.tokenize("мир вои")));
+        assertFalse(SearchManager.titleMatches(b, SearchIndex.tokenize("мира")));
+    }
+}
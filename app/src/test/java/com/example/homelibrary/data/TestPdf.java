@@ -0,0 +1,147 @@
+package com.example.homelibrary.data;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * Builds small PDFs for the layout tests. Objects are numbered from 1 and
+ * written in call order; finish with one of the xref methods.
+ */
+final class TestPdf {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    /** Object number -> {type, field 2, field 3} as in an xref stream. */
+    private final Map<Integer, long[]> entries = new TreeMap<>();
+
+    TestPdf() {
+        write("%PDF-1.5\n");
+    }
+
+    TestPdf obj(int num, String body) {
+        entries.put(num, new long[]{1, out.size(), 0});
+        write(num + " 0 obj\n" + body + "\nendobj\n");
+        return this;
+    }
+
+    TestPdf stream(int num, String dict, byte[] data) {
+        entries.put(num, new long[]{1, out.size(), 0});
+        write(num + " 0 obj\n<<" + dict + " /Length " + data.length + ">>\nstream\n");
+        out.write(data, 0, data.length);
+        write("\nendstream\nendobj\n");
+        return this;
+    }
+
+    /** An object stream holding {@code bodies}, numbered from {@code firstNum}. */
+    TestPdf objStm(int num, int firstNum, String... bodies) {
+        StringBuilder header = new StringBuilder();
+        StringBuilder objects = new StringBuilder();
+        for (int i = 0; i < bodies.length; i++) {
+            header.append(firstNum + i).append(' ').append(objects.length()).append(' ');
+            objects.append(bodies[i]).append('\n');
+        }
+        byte[] data = deflate((header.toString() + objects).getBytes(StandardCharsets.US_ASCII));
+        stream(num, "/Type /ObjStm /N " + bodies.length + " /First " + header.length()
+                + " /Filter /FlateDecode", data);
+        for (int i = 0; i < bodies.length; i++) entries.put(firstNum + i, new long[]{2, num, i});
+        return this;
+    }
+
+    long offset(int num) {
+        return entries.get(num)[1];
+    }
+
+    /** Classic "xref" table and trailer. */
+    byte[] classicXref(String trailer) {
+        int size = size();
+        long xrefPos = out.size();
+        StringBuilder sb = new StringBuilder("xref\n0 " + size + "\n0000000000 65535 f \n");
+        for (int n = 1; n < size; n++) {
+            long[] e = entries.get(n);
+            if (e == null) sb.append("0000000000 65535 f \n");
+            else sb.append(String.format("%010d 00000 n \n", e[1]));
+        }
+        sb.append("trailer\n<<").append(trailer).append(" /Size ").append(size).append(">>\n");
+        write(sb.toString());
+        return end(xrefPos);
+    }
+
+    /**
+     * Cross-reference stream with W [1 4 2], Flate compressed with the PNG "Up"
+     * predictor, the way most writers produce it. {@code filter} replaces the
+     * Flate filter when not null.
+     */
+    byte[] xrefStream(int num, String trailer, String filter) {
+        long xrefPos = out.size();
+        entries.put(num, new long[]{1, xrefPos, 0});
+        int size = size();
+        int columns = 7;
+        byte[] rows = new byte[size * (columns + 1)];
+        byte[] prev = new byte[columns];
+        for (int n = 0; n < size; n++) {
+            long[] e = entries.containsKey(n) ? entries.get(n) : new long[]{0, 0, 0};
+            byte[] row = {(byte) e[0],
+                    (byte) (e[1] >> 24), (byte) (e[1] >> 16), (byte) (e[1] >> 8), (byte) e[1],
+                    (byte) (e[2] >> 8), (byte) e[2]};
+            int at = n * (columns + 1);
+            rows[at] = 2; // Up
+            for (int c = 0; c < columns; c++) rows[at + 1 + c] = (byte) (row[c] - prev[c]);
+            prev = row;
+        }
+        String dict = "/Type /XRef /Size " + size + " /W [1 4 2] " + trailer;
+        if (filter == null) {
+            dict += " /Filter /FlateDecode /DecodeParms <</Predictor 12 /Columns " + columns + ">>";
+            rows = deflate(rows);
+        } else {
+            dict += " /Filter /" + filter;
+        }
+        write(num + " 0 obj\n<<" + dict + " /Length " + rows.length + ">>\nstream\n");
+        out.write(rows, 0, rows.length);
+        write("\nendstream\nendobj\n");
+        return end(xrefPos);
+    }
+
+    private byte[] end(long xrefPos) {
+        write("startxref\n" + xrefPos + "\n%%EOF\n");
+        return out.toByteArray();
+    }
+
+    private int size() {
+        return entries.isEmpty() ? 1 : ((TreeMap<Integer, long[]>) entries).lastKey() + 1;
+    }
+
+    private void write(String s) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        out.write(b, 0, b.length);
+    }
+
+    static byte[] deflate(byte[] data) {
+        Deflater d = new Deflater();
+        d.setInput(data);
+        d.finish();
+        ByteArrayOutputStream o = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        while (!d.finished()) o.write(buf, 0, d.deflate(buf));
+        d.end();
+        return o.toByteArray();
+    }
+
+    /** Reads straight from the array. */
+    static PdfLayout.ByteSource source(byte[] pdf) {
+        return new PdfLayout.ByteSource() {
+            @Override
+            public long length() {
+                return pdf.length;
+            }
+
+            @Override
+            public byte[] read(long pos, int len) {
+                byte[] b = new byte[len];
+                System.arraycopy(pdf, (int) pos, b, 0, len);
+                return b;
+            }
+        };
+    }
+}
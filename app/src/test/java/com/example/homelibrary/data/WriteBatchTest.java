@@ -0,0 +1,103 @@
+package com.example.homelibrary.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Path merging and chunking of {@link WriteBatch}; nothing is sent, so the
+ * batch has no database root.
+ */
+public class WriteBatchTest {
+
+    @Test
+    public void set_writeBelowEarlierNodeIsMergedIntoIt() {
+        WriteBatch batch = new WriteBatch(null);
+        batch.set("books/b1", map("title", "Онегин"));
+        batch.set("books/b1/genre", "poem");
+
+        assertEquals(1, batch.size());
+        assertEquals(map("title", "Онегин", "genre", "poem"), batch.paths().get("books/b1"));
+    }
+
+    @Test
+    public void set_mergesIntoNestedMaps() {
+        WriteBatch batch = new WriteBatch(null);
+        batch.set("feed/b1", map("authorNames", map("a1", "Пушкин")));
+        batch.set("feed/b1/authorNames/a2", "Гоголь");
+        batch.set("feed/b1/authorNames/a1", null);
+
+        assertEquals(map("authorNames", map("a1", null, "a2", "Гоголь")), batch.paths().get("feed/b1"));
+    }
+
+    @Test
+    public void set_writeBelowNonMapReplacesIt() {
+        WriteBatch batch = new WriteBatch(null);
+        batch.set("books/b1/cover", "old.jpg");
+        batch.set("books/b1/cover/small", "s.jpg");
+
+        assertEquals(map("small", "s.jpg"), batch.paths().get("books/b1/cover"));
+    }
+
+    @Test
+    public void set_writeToNodeReplacesEarlierWritesBelowIt() {
+        WriteBatch batch = new WriteBatch(null);
+        batch.set("books/b1/title", "A");
+        batch.set("books/b1/genre", "g");
+        batch.set("books/b10/title", "T");
+        batch.set("books/b1", null);
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("books/b1", null);
+        expected.put("books/b10/title", "T"); // "b10" only shares a prefix
+        assertEquals(expected, batch.paths());
+    }
+
+    @Test
+    public void chunks_splitAtMaxPaths() {
+        Map<String, Object> writes = new TreeMap<>();
+        for (int i = 0; i < 2500; i++) writes.put("search_index/t" + i + "/b", true);
+
+        List<Map<String, Object>> chunks = WriteBatch.chunks(writes, WriteBatch.MAX_PATHS);
+        assertEquals(3, chunks.size());
+        assertEquals(1000, chunks.get(0).size());
+        assertEquals(1000, chunks.get(1).size());
+        assertEquals(500, chunks.get(2).size());
+
+        Set<String> seen = new HashSet<>();
+        for (Map<String, Object> c : chunks) seen.addAll(c.keySet());
+        assertEquals(writes.keySet(), seen);
+    }
+
+    @Test
+    public void chunks_edges() {
+        assertEquals(Collections.emptyList(), WriteBatch.chunks(Collections.emptyMap(), 10));
+
+        Map<String, Object> writes = new TreeMap<>();
+        for (int i = 0; i < 10; i++) writes.put("p" + i, i);
+        assertEquals(1, WriteBatch.chunks(writes, 10).size());
+        assertEquals(2, WriteBatch.chunks(writes, 9).size());
+    }
+
+    @Test
+    public void staleTokens_oldWordsTheNewTitleLacks() {
+        assertEquals(Arrays.asList("война"), WriteBatch.staleTokens("Война и мир", "Мир и покой"));
+        assertEquals(Collections.emptyList(), WriteBatch.staleTokens(null, "Новая книга"));
+        assertEquals(Arrays.asList("старая"), WriteBatch.staleTokens("Старая", null));
+    }
+
+    private static Map<String, Object> map(Object... kv) {
+        Map<String, Object> m = new HashMap<>();
+        for (int i = 0; i < kv.length; i += 2) m.put((String) kv[i], kv[i + 1]);
+        return m;
+    }
+}
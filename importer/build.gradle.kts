@@ -0,0 +1,19 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.example.homelibrary.importer.CatalogImporter")
+}
+
+dependencies {
+    implementation(project(":text"))
+    implementation(libs.firebase.admin)
+    implementation(libs.gson)
+    testImplementation(libs.junit)
+}
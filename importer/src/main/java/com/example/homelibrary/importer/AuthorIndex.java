@@ -0,0 +1,100 @@
+package com.example.homelibrary.importer;
+
+import com.google.api.core.ApiFuture;
+import com.google.firebase.database.DataSnapshot;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Authors by normalized name: the ones already in "authors" plus those
+ * created during the import, so every name maps to one author id.
+ */
+final class AuthorIndex {
+
+    static final class Entry {
+        final String id;
+        final String fullName;
+        /** Ids in the author's bookIds list, so a re-imported book isn't listed twice. */
+        final Set<String> bookIds = new HashSet<>();
+        /** Length of the author's bookIds list; the next book goes at this index. */
+        int bookCount;
+        /** The update carrying the author node, once sent; null for existing authors. */
+        ApiFuture<Void> sending;
+        /** True once the author node is stored. */
+        volatile boolean written;
+
+        Entry(String id, String fullName, int bookCount, boolean written) {
+            this.id = id;
+            this.fullName = fullName;
+            this.bookCount = bookCount;
+            this.written = written;
+        }
+
+        /** Not yet part of a sent update: the node goes out whole with the next batch. */
+        boolean isNew() {
+            return !written && sending == null;
+        }
+    }
+
+    private final Map<String, Entry> byName = new HashMap<>();
+    private int existing;
+
+    /** Indexes the current contents of "authors". */
+    void load(DataSnapshot authors) {
+        for (DataSnapshot a : authors.getChildren()) {
+            String name = a.child("fullName").getValue(String.class);
+            if (name == null || a.getKey() == null) continue;
+            int books = (int) a.child("bookIds").getChildrenCount();
+            Entry e = new Entry(a.getKey(), name, books, true);
+            for (DataSnapshot b : a.child("bookIds").getChildren()) {
+                String id = b.getValue(String.class);
+                if (id != null) e.bookIds.add(id);
+            }
+            if (byName.putIfAbsent(normalize(name), e) == null) {
+                existing++;
+            }
+        }
+    }
+
+    Entry get(String name) {
+        return byName.get(normalize(name));
+    }
+
+    Entry add(String id, String fullName) {
+        Entry e = new Entry(id, fullName, 0, false);
+        byName.put(normalize(fullName), e);
+        return e;
+    }
+
+    /** Authors that were in the database before the import. */
+    int existing() {
+        return existing;
+    }
+
+    int size() {
+        return byName.size();
+    }
+
+    /**
+     * Dedupe key: "Пушкин, А. С.", "А.С. Пушкин" and "а с пушкин" all map to
+     * "а с пушкин". "Last, First" is turned around, case, ё/е, punctuation
+     * and spacing are ignored.
+     */
+    static String normalize(String name) {
+        String n = Normalizer.normalize(name, Normalizer.Form.NFKC).trim();
+        int comma = n.indexOf(',');
+        if (comma > 0 && comma == n.lastIndexOf(',')) {
+            n = n.substring(comma + 1) + " " + n.substring(0, comma);
+        }
+        return n.toLowerCase(Locale.ROOT)
+                .replace('ё', 'е')
+                .replaceAll("[\\p{P}\\p{S}]+", " ")
+                .trim()
+                .replaceAll("\\s+", " ");
+    }
+}
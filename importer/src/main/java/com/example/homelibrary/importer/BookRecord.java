@@ -0,0 +1,42 @@
+package com.example.homelibrary.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One book as read from an import source. Authors are names; ids are
+ * assigned by {@link CatalogImporter}.
+ */
+final class BookRecord {
+    String title;
+    String description;
+    String genre;
+    final List<String> authors = new ArrayList<>();
+    String downloadUrl;
+    String imageUrl;
+
+    /** Adds authors from a "A; B" list, the form used by CSV cells and JSON strings. */
+    void addAuthors(String list) {
+        if (list == null) return;
+        for (String name : list.split(";")) {
+            String n = name.trim();
+            if (!n.isEmpty()) authors.add(n);
+        }
+    }
+
+    /** Sets a field by its source column / key name; unknown names are ignored. */
+    void set(String field, String value) {
+        if (value == null) return;
+        switch (field.trim().toLowerCase(Locale.ROOT)) {
+            case "title": title = value; break;
+            case "description": description = value; break;
+            case "genre": genre = value; break;
+            case "authors":
+            case "author": addAuthors(value); break;
+            case "downloadurl": downloadUrl = value; break;
+            case "imageurl": imageUrl = value; break;
+            default: break;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.homelibrary.importer;
+
+import com.example.homelibrary.text.SearchText;
+import com.google.api.core.ApiFuture;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk-loads a catalog from a CSV, JSON or OPDS source into "books",
+ * "authors", "feed" and "search_index", in the layout DBManager writes.
+ *
+ * <pre>
+ * ./gradlew :importer:run --args="--project home-library --input library.csv"
+ * </pre>
+ *
+ * <ul>
+ *   <li>The source is streamed: records are read only as fast as they are
+ *   written, see {@link RecordSource} for the formats.</li>
+ *   <li>Authors are deduplicated by normalized name against the existing
+ *   "authors" and each other ({@link AuthorIndex}); new ones get {@code push()}
+ *   ids. Book ids are a hash of the normalized title and authors
+ *   ({@link #bookKey}), so a re-run overwrites the same books.</li>
+ *   <li>Every {@code --batch} books become one multi-path update. At most
+ *   {@code --in-flight} updates are outstanding; reading blocks until one
+ *   completes.</li>
+ *   <li>Progress and the final summary report books per second.</li>
+ * </ul>
+ *
+ * With FIREBASE_DATABASE_EMULATOR_HOST set it runs against the emulator and
+ * needs no credentials, like the thumbnailer. Each batch is atomic; the first
+ * failed one stops the import with exit code 1, and running it again fills in
+ * what is missing.
+ */
+public final class CatalogImporter {
+
+    private static final int DEFAULT_BATCH = 500;
+    private static final int DEFAULT_IN_FLIGHT = 4;
+    private static final long REPORT_SECONDS = 5;
+
+    private final DatabaseReference root;
+    private final int batchSize;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final AuthorIndex authors = new AuthorIndex();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    /** Set by the first failed batch; nothing more is read or sent. */
+    private volatile boolean aborted;
+    private long read;
+    private long skipped;
+
+    // ====== Current batch ======
+    private final Map<String, Object> update = new HashMap<>();
+    /** Authors first seen in this batch: their whole node goes out with it. */
+    private final Map<AuthorIndex.Entry, List<String>> newAuthors = new LinkedHashMap<>();
+    /** Sent authors that got books in this batch: only their timestamp is bumped. */
+    private final Set<AuthorIndex.Entry> touched = new LinkedHashSet<>();
+    private int batchBooks;
+
+    private CatalogImporter(DatabaseReference root, int batchSize, int maxInFlight) {
+        this.root = root;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = parse(argv);
+        String project = require(args, "project");
+        String input = require(args, "input");
+        String dbEmulator = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST");
+
+        FirebaseOptions.Builder options = FirebaseOptions.builder()
+                .setProjectId(project)
+                .setDatabaseUrl(args.getOrDefault("database-url",
+                        "https://" + project + "-default-rtdb.firebaseio.com"));
+        if (dbEmulator != null) {
+            // the emulator accepts the "owner" token as admin
+            options.setCredentials(GoogleCredentials.create(new AccessToken("owner", null)));
+        } else {
+            options.setCredentials(GoogleCredentials.getApplicationDefault());
+        }
+        FirebaseApp.initializeApp(options.build());
+
+        int batch = Integer.parseInt(args.getOrDefault("batch", String.valueOf(DEFAULT_BATCH)));
+        int inFlight = Integer.parseInt(args.getOrDefault("in-flight", String.valueOf(DEFAULT_IN_FLIGHT)));
+        CatalogImporter importer = new CatalogImporter(
+                FirebaseDatabase.getInstance().getReference(), batch, inFlight);
+        try (RecordSource source = RecordSource.open(input, args.get("format"))) {
+            importer.run(source);
+        }
+        System.exit(importer.failed.get() > 0 ? 1 : 0);
+    }
+
+    private void run(RecordSource source) throws Exception {
+        authors.load(readOnce(root.child("authors")));
+        System.out.printf("%d existing authors%n", authors.existing());
+
+        long start = System.nanoTime();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> System.out.printf("%d books written, %.0f books/s, %d in flight%n",
+                        written.get(), rate(written.get(), start), maxInFlight - inFlight.availablePermits()),
+                REPORT_SECONDS, REPORT_SECONDS, TimeUnit.SECONDS);
+        try {
+            BookRecord r;
+            while (!aborted && (r = source.next()) != null) {
+                read++;
+                if (r.title == null || r.title.trim().isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                add(r);
+                if (batchBooks >= batchSize) flush();
+            }
+            flush();
+            inFlight.acquire(maxInFlight); // wait for the last updates
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        long ok = written.get();
+        System.out.printf("read %d, written %d, skipped %d (no title), failed %d%n",
+                read, ok, skipped, failed.get());
+        System.out.printf("authors: %d new, %d total%n", authors.size() - authors.existing(), authors.size());
+        System.out.printf("%.1f s, %.0f books/s%n", (System.nanoTime() - start) / 1e9, rate(ok, start));
+        if (aborted) System.out.println("stopped after a failed batch; run again to finish");
+    }
+
+    // ====== Batching ======
+
+    /** Adds the book, its feed row and its author links to the current batch. */
+    private void add(BookRecord r) {
+        String bookId = bookKey(r);
+        List<String> authorIds = new ArrayList<>();
+        Map<String, Object> names = new HashMap<>();
+        for (String name : r.authors) {
+            AuthorIndex.Entry a = authors.get(name);
+            if (a == null) {
+                a = authors.add(root.child("authors").push().getKey(), name.trim());
+            }
+            if (authorIds.contains(a.id)) continue;
+            authorIds.add(a.id);
+            names.put(a.id, a.fullName);
+            link(a, bookId);
+        }
+
+        Map<String, Object> book = new HashMap<>();
+        book.put("id", bookId);
+        book.put("title", r.title.trim());
+        book.put("description", r.description);
+        book.put("genre", r.genre);
+        book.put("authorIds", authorIds);
+        book.put("downloadUrl", r.downloadUrl);
+        book.put("imageUrl", r.imageUrl);
+        book.put("updatedAt", ServerValue.TIMESTAMP);
+        update.put("books/" + bookId, book);
+
+        // same fields as DBManager.FEED_FIELDS; cover variants come from the thumbnailer
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", bookId);
+        row.put("title", book.get("title"));
+        row.put("genre", r.genre);
+        row.put("authorIds", authorIds);
+        row.put("imageUrl", r.imageUrl);
+        row.put("authorNames", names);
+        row.put("updatedAt", ServerValue.TIMESTAMP);
+        update.put("feed/" + bookId, row);
+        for (String token : SearchText.tokenize(r.title)) {
+            update.put("search_index/" + token + "/" + bookId, true);
+        }
+        batchBooks++;
+    }
+
+    /**
+     * Appends the book to the author's bookIds. Authors already sent get a
+     * write at the next list index; new ones are sent whole with the batch.
+     */
+    private void link(AuthorIndex.Entry a, String bookId) {
+        if (a.isNew()) {
+            List<String> ids = newAuthors.computeIfAbsent(a, k -> new ArrayList<>());
+            if (!ids.contains(bookId)) ids.add(bookId);
+            return;
+        }
+        if (!a.bookIds.add(bookId)) return;
+        update.put("authors/" + a.id + "/bookIds/" + a.bookCount, bookId);
+        a.bookCount++;
+        touched.add(a);
+    }
+
+    /** Sends the current batch, blocking while {@code --in-flight} updates are outstanding. */
+    private void flush() throws InterruptedException {
+        if (batchBooks == 0 || aborted) return;
+        // Appending to an author whose node is still in flight would create a
+        // bare node if that batch failed: wait until it is stored.
+        for (AuthorIndex.Entry a : touched) {
+            if (a.written) continue;
+            try {
+                a.sending.get();
+            } catch (ExecutionException e) {
+                return; // that batch failed and stopped the import
+            }
+        }
+
+        List<AuthorIndex.Entry> created = new ArrayList<>(newAuthors.keySet());
+        for (Map.Entry<AuthorIndex.Entry, List<String>> e : newAuthors.entrySet()) {
+            AuthorIndex.Entry a = e.getKey();
+            Map<String, Object> author = new HashMap<>();
+            author.put("id", a.id);
+            author.put("fullName", a.fullName);
+            author.put("bookIds", e.getValue());
+            author.put("updatedAt", ServerValue.TIMESTAMP);
+            update.put("authors/" + a.id, author);
+            a.bookIds.addAll(e.getValue());
+            a.bookCount = e.getValue().size();
+        }
+        for (AuthorIndex.Entry a : touched) {
+            update.put("authors/" + a.id + "/updatedAt", ServerValue.TIMESTAMP);
+        }
+
+        int books = batchBooks;
+        Map<String, Object> out = new HashMap<>(update);
+        update.clear();
+        newAuthors.clear();
+        touched.clear();
+        batchBooks = 0;
+
+        inFlight.acquire();
+        ApiFuture<Void> sent = root.updateChildrenAsync(out);
+        for (AuthorIndex.Entry a : created) a.sending = sent;
+        sent.addListener(() -> {
+            try {
+                sent.get();
+                for (AuthorIndex.Entry a : created) a.written = true;
+                written.addAndGet(books);
+            } catch (Exception e) {
+                aborted = true;
+                failed.addAndGet(books);
+                System.err.printf("batch of %d books failed: %s%n", books, e.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        }, Runnable::run);
+    }
+
+    /**
+     * Stable book id: a hash of the title and the sorted author names, both
+     * normalized, so the same record gets the same id on every run.
+     */
+    static String bookKey(BookRecord r) {
+        List<String> names = new ArrayList<>();
+        for (String name : r.authors) names.add(AuthorIndex.normalize(name));
+        names.sort(null);
+        String key = String.join(" ", SearchText.tokenize(r.title)) + "\n" + String.join("\n", names);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder("b");
+            for (int i = 0; i < 16; i++) hex.append(String.format("%02x", hash[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+    }
+
+    private static double rate(long books, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? books / seconds : 0;
+    }
+
+    private static DataSnapshot readOnce(DatabaseReference ref) throws Exception {
+        CompletableFuture<DataSnapshot> result = new CompletableFuture<>();
+        ref.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                result.complete(snapshot);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                result.completeExceptionally(error.toException());
+            }
+        });
+        return result.get();
+    }
+
+    // ====== Arguments ======
+
+    /** "--key value" pairs; a flag without value maps to "". */
+    private static Map<String, String> parse(String[] argv) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i < argv.length; i++) {
+            if (!argv[i].startsWith("--")) continue;
+            String key = argv[i].substring(2);
+            boolean hasValue = i + 1 < argv.length && !argv[i + 1].startsWith("--");
+            out.put(key, hasValue ? argv[++i] : "");
+        }
+        return out;
+    }
+
+    private static String require(Map<String, String> args, String key) {
+        String v = args.get(key);
+        if (v == null || v.isEmpty()) {
+            System.err.println("usage: --project <id> --input <file or url> [--format csv|json|opds]"
+                    + " [--database-url <url>] [--batch " + DEFAULT_BATCH + "]"
+                    + " [--in-flight " + DEFAULT_IN_FLIGHT + "]");
+            System.exit(2);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.homelibrary.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV, UTF-8, with a header row naming the columns: title, authors
+ * (separated by ";"), genre, description, downloadUrl, imageUrl. Other
+ * columns are ignored. Quoted cells may contain commas, quotes and newlines.
+ */
+final class CsvSource implements RecordSource {
+
+    private final Reader in;
+    private final List<String> header;
+
+    CsvSource(InputStream stream) throws IOException {
+        in = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        header = readRow();
+        if (header == null) throw new IOException("Empty CSV");
+        // Excel writes a byte order mark
+        if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+            header.set(0, header.get(0).substring(1));
+        }
+    }
+
+    @Override
+    public BookRecord next() throws IOException {
+        List<String> row;
+        do {
+            row = readRow();
+            if (row == null) return null;
+        } while (row.size() == 1 && row.get(0).isEmpty()); // blank line
+
+        BookRecord r = new BookRecord();
+        for (int i = 0; i < row.size() && i < header.size(); i++) {
+            String cell = row.get(i).trim();
+            if (!cell.isEmpty()) r.set(header.get(i), cell);
+        }
+        return r;
+    }
+
+    /** Cells of the next row, or null at the end of the input. */
+    private List<String> readRow() throws IOException {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        int c = in.read();
+        if (c == -1) return null;
+        while (true) {
+            if (quoted) {
+                if (c == -1) throw new IOException("Unterminated quoted cell");
+                if (c == '"') {
+                    c = in.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue; // re-examine the character after the closing quote
+                    }
+                }
+                cell.append((char) c);
+            } else if (c == '"' && cell.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                cells.add(cell.toString());
+                return cells;
+            } else if (c != '\r') {
+                cell.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
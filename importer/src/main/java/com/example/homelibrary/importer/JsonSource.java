@@ -0,0 +1,62 @@
+package com.example.homelibrary.importer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON array of book objects, either at the top level or under "books", read
+ * with a streaming parser. Keys are the CSV column names; "authors" may be a
+ * string list or a "A; B" string.
+ */
+final class JsonSource implements RecordSource {
+
+    private final JsonReader in;
+
+    JsonSource(InputStream stream) throws IOException {
+        in = new JsonReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        if (in.peek() == JsonToken.BEGIN_OBJECT) {
+            in.beginObject();
+            while (in.hasNext() && !in.nextName().equals("books")) in.skipValue();
+            if (in.peek() != JsonToken.BEGIN_ARRAY) throw new IOException("No \"books\" array");
+        }
+        in.beginArray();
+    }
+
+    @Override
+    public BookRecord next() throws IOException {
+        if (!in.hasNext()) return null;
+        BookRecord r = new BookRecord();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            JsonToken t = in.peek();
+            if (t == JsonToken.STRING) {
+                r.set(key, in.nextString());
+            } else if (t == JsonToken.BEGIN_ARRAY && (key.equals("authors") || key.equals("author"))) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    if (in.peek() == JsonToken.STRING) {
+                        r.addAuthors(in.nextString());
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
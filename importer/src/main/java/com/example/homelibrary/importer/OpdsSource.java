@@ -0,0 +1,173 @@
+package com.example.homelibrary.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * OPDS 1.x acquisition feed (Atom), read entry by entry with StAX. Pages
+ * linked with rel="next" are followed, so a paginated catalog streams as one
+ * source. Per entry: title, author names, the first category as genre,
+ * summary (or content) as description, the acquisition link (PDF preferred)
+ * and the cover image link.
+ */
+final class OpdsSource implements RecordSource {
+
+    private static final String ACQUISITION = "http://opds-spec.org/acquisition";
+    private static final String IMAGE = "http://opds-spec.org/image";
+    private static final String STANZA_IMAGE = "x-stanza-cover-image";
+
+    private final XMLInputFactory factory = XMLInputFactory.newFactory();
+    private URL page;
+    private InputStream stream;
+    private XMLStreamReader xml;
+    /** rel="next" of the current page. */
+    private String nextPage;
+
+    OpdsSource(String input) throws IOException {
+        // catalogs don't need DTDs; external entities would be an XXE hole
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        boolean remote = input.startsWith("http://") || input.startsWith("https://");
+        openPage(remote ? new URL(input) : new File(input).toURI().toURL());
+    }
+
+    @Override
+    public BookRecord next() throws IOException {
+        try {
+            while (true) {
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT) continue;
+                    String name = xml.getLocalName();
+                    if (name.equals("entry")) return readEntry();
+                    if (name.equals("link") && "next".equals(xml.getAttributeValue(null, "rel"))) {
+                        nextPage = xml.getAttributeValue(null, "href");
+                    }
+                }
+                if (nextPage == null) return null;
+                openPage(new URL(page, nextPage));
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(page + ": " + e.getMessage(), e);
+        }
+    }
+
+    private BookRecord readEntry() throws XMLStreamException, IOException {
+        BookRecord r = new BookRecord();
+        String content = null;
+        String pdf = null;
+        String anyAcquisition = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            switch (xml.getLocalName()) {
+                case "title":
+                    if (depth == 1) r.title = text();
+                    else depth++;
+                    continue;
+                case "name":
+                    // entry/author/name
+                    if (depth == 2) {
+                        String n = text().trim();
+                        if (!n.isEmpty()) r.authors.add(n);
+                    } else {
+                        depth++;
+                    }
+                    continue;
+                case "category":
+                    if (r.genre == null) {
+                        String label = xml.getAttributeValue(null, "label");
+                        r.genre = label != null ? label : xml.getAttributeValue(null, "term");
+                    }
+                    break;
+                case "summary":
+                    if (depth == 1) {
+                        r.description = text().trim();
+                        continue;
+                    }
+                    break;
+                case "content":
+                    if (depth == 1) {
+                        content = text().trim();
+                        continue;
+                    }
+                    break;
+                case "link": {
+                    String rel = xml.getAttributeValue(null, "rel");
+                    String href = xml.getAttributeValue(null, "href");
+                    if (rel == null || href == null) break;
+                    String url = new URL(page, href).toString();
+                    if (rel.startsWith(ACQUISITION)) {
+                        if (anyAcquisition == null) anyAcquisition = url;
+                        if (pdf == null && "application/pdf".equals(xml.getAttributeValue(null, "type"))) {
+                            pdf = url;
+                        }
+                    } else if ((rel.equals(IMAGE) || rel.equals(STANZA_IMAGE)) && r.imageUrl == null) {
+                        r.imageUrl = url;
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+            depth++;
+        }
+        if (r.description == null || r.description.isEmpty()) r.description = content;
+        r.downloadUrl = pdf != null ? pdf : anyAcquisition;
+        return r;
+    }
+
+    /** Character data of the current element and its children; ends on its end tag. */
+    private String text() throws XMLStreamException {
+        StringBuilder out = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                out.append(xml.getText());
+            }
+        }
+        return out.toString();
+    }
+
+    private void openPage(URL url) throws IOException {
+        close();
+        page = url;
+        nextPage = null;
+        String s = url.toString();
+        stream = s.startsWith("http") ? RecordSource.openStream(s) : url.openStream();
+        try {
+            xml = factory.createXMLStreamReader(stream);
+        } catch (XMLStreamException e) {
+            throw new IOException(url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (xml != null) xml.close();
+        } catch (XMLStreamException ignored) {
+        } finally {
+            xml = null;
+            if (stream != null) stream.close();
+            stream = null;
+        }
+    }
+}
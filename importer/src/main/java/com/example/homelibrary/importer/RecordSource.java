@@ -0,0 +1,59 @@
+package com.example.homelibrary.importer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+
+/**
+ * Streams {@link BookRecord}s out of an import file one at a time, so memory
+ * does not depend on the size of the catalog.
+ */
+interface RecordSource extends Closeable {
+
+    /** Next record, or null at the end of the input. */
+    BookRecord next() throws IOException;
+
+    /**
+     * Opens a local path or http(s) url. The format is "csv", "json" or "opds";
+     * null picks it from the extension.
+     */
+    static RecordSource open(String input, String format) throws IOException {
+        String f = format != null ? format.toLowerCase(Locale.ROOT) : guessFormat(input);
+        switch (f) {
+            case "csv": return new CsvSource(openStream(input));
+            case "json": return new JsonSource(openStream(input));
+            case "opds": return new OpdsSource(input);
+            default: throw new IOException("Unknown format " + f + "; use --format csv|json|opds");
+        }
+    }
+
+    static String guessFormat(String input) {
+        String path = input.toLowerCase(Locale.ROOT);
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        if (path.endsWith(".csv")) return "csv";
+        if (path.endsWith(".json")) return "json";
+        return "opds";
+    }
+
+    static InputStream openStream(String input) throws IOException {
+        if (!input.startsWith("http://") && !input.startsWith("https://")) {
+            return new BufferedInputStream(new FileInputStream(input));
+        }
+        HttpURLConnection conn = (HttpURLConnection) new URL(input).openConnection();
+        conn.setRequestProperty("User-Agent", "HomeLibrary-Importer/1.0");
+        conn.setConnectTimeout(15_000);
+        conn.setReadTimeout(60_000);
+        if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            int code = conn.getResponseCode();
+            conn.disconnect();
+            throw new IOException("HTTP " + code + " for " + input);
+        }
+        return new BufferedInputStream(conn.getInputStream());
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.homelibrary.importer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CatalogImporterTest {
+
+    @Test
+    public void bookKeyIgnoresCaseSpacingAndAuthorOrder() {
+        String key = CatalogImporter.bookKey(record("Двенадцать стульев", "Ильф И.; Петров Е."));
+        assertEquals(key, CatalogImporter.bookKey(record("  ДВЕНАДЦАТЬ  стульев!", "Петров Е.; ильф и")));
+        assertTrue(key.matches("b[0-9a-f]{32}"));
+    }
+
+    @Test
+    public void bookKeyDiffersByTitleOrAuthors() {
+        String key = CatalogImporter.bookKey(record("Золотой телёнок", "Ильф И.; Петров Е."));
+        assertNotEquals(key, CatalogImporter.bookKey(record("Золотой телёнок", "Ильф И.")));
+        assertNotEquals(key, CatalogImporter.bookKey(record("Двенадцать стульев", "Ильф И.; Петров Е.")));
+    }
+
+    private static BookRecord record(String title, String authors) {
+        BookRecord r = new BookRecord();
+        r.title = title;
+        r.addAuthors(authors);
+        return r;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.homelibrary.importer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CsvSourceTest {
+
+    @Test
+    public void readsColumnsByHeader() throws IOException {
+        CsvSource src = csv("genre,title,authors,pages\r\n"
+                + "Роман,Война и мир,Толстой Л. Н.,1300\r\n"
+                + "Poem,Onegin, Pushkin A. ; Nabokov V. ,\r\n");
+
+        BookRecord first = src.next();
+        assertEquals("Война и мир", first.title);
+        assertEquals("Роман", first.genre);
+        assertEquals(Collections.singletonList("Толстой Л. Н."), first.authors);
+
+        BookRecord second = src.next();
+        assertEquals("Onegin", second.title);
+        assertEquals(Arrays.asList("Pushkin A.", "Nabokov V."), second.authors);
+        assertNull(src.next());
+    }
+
+    @Test
+    public void quotedCellsKeepCommasQuotesAndNewlines() throws IOException {
+        CsvSource src = csv("title,description\n"
+                + "\"Dune, Part One\",\"He said \"\"fear\"\"\nis the mind-killer\"\n");
+
+        BookRecord r = src.next();
+        assertEquals("Dune, Part One", r.title);
+        assertEquals("He said \"fear\"\nis the mind-killer", r.description);
+        assertNull(src.next());
+    }
+
+    @Test
+    public void skipsBomAndBlankLines() throws IOException {
+        CsvSource src = csv("\uFEFFtitle,downloadUrl\n\nA,http://x/a.pdf\n\nB\n");
+
+        BookRecord a = src.next();
+        assertEquals("A", a.title);
+        assertEquals("http://x/a.pdf", a.downloadUrl);
+        BookRecord b = src.next();
+        assertEquals("B", b.title);
+        assertNull(b.downloadUrl);
+        assertNull(src.next());
+    }
+
+    @Test
+    public void lastRowWithoutNewline() throws IOException {
+        CsvSource src = csv("title\nLast");
+        assertEquals("Last", src.next().title);
+        assertNull(src.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void emptyInputFails() throws IOException {
+        csv("");
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedQuoteFails() throws IOException {
+        csv("title\n\"Open").next();
+    }
+
+    private static CsvSource csv(String text) throws IOException {
+        return new CsvSource(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.homelibrary.importer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class JsonSourceTest {
+
+    @Test
+    public void readsTopLevelArray() throws IOException {
+        JsonSource src = json("[{\"title\": \"Мастер и Маргарита\", \"authors\": \"Булгаков М.\","
+                + " \"genre\": \"Роман\", \"imageUrl\": \"http://x/c.jpg\"}]");
+
+        BookRecord r = src.next();
+        assertEquals("Мастер и Маргарита", r.title);
+        assertEquals(Arrays.asList("Булгаков М."), r.authors);
+        assertEquals("Роман", r.genre);
+        assertEquals("http://x/c.jpg", r.imageUrl);
+        assertNull(src.next());
+    }
+
+    @Test
+    public void readsBooksArrayOfObject() throws IOException {
+        JsonSource src = json("{\"version\": 2, \"meta\": {\"books\": []},"
+                + " \"books\": [{\"title\": \"A\"}, {\"title\": \"B\"}], \"tail\": true}");
+
+        assertEquals("A", src.next().title);
+        assertEquals("B", src.next().title);
+        assertNull(src.next());
+    }
+
+    @Test
+    public void authorsAsListOrString() throws IOException {
+        JsonSource src = json("[{\"authors\": [\"Ильф И.\", 7, \"Петров Е.; \"]},"
+                + " {\"author\": \"Стругацкий А.; Стругацкий Б.\"}]");
+
+        assertEquals(Arrays.asList("Ильф И.", "Петров Е."), src.next().authors);
+        assertEquals(Arrays.asList("Стругацкий А.", "Стругацкий Б."), src.next().authors);
+    }
+
+    @Test
+    public void skipsOtherValues() throws IOException {
+        JsonSource src = json("[{\"title\": \"T\", \"pages\": 320, \"tags\": [\"a\"],"
+                + " \"extra\": {\"title\": \"nested\"}, \"genre\": null}]");
+
+        BookRecord r = src.next();
+        assertEquals("T", r.title);
+        assertNull(r.genre);
+        assertNull(src.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void objectWithoutBooksFails() throws IOException {
+        json("{\"items\": []}");
+    }
+
+    private static JsonSource json(String text) throws IOException {
+        return new JsonSource(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
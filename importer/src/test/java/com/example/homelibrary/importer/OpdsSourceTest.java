@@ -0,0 +1,133 @@
+package com.example.homelibrary.importer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class OpdsSourceTest {
+
+    private static final String FEED = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<feed xmlns=\"http://www.w3.org/2005/Atom\">\n";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("opds").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void readsEntryFields() throws IOException {
+        File page = write("catalog.xml", FEED
+                + "<title>Catalog</title>\n"
+                + "<entry>\n"
+                + "  <title>Двенадцать стульев</title>\n"
+                + "  <author><name>Ильф И.</name><uri>/a/1</uri></author>\n"
+                + "  <author><name> Петров Е. </name></author>\n"
+                + "  <category term=\"sf_humor\" label=\"Юмор\"/>\n"
+                + "  <category term=\"prose\"/>\n"
+                + "  <summary type=\"text\">Роман</summary>\n"
+                + "  <link rel=\"http://opds-spec.org/image\" href=\"covers/12.jpg\" type=\"image/jpeg\"/>\n"
+                + "  <link rel=\"http://opds-spec.org/acquisition/open-access\" href=\"b/12.epub\""
+                + " type=\"application/epub+zip\"/>\n"
+                + "  <link rel=\"http://opds-spec.org/acquisition/open-access\" href=\"b/12.pdf\""
+                + " type=\"application/pdf\"/>\n"
+                + "</entry>\n"
+                + "</feed>\n");
+
+        try (OpdsSource src = new OpdsSource(page.getPath())) {
+            BookRecord r = src.next();
+            assertEquals("Двенадцать стульев", r.title);
+            assertEquals(Arrays.asList("Ильф И.", "Петров Е."), r.authors);
+            assertEquals("Юмор", r.genre);
+            assertEquals("Роман", r.description);
+            // relative links resolve against the page, PDF beats other formats
+            assertEquals(new File(dir, "b/12.pdf").toURI().toURL().toString(), r.downloadUrl);
+            assertEquals(new File(dir, "covers/12.jpg").toURI().toURL().toString(), r.imageUrl);
+            assertNull(src.next());
+        }
+    }
+
+    @Test
+    public void fallsBackToContentAndAnyAcquisition() throws IOException {
+        File page = write("catalog.xml", FEED
+                + "<entry>\n"
+                + "  <title type=\"text\">T</title>\n"
+                + "  <category term=\"poetry\"/>\n"
+                + "  <content type=\"xhtml\"><div>Полный <b>текст</b></div></content>\n"
+                + "  <link rel=\"http://opds-spec.org/acquisition\" href=\"t.fb2\"/>\n"
+                + "  <link rel=\"x-stanza-cover-image\" href=\"t.png\"/>\n"
+                + "</entry>\n"
+                + "</feed>\n");
+
+        try (OpdsSource src = new OpdsSource(page.getPath())) {
+            BookRecord r = src.next();
+            assertEquals("T", r.title);
+            assertEquals(Collections.emptyList(), r.authors);
+            assertEquals("poetry", r.genre);
+            assertEquals("Полный текст", r.description);
+            assertTrue(r.downloadUrl.endsWith("/t.fb2"));
+            assertTrue(r.imageUrl.endsWith("/t.png"));
+        }
+    }
+
+    @Test
+    public void followsNextPages() throws IOException {
+        File first = write("p1.xml", FEED
+                + "<link rel=\"next\" href=\"p2.xml\"/>\n"
+                + "<entry><title>One</title></entry>\n"
+                + "<entry><title>Two</title></entry>\n"
+                + "</feed>\n");
+        write("p2.xml", FEED
+                + "<entry><title>Three</title></entry>\n"
+                + "<link rel=\"next\" href=\"p3.xml\"/>\n"
+                + "</feed>\n");
+        write("p3.xml", FEED + "</feed>\n");
+
+        try (OpdsSource src = new OpdsSource(first.getPath())) {
+            assertEquals("One", src.next().title);
+            assertEquals("Two", src.next().title);
+            assertEquals("Three", src.next().title);
+            assertNull(src.next());
+        }
+    }
+
+    @Test
+    public void ignoresDoctype() throws IOException {
+        File secret = write("secret.txt", "top secret");
+        File page = write("catalog.xml", "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE feed [<!ENTITY x SYSTEM \"" + secret.toURI() + "\">]>\n"
+                + "<feed xmlns=\"http://www.w3.org/2005/Atom\">\n"
+                + "<entry><title>A</title><summary>&x;</summary></entry>\n"
+                + "</feed>\n");
+
+        try (OpdsSource src = new OpdsSource(page.getPath())) {
+            BookRecord r = src.next();
+            assertFalse(r.description != null && r.description.contains("secret"));
+        } catch (IOException rejected) {
+            // refusing the entity outright is fine too
+        }
+    }
+
+    private File write(String name, String text) throws IOException {
+        File f = new File(dir, name);
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.homelibrary.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records the startup + feed scroll journey into app's baseline profile.
+ * Run with {@code ./gradlew :app:generateBaselineProfile}; the result is
+ * filtered to the app packages configured in app/build.gradle.kts.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule rule = new BaselineProfileRule();
+
+    @Test
+    public void startupAndFeedScroll() {
+        rule.collect(
+                Journeys.TARGET_PACKAGE,
+                15,
+                3,
+                null,
+                true,
+                false,
+                method -> true,
+                scope -> {
+                    Journeys.openLibrary(scope);
+                    Journeys.scrollFeed(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
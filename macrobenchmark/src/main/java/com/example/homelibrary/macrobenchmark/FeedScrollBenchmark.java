@@ -0,0 +1,55 @@
+package com.example.homelibrary.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Frame timing while flinging through the library feed (paging, binding, cover loads).
+ */
+@RunWith(AndroidJUnit4.class)
+public class FeedScrollBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void scrollNoCompilation() {
+        scroll(new CompilationMode.None());
+    }
+
+    @Test
+    public void scrollBaselineProfile() {
+        scroll(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void scroll(CompilationMode compilation) {
+        rule.measureRepeated(
+                Journeys.TARGET_PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilation,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    Journeys.openLibrary(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.scrollFeed(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
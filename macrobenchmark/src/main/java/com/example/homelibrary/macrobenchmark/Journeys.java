@@ -0,0 +1,107 @@
+package com.example.homelibrary.macrobenchmark;
+
+import android.os.Bundle;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+
+/**
+ * UI steps shared by the benchmarks and the baseline profile generator.
+ * A signed-out device is signed in with the account passed as instrumentation
+ * arguments:
+ * {@code -Pandroid.testInstrumentationRunnerArguments.email=... -P...password=...}
+ */
+final class Journeys {
+
+    static final String TARGET_PACKAGE = "com.example.homelibrary";
+
+    private static final long TIMEOUT_MS = 15_000;
+
+    private Journeys() {}
+
+    /** Launches MainActivity and waits until the library feed has rows. */
+    static void openLibrary(MacrobenchmarkScope scope) {
+        scope.pressHome();
+        scope.startActivityAndWait();
+        signInIfNeeded(scope.getDevice());
+        waitForFeed(scope.getDevice());
+    }
+
+    /** Flings the feed down far enough to page in more books, then back up. */
+    static void scrollFeed(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 feed = waitForFeed(device);
+        // keep the gesture away from the system navigation area
+        feed.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < 3; i++) {
+            feed.fling(Direction.DOWN);
+            device.waitForIdle();
+        }
+        feed.fling(Direction.UP);
+        device.waitForIdle();
+    }
+
+    /**
+     * Types {@code query} into the library search one character at a time, the
+     * way live search sees it, waits for the results and clears the field.
+     */
+    static void typeSearch(MacrobenchmarkScope scope, String query) {
+        UiDevice device = scope.getDevice();
+        device.findObject(By.res(TARGET_PACKAGE, "library_search_view")).click();
+        UiObject2 field = device.wait(
+                Until.findObject(By.res(TARGET_PACKAGE, "search_src_text")), TIMEOUT_MS);
+        for (int i = 1; i <= query.length(); i++) {
+            field.setText(query.substring(0, i));
+        }
+        device.waitForIdle();
+        waitForFeed(device);
+        field.setText("");
+        device.waitForIdle();
+    }
+
+    /**
+     * Switches Wi-Fi and mobile data. Offline runs need a device that was
+     * signed in and synced online first.
+     */
+    static void setOnline(UiDevice device, boolean online) {
+        String state = online ? "enable" : "disable";
+        try {
+            device.executeShellCommand("svc wifi " + state);
+            device.executeShellCommand("svc data " + state);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't switch network", e);
+        }
+    }
+
+    private static void signInIfNeeded(UiDevice device) {
+        UiObject2 email = device.findObject(By.res(TARGET_PACKAGE, "et_email"));
+        if (email == null) return;
+
+        Bundle args = InstrumentationRegistry.getArguments();
+        String login = args.getString("email");
+        String password = args.getString("password");
+        if (login == null || password == null) {
+            throw new IllegalStateException(
+                    "App is signed out; pass 'email' and 'password' instrumentation arguments");
+        }
+        email.setText(login);
+        device.findObject(By.res(TARGET_PACKAGE, "et_password")).setText(password);
+        device.findObject(By.res(TARGET_PACKAGE, "btn_login")).click();
+    }
+
+    private static UiObject2 waitForFeed(UiDevice device) {
+        UiObject2 feed = device.wait(
+                Until.findObject(By.res(TARGET_PACKAGE, "recycler_book_feed")), TIMEOUT_MS);
+        if (feed == null) throw new IllegalStateException("Library feed did not appear");
+        // first page may still come from the network
+        feed.wait(Until.hasObject(By.res(TARGET_PACKAGE, "card_title")), TIMEOUT_MS);
+        return feed;
+    }
+}
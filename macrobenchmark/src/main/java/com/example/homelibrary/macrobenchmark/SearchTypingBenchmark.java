@@ -0,0 +1,58 @@
+package com.example.homelibrary.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Frame timing while typing into the library search: debounced live search,
+ * narrowing of the results and the switch back to the feed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchTypingBenchmark {
+
+    private static final int ITERATIONS = 5;
+    /** Matches the sample catalog; each keystroke narrows the previous results. */
+    private static final String QUERY = "евгений онегин";
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void typeNoCompilation() {
+        type(new CompilationMode.None());
+    }
+
+    @Test
+    public void typeBaselineProfile() {
+        type(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void type(CompilationMode compilation) {
+        rule.measureRepeated(
+                Journeys.TARGET_PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilation,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    Journeys.openLibrary(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.typeSearch(scope, QUERY);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.homelibrary.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Time to the first frame of the library feed, with and without the baseline
+ * profile, and with the network off (served from the RTDB and SQLite caches).
+ * Run with {@code ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldNoCompilation() {
+        startup(new CompilationMode.None(), StartupMode.COLD);
+    }
+
+    @Test
+    public void coldBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.COLD);
+    }
+
+    @Test
+    public void warmNoCompilation() {
+        startup(new CompilationMode.None(), StartupMode.WARM);
+    }
+
+    @Test
+    public void warmBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.WARM);
+    }
+
+    @Test
+    public void coldOffline() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.COLD, false);
+    }
+
+    @Test
+    public void warmOffline() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.WARM, false);
+    }
+
+    @After
+    public void restoreNetwork() {
+        Journeys.setOnline(UiDevice.getInstance(InstrumentationRegistry.getInstrumentation()), true);
+    }
+
+    private void startup(CompilationMode compilation, StartupMode mode) {
+        startup(compilation, mode, true);
+    }
+
+    private void startup(CompilationMode compilation, StartupMode mode, boolean online) {
+        rule.measureRepeated(
+                Journeys.TARGET_PACKAGE,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilation,
+                mode,
+                ITERATIONS,
+                scope -> {
+                    Journeys.setOnline(scope.getDevice(), online);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.openLibrary(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.homelibrary.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a Realtime Database model. {@link SnapshotModelProcessor} generates a
+ * {@code <Model>Mapper} class next to it with reflection-free
+ * {@code fromSnapshot(DataSnapshot)} and {@code toMap(model)} methods
+ * covering every public, non-static field.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface SnapshotModel {
+}
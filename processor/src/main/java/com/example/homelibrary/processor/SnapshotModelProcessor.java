@@ -0,0 +1,248 @@
+package com.example.homelibrary.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates {@code <Model>Mapper} classes for types annotated with {@link SnapshotModel}.
+ *
+ * <p>{@code fromSnapshot} walks the snapshot's children once and assigns fields
+ * by key, instead of Firebase's reflective CustomClassMapper. {@code toMap}
+ * produces the value map accepted by {@code setValue}/{@code updateChildren}.
+ * Supported field types: String, long, int, double, boolean (and their boxes)
+ * and List&lt;String&gt;.
+ */
+@SupportedAnnotationTypes("com.example.homelibrary.processor.SnapshotModel")
+public class SnapshotModelProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        for (Element e : env.getElementsAnnotatedWith(SnapshotModel.class)) {
+            if (e.getKind() != ElementKind.CLASS) {
+                error(e, "@SnapshotModel can only be applied to classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) e;
+            if (!hasPublicNoArgConstructor(type)) {
+                error(type, "@SnapshotModel class needs a public no-arg constructor");
+                continue;
+            }
+            List<Field> fields = collectFields(type);
+            if (fields == null) continue;
+            write(type, fields);
+        }
+        return true;
+    }
+
+    // ======================= Model inspection =======================
+
+    private static final class Field {
+        final String name;
+        final Kind kind;
+
+        Field(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+
+    private enum Kind {
+        STRING("asString(c)"),
+        LONG("asLong(c, 0L)"),
+        BOXED_LONG("asBoxedLong(c)"),
+        INT("(int) asLong(c, 0L)"),
+        BOXED_INT("asBoxedInt(c)"),
+        DOUBLE("asDouble(c, 0d)"),
+        BOXED_DOUBLE("asBoxedDouble(c)"),
+        BOOLEAN("Boolean.TRUE.equals(c.getValue())"),
+        BOXED_BOOLEAN("asBoxedBoolean(c)"),
+        STRING_LIST("asStringList(c)");
+
+        final String reader;
+
+        Kind(String reader) {
+            this.reader = reader;
+        }
+    }
+
+    private List<Field> collectFields(TypeElement type) {
+        List<Field> out = new ArrayList<>();
+        boolean ok = true;
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD) continue;
+            Set<Modifier> mods = member.getModifiers();
+            if (!mods.contains(Modifier.PUBLIC) || mods.contains(Modifier.STATIC)
+                    || mods.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            VariableElement field = (VariableElement) member;
+            Kind kind = kindOf(field.asType().toString());
+            if (kind == null) {
+                error(field, "Unsupported @SnapshotModel field type: " + field.asType());
+                ok = false;
+                continue;
+            }
+            if (mods.contains(Modifier.FINAL)) {
+                error(field, "@SnapshotModel fields must not be final");
+                ok = false;
+                continue;
+            }
+            out.add(new Field(field.getSimpleName().toString(), kind));
+        }
+        return ok ? out : null;
+    }
+
+    private static Kind kindOf(String type) {
+        switch (type) {
+            case "java.lang.String": return Kind.STRING;
+            case "long": return Kind.LONG;
+            case "java.lang.Long": return Kind.BOXED_LONG;
+            case "int": return Kind.INT;
+            case "java.lang.Integer": return Kind.BOXED_INT;
+            case "double": return Kind.DOUBLE;
+            case "java.lang.Double": return Kind.BOXED_DOUBLE;
+            case "boolean": return Kind.BOOLEAN;
+            case "java.lang.Boolean": return Kind.BOXED_BOOLEAN;
+            case "java.util.List<java.lang.String>": return Kind.STRING_LIST;
+            default: return null;
+        }
+    }
+
+    private static boolean hasPublicNoArgConstructor(TypeElement type) {
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.CONSTRUCTOR) continue;
+            ExecutableElement ctor = (ExecutableElement) member;
+            if (ctor.getParameters().isEmpty() && ctor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ======================= Code generation =======================
+
+    private void write(TypeElement type, List<Field> fields) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.getQualifiedName().toString();
+        String model = type.getSimpleName().toString();
+        String mapper = model + "Mapper";
+
+        StringBuilder s = new StringBuilder();
+        s.append("package ").append(packageName).append(";\n\n");
+        s.append("import com.google.firebase.database.DataSnapshot;\n\n");
+        s.append("import java.util.ArrayList;\n");
+        s.append("import java.util.HashMap;\n");
+        s.append("import java.util.List;\n");
+        s.append("import java.util.Map;\n\n");
+        s.append("/** Generated by SnapshotModelProcessor from {@link ").append(model)
+                .append("}. Do not edit. */\n");
+        s.append("public final class ").append(mapper).append(" {\n\n");
+        s.append("    private ").append(mapper).append("() {}\n\n");
+
+        s.append("    /** Returns null when the node does not exist. */\n");
+        s.append("    public static ").append(model).append(" fromSnapshot(DataSnapshot ds) {\n");
+        s.append("        if (!ds.exists()) return null;\n");
+        s.append("        ").append(model).append(" m = new ").append(model).append("();\n");
+        s.append("        for (DataSnapshot c : ds.getChildren()) {\n");
+        s.append("            String key = c.getKey();\n");
+        s.append("            if (key == null) continue;\n");
+        s.append("            switch (key) {\n");
+        for (Field f : fields) {
+            s.append("                case \"").append(f.name).append("\": m.").append(f.name)
+                    .append(" = ").append(f.kind.reader).append("; break;\n");
+        }
+        s.append("                default: break;\n");
+        s.append("            }\n");
+        s.append("        }\n");
+        s.append("        return m;\n");
+        s.append("    }\n\n");
+
+        s.append("    /** Value map for setValue/updateChildren. */\n");
+        s.append("    public static Map<String, Object> toMap(").append(model).append(" m) {\n");
+        s.append("        Map<String, Object> out = new HashMap<>(")
+                .append(Math.max(4, fields.size() * 2)).append(");\n");
+        for (Field f : fields) {
+            s.append("        out.put(\"").append(f.name).append("\", m.").append(f.name).append(");\n");
+        }
+        s.append("        return out;\n");
+        s.append("    }\n\n");
+
+        s.append(HELPERS);
+        s.append("}\n");
+
+        try {
+            JavaFileObject file = processingEnv.getFiler()
+                    .createSourceFile(packageName + "." + mapper, type);
+            try (Writer w = file.openWriter()) {
+                w.write(s.toString());
+            }
+        } catch (IOException ex) {
+            error(type, "Failed to write " + mapper + ": " + ex.getMessage());
+        }
+    }
+
+    private static final String HELPERS =
+            "    private static String asString(DataSnapshot c) {\n"
+            + "        Object v = c.getValue();\n"
+            + "        return v != null ? v.toString() : null;\n"
+            + "    }\n\n"
+            + "    private static long asLong(DataSnapshot c, long fallback) {\n"
+            + "        Object v = c.getValue();\n"
+            + "        return v instanceof Number ? ((Number) v).longValue() : fallback;\n"
+            + "    }\n\n"
+            + "    private static Long asBoxedLong(DataSnapshot c) {\n"
+            + "        Object v = c.getValue();\n"
+            + "        return v instanceof Number ? ((Number) v).longValue() : null;\n"
+            + "    }\n\n"
+            + "    private static Integer asBoxedInt(DataSnapshot c) {\n"
+            + "        Object v = c.getValue();\n"
+            + "        return v instanceof Number ? ((Number) v).intValue() : null;\n"
+            + "    }\n\n"
+            + "    private static double asDouble(DataSnapshot c, double fallback) {\n"
+            + "        Object v = c.getValue();\n"
+            + "        return v instanceof Number ? ((Number) v).doubleValue() : fallback;\n"
+            + "    }\n\n"
+            + "    private static Double asBoxedDouble(DataSnapshot c) {\n"
+            + "        Object v = c.getValue();\n"
+            + "        return v instanceof Number ? ((Number) v).doubleValue() : null;\n"
+            + "    }\n\n"
+            + "    private static Boolean asBoxedBoolean(DataSnapshot c) {\n"
+            + "        Object v = c.getValue();\n"
+            + "        return v instanceof Boolean ? (Boolean) v : null;\n"
+            + "    }\n\n"
+            + "    /** RTDB stores lists as index-keyed children, already ordered by key. */\n"
+            + "    private static List<String> asStringList(DataSnapshot c) {\n"
+            + "        List<String> out = new ArrayList<>((int) c.getChildrenCount());\n"
+            + "        for (DataSnapshot item : c.getChildren()) {\n"
+            + "            Object v = item.getValue();\n"
+            + "            if (v != null) out.add(v.toString());\n"
+            + "        }\n"
+            + "        return out;\n"
+            + "    }\n";
+
+    private void error(Element e, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+    }
+}
@@ -26,3 +26,8 @@ dependencyResolutionManagement {
 
 rootProject.name = "HomeLibrary"
 include(":app")
+include(":processor")
+include(":macrobenchmark")
+include(":thumbnailer")
+include(":importer")
+include(":text")
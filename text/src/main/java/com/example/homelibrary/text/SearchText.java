@@ -0,0 +1,60 @@
+package com.example.homelibrary.text;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Search normalization shared by the app, the importer and the thumbnailer:
+ * "search_index" keys written by the tools must match the app's queries.
+ * Токены нормализуются одинаково для кириллицы и латиницы.
+ */
+public final class SearchText {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    /** "й" / "Й" after NFD: и / И + combining breve. */
+    private static final String SHORT_I_DECOMPOSED = "\u0438\u0306";
+    private static final String SHORT_I_UPPER_DECOMPOSED = "\u0418\u0306";
+
+    private SearchText() { }
+
+    /**
+     * Lower-cases text and strips diacritics, so "Ёлка" and "елка",
+     * "Café" and "cafe" produce identical tokens. "й" is a letter of its own
+     * and stays distinct from "и". Null gives "".
+     */
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replace(SHORT_I_DECOMPOSED, "\u0439")
+                .replace(SHORT_I_UPPER_DECOMPOSED, "\u0419");
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /** Splits normalized text into letter/digit tokens, preserving first-seen order. */
+    public static List<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenizeInto(text, tokens);
+        return new ArrayList<>(tokens);
+    }
+
+    /** Like {@link #tokenize}, adding the tokens to {@code out}. */
+    public static void tokenizeInto(String text, Collection<String> out) {
+        String s = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean word = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                out.add(s.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.homelibrary.text;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Normalization and tokenization of {@link SearchText}; "search_index" keys
+ * on the server are produced by the same rules.
+ */
+public class SearchTextTest {
+
+    @Test
+    public void normalize_foldsCaseAndDiacritics() {
+        assertEquals("елка", SearchText.normalize("Ёлка"));
+        assertEquals("cafe", SearchText.normalize("Café"));
+        assertEquals("pere goriot", SearchText.normalize("Père Goriot"));
+        assertEquals("", SearchText.normalize(null));
+    }
+
+    @Test
+    public void normalize_keepsShortI() {
+        assertEquals("война", SearchText.normalize("Война"));
+        assertEquals("йод", SearchText.normalize("ЙОД"));
+        // decomposed input: и + combining breve
+        assertEquals("война", SearchText.normalize("Война"));
+        assertNotEquals(SearchText.normalize("мой"), SearchText.normalize("мои"));
+    }
+
+    @Test
+    public void tokenize_splitsOnNonLetters() {
+        assertEquals(Arrays.asList("war", "and", "peace", "1869"),
+                SearchText.tokenize("War-and-Peace (1869)"));
+        assertEquals(Arrays.asList("евгении", "онегин"),
+                SearchText.tokenize("  евгении, онегин! "));
+    }
+
+    @Test
+    public void tokenize_dropsDuplicatesKeepingOrder() {
+        assertEquals(Arrays.asList("мир", "и", "война"), SearchText.tokenize("Мир и война, и мир"));
+        assertEquals(Collections.emptyList(), SearchText.tokenize("--- ..."));
+        assertEquals(Collections.emptyList(), SearchText.tokenize(null));
+    }
+}
@@ -0,0 +1,18 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.example.homelibrary.thumbnailer.Thumbnailer")
+}
+
+dependencies {
+    implementation(project(":text"))
+    implementation(libs.firebase.admin)
+    implementation(libs.webp.imageio)
+}
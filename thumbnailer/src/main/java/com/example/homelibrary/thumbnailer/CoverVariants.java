@@ -0,0 +1,87 @@
+package com.example.homelibrary.thumbnailer;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Decodes an original cover and encodes downscaled lossy WebP copies of it.
+ * The WebP writer is registered with ImageIO by webp-imageio.
+ */
+final class CoverVariants {
+
+    private final BufferedImage original;
+
+    CoverVariants(byte[] encoded) throws IOException {
+        BufferedImage img = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (img == null) throw new IOException("Unsupported image format");
+        this.original = img;
+    }
+
+    int width() {
+        return original.getWidth();
+    }
+
+    /** WebP at {@code width} px wide (never upscaled), aspect ratio kept. */
+    byte[] webp(int width, float quality) throws IOException {
+        BufferedImage scaled = scale(original, Math.min(width, original.getWidth()));
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType("image/webp");
+        if (!writers.hasNext()) throw new IOException("No WebP writer on the classpath");
+        ImageWriter writer = writers.next();
+
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionType("Lossy");
+        param.setCompressionQuality(quality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(scaled, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Halves the image until it is within 2x of the target, then does one
+     * bicubic step; a single large bicubic step aliases fine print on covers.
+     */
+    private static BufferedImage scale(BufferedImage src, int width) {
+        int height = Math.max(1, Math.round(src.getHeight() * (width / (float) src.getWidth())));
+        BufferedImage current = src;
+        while (current.getWidth() / 2 >= width) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        if (current.getWidth() != width || current.getType() != BufferedImage.TYPE_INT_RGB) {
+            current = draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage src, int w, int h, Object interpolation) {
+        // covers are opaque; RGB also keeps the encoder away from alpha
+        BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(src, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return dst;
+    }
+}
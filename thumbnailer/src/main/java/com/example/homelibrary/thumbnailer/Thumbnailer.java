@@ -0,0 +1,340 @@
+package com.example.homelibrary.thumbnailer;
+
+import com.example.homelibrary.text.SearchText;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.StorageClient;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Generates WebP cover variants for every book and records their urls on the
+ * book ("coverSmallUrl", "coverMediumUrl", "coverLargeUrl"; widths match the
+ * Book.COVER_*_WIDTH constants in the app).
+ *
+ * <pre>
+ * ./gradlew :thumbnailer:run --args="--project home-library --bucket home-library.appspot.com"
+ * </pre>
+ *
+ * With FIREBASE_DATABASE_EMULATOR_HOST / FIREBASE_STORAGE_EMULATOR_HOST set
+ * (as {@code firebase emulators:exec} does) it runs against the emulators and
+ * needs no credentials; {@code --public-host 10.0.2.2:9199} makes the written
+ * urls reachable from an Android emulator. Books whose variants were made from
+ * the current imageUrl are skipped unless {@code --force} is given.
+ *
+ * <p>Cover urls are mirrored into the book's "feed/{id}" row in the same
+ * update. {@code --rebuild-feed} instead rewrites every feed row and the
+ * "search_index" title words from "books" and "authors", for data written
+ * before they existed:
+ *
+ * <pre>
+ * ./gradlew :thumbnailer:run --args="--project home-library --bucket home-library.appspot.com --rebuild-feed"
+ * </pre>
+ */
+public final class Thumbnailer {
+
+    private static final String[] FIELDS = {"coverSmallUrl", "coverMediumUrl", "coverLargeUrl"};
+    /** Same as DBManager.FEED_FIELDS in the app. */
+    private static final String[] FEED_FIELDS = {"id", "title", "genre", "authorIds",
+            "imageUrl", "coverSmallUrl", "coverMediumUrl", "coverLargeUrl"};
+    /** Feed rows per multi-path update when rebuilding. */
+    private static final int FEED_BATCH = 500;
+    private static final int[] WIDTHS = {160, 320, 640};
+    /** Storage metadata key holding the imageUrl the variants were made from. */
+    private static final String SOURCE_KEY = "sourceUrl";
+    private static final String TOKEN_KEY = "firebaseStorageDownloadTokens";
+
+    private final String bucket;
+    private final Storage storage;
+    private final String publicBase;
+    private final float quality;
+    private final boolean force;
+
+    private Thumbnailer(String bucket, Storage storage, String publicBase, float quality, boolean force) {
+        this.bucket = bucket;
+        this.storage = storage;
+        this.publicBase = publicBase;
+        this.quality = quality;
+        this.force = force;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = parse(argv);
+        String project = require(args, "project");
+        String bucket = require(args, "bucket");
+        String dbEmulator = System.getenv("FIREBASE_DATABASE_EMULATOR_HOST");
+        String storageEmulator = System.getenv("FIREBASE_STORAGE_EMULATOR_HOST");
+
+        FirebaseOptions.Builder options = FirebaseOptions.builder()
+                .setProjectId(project)
+                .setStorageBucket(bucket)
+                .setDatabaseUrl(args.getOrDefault("database-url",
+                        "https://" + project + "-default-rtdb.firebaseio.com"));
+        if (dbEmulator != null) {
+            // the emulator accepts the "owner" token as admin
+            options.setCredentials(GoogleCredentials.create(new AccessToken("owner", null)));
+        } else {
+            options.setCredentials(GoogleCredentials.getApplicationDefault());
+        }
+        FirebaseApp.initializeApp(options.build());
+
+        Storage storage;
+        String publicBase;
+        if (storageEmulator != null) {
+            storage = StorageOptions.newBuilder()
+                    .setProjectId(project)
+                    .setHost("http://" + storageEmulator)
+                    .setCredentials(NoCredentials.getInstance())
+                    .build()
+                    .getService();
+            publicBase = "http://" + args.getOrDefault("public-host", storageEmulator);
+        } else {
+            storage = StorageClient.getInstance().bucket().getStorage();
+            publicBase = "https://firebasestorage.googleapis.com";
+        }
+
+        float quality = Float.parseFloat(args.getOrDefault("quality", "0.8"));
+        Thumbnailer t = new Thumbnailer(bucket, storage, publicBase, quality, args.containsKey("force"));
+        if (args.containsKey("rebuild-feed")) {
+            t.rebuildFeed();
+        } else {
+            t.run();
+        }
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        DataSnapshot all = readOnce(root.child("books"));
+
+        int done = 0, skipped = 0, failed = 0;
+        long originalBytes = 0, smallBytes = 0;
+        for (DataSnapshot book : all.getChildren()) {
+            String id = book.getKey();
+            String imageUrl = book.child("imageUrl").getValue(String.class);
+            if (id == null || imageUrl == null || imageUrl.isEmpty()) continue;
+            if (!force && upToDate(id, imageUrl)) {
+                skipped++;
+                continue;
+            }
+            try {
+                byte[] original = download(imageUrl);
+                CoverVariants variants = new CoverVariants(original);
+                Map<String, Object> update = new HashMap<>();
+                String smallUrl = null;
+                for (int i = 0; i < WIDTHS.length; i++) {
+                    byte[] webp = variants.webp(WIDTHS[i], quality);
+                    String url = upload(path(id, WIDTHS[i]), webp, imageUrl);
+                    update.put("books/" + id + "/" + FIELDS[i], url);
+                    update.put("feed/" + id + "/" + FIELDS[i], url);
+                    if (i == 0) {
+                        smallBytes += webp.length;
+                        smallUrl = url;
+                    }
+                }
+                update.put("books/" + id + "/updatedAt", ServerValue.TIMESTAMP);
+                update.put("feed/" + id + "/updatedAt", ServerValue.TIMESTAMP);
+                root.updateChildrenAsync(update).get();
+                originalBytes += original.length;
+                done++;
+                System.out.printf("%s: %d px, %d B -> %s%n", id, variants.width(), original.length,
+                        smallUrl);
+            } catch (IOException e) {
+                failed++;
+                System.err.printf("%s: %s (%s)%n", id, e.getMessage(), imageUrl);
+            }
+        }
+        System.out.printf("generated %d, up to date %d, failed %d%n", done, skipped, failed);
+        if (done > 0) {
+            System.out.printf("original %d KiB -> %dpx variant %d KiB per book on average%n",
+                    originalBytes / done / 1024, WIDTHS[0], smallBytes / done / 1024);
+        }
+    }
+
+    // ====== Feed ======
+
+    /**
+     * Rewrites "feed" and "search_index" from "books" and "authors"; entries
+     * of deleted books and old titles are removed.
+     */
+    private void rebuildFeed() throws Exception {
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        DataSnapshot books = readOnce(root.child("books"));
+        DataSnapshot authors = readOnce(root.child("authors"));
+        DataSnapshot feed = readOnce(root.child("feed"));
+        DataSnapshot index = readOnce(root.child("search_index"));
+
+        Map<String, Object> update = new HashMap<>();
+        int written = 0, removed = 0;
+        for (DataSnapshot book : books.getChildren()) {
+            String id = book.getKey();
+            Map<String, Object> row = new HashMap<>();
+            for (String f : FEED_FIELDS) row.put(f, book.child(f).getValue());
+            row.put("id", id);
+            Map<String, Object> names = new HashMap<>();
+            for (DataSnapshot authorId : book.child("authorIds").getChildren()) {
+                String aid = authorId.getValue(String.class);
+                if (aid == null) continue;
+                String name = authors.child(aid).child("fullName").getValue(String.class);
+                if (name != null) names.put(aid, name);
+            }
+            row.put("authorNames", names);
+            row.put("updatedAt", ServerValue.TIMESTAMP);
+            update.put("feed/" + id, row);
+            written++;
+            if (update.size() >= FEED_BATCH) flush(root, update);
+        }
+        int tokens = 0;
+        Set<String> indexed = new HashSet<>();
+        for (DataSnapshot book : books.getChildren()) {
+            for (String token : SearchText.tokenize(book.child("title").getValue(String.class))) {
+                String path = "search_index/" + token + "/" + book.getKey();
+                indexed.add(path);
+                update.put(path, true);
+                tokens++;
+                if (update.size() >= FEED_BATCH) flush(root, update);
+            }
+        }
+        // stale words of old titles and deleted books
+        for (DataSnapshot token : index.getChildren()) {
+            for (DataSnapshot book : token.getChildren()) {
+                String path = "search_index/" + token.getKey() + "/" + book.getKey();
+                if (indexed.contains(path)) continue;
+                update.put(path, null);
+                if (update.size() >= FEED_BATCH) flush(root, update);
+            }
+        }
+        for (DataSnapshot row : feed.getChildren()) {
+            if (books.hasChild(row.getKey())) continue;
+            update.put("feed/" + row.getKey(), null);
+            removed++;
+            if (update.size() >= FEED_BATCH) flush(root, update);
+        }
+        flush(root, update);
+        System.out.printf("feed rows written %d, removed %d; %d title words indexed%n",
+                written, removed, tokens);
+    }
+
+    private static void flush(DatabaseReference root, Map<String, Object> update) throws Exception {
+        if (update.isEmpty()) return;
+        root.updateChildrenAsync(update).get();
+        update.clear();
+    }
+
+    private static DataSnapshot readOnce(DatabaseReference ref) throws Exception {
+        CompletableFuture<DataSnapshot> result = new CompletableFuture<>();
+        ref.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                result.complete(snapshot);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                result.completeExceptionally(error.toException());
+            }
+        });
+        return result.get();
+    }
+
+    // ====== Storage ======
+
+    private static String path(String bookId, int width) {
+        return "covers/" + bookId + "/w" + width + ".webp";
+    }
+
+    /** True when the last variant exists and was made from {@code imageUrl}. */
+    private boolean upToDate(String bookId, String imageUrl) {
+        Blob blob = storage.get(BlobId.of(bucket, path(bookId, WIDTHS[WIDTHS.length - 1])));
+        return blob != null && blob.getMetadata() != null
+                && Objects.equals(blob.getMetadata().get(SOURCE_KEY), imageUrl);
+    }
+
+    /** Uploads with a Firebase download token and returns the token url the app can load. */
+    private String upload(String path, byte[] bytes, String sourceUrl) {
+        String token = UUID.randomUUID().toString();
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(TOKEN_KEY, token);
+        metadata.put(SOURCE_KEY, sourceUrl);
+        BlobInfo info = BlobInfo.newBuilder(BlobId.of(bucket, path))
+                .setContentType("image/webp")
+                .setCacheControl("public, max-age=31536000")
+                .setMetadata(metadata)
+                .build();
+        storage.create(info, bytes);
+        return publicBase + "/v0/b/" + bucket + "/o/"
+                + URLEncoder.encode(path, StandardCharsets.UTF_8) + "?alt=media&token=" + token;
+    }
+
+    private static byte[] download(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        // Wikimedia rejects requests without a descriptive User-Agent
+        conn.setRequestProperty("User-Agent", "HomeLibrary-Thumbnailer/1.0");
+        conn.setConnectTimeout(15_000);
+        conn.setReadTimeout(30_000);
+        try {
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + conn.getResponseCode());
+            }
+            try (InputStream in = conn.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                in.transferTo(out);
+                return out.toByteArray();
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    // ====== Arguments ======
+
+    /** "--key value" pairs; a flag without value maps to "". */
+    private static Map<String, String> parse(String[] argv) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i < argv.length; i++) {
+            if (!argv[i].startsWith("--")) continue;
+            String key = argv[i].substring(2);
+            boolean hasValue = i + 1 < argv.length && !argv[i + 1].startsWith("--");
+            out.put(key, hasValue ? argv[++i] : "");
+        }
+        return out;
+    }
+
+    private static String require(Map<String, String> args, String key) {
+        String v = args.get(key);
+        if (v == null || v.isEmpty()) {
+            System.err.println("usage: --project <id> --bucket <bucket> [--database-url <url>]"
+                    + " [--public-host <host:port>] [--quality 0.8] [--force] [--rebuild-feed]");
+            System.exit(2);
+        }
+        return v;
+    }
+}